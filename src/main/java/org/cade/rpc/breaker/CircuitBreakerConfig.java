@@ -0,0 +1,53 @@
+package org.cade.rpc.breaker;
+
+import lombok.Data;
+
+/**
+ * {@link SlidingWindowCircuitBreaker} 的配置，可以按服务或方法单独配置
+ */
+@Data
+public class CircuitBreakerConfig {
+    /**
+     * 统计窗口长度
+     */
+    private long windowMS = 10_000;
+    /**
+     * 窗口分成的桶数，桶越多窗口滑动越平滑
+     */
+    private int bucketCount = 10;
+    /**
+     * 窗口内请求数不足时不熔断
+     */
+    private int minRequests = 10;
+    /**
+     * 失败（包括慢调用）比例达到该值时熔断
+     */
+    private double failRatio = 0.5;
+    /**
+     * 熔断后多久进入半开状态
+     */
+    private long breakTimeMS = 10_000;
+    /**
+     * 慢调用阈值 = 最近成功调用延迟的 slowPercentile 分位数 * slowMultiplier，限制在 [minSlowMS, maxSlowMS] 之间
+     */
+    private double slowPercentile = 0.9;
+    private double slowMultiplier = 3.0;
+    private long minSlowMS = 100;
+    /**
+     * 慢调用阈值的上限，延迟样本不足 latencyMinSamples 时直接使用
+     */
+    private long maxSlowMS = 2000;
+    private int latencyMinSamples = 100;
+    /**
+     * 延迟分位数的统计窗口，比熔断窗口长，延迟突然变高时基线不会立刻跟着变高
+     */
+    private long latencyWindowMS = 60_000;
+    /**
+     * 半开状态放行的探测请求数
+     */
+    private int halfOpenProbes = 5;
+    /**
+     * 探测请求的成功比例达到该值时恢复，否则重新熔断
+     */
+    private double halfOpenSuccessRatio = 0.8;
+}
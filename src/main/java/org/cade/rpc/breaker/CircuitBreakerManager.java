@@ -3,22 +3,73 @@ package org.cade.rpc.breaker;
 import org.cade.rpc.comsumer.ConsumerProperties;
 import org.cade.rpc.register.Metadata;
 
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
 
+/**
+ * 创建熔断器：每个端点一个；配置了方法级熔断参数的方法在每个端点上单独使用一个熔断器。
+ * 熔断器挂在端点上，随端点一起创建和复用
+ */
 public class CircuitBreakerManager {
-    private final Map<Metadata,CircuitBreaker> circuitBreakerMap = new ConcurrentHashMap<>();
+    public static final String SLIDING_WINDOW = "sliding_window";
+    public static final String RESPONSE_TIME = "response_time";
+
+    // 服务名 -> 单独配置了熔断参数的方法名
+    private final Map<String, Set<String>> methodConfigured = new HashMap<>();
     private final ConsumerProperties properties;
 
     public CircuitBreakerManager(ConsumerProperties properties) {
         this.properties = properties;
+        for (String key : properties.getCircuitBreakers().keySet()) {
+            int split = key.indexOf('#');
+            if (split > 0) {
+                methodConfigured.computeIfAbsent(key.substring(0, split), k -> new HashSet<>()).add(key.substring(split + 1));
+            }
+        }
     }
 
-    public CircuitBreaker getCircuitBreaker(Metadata metadata){
-        return circuitBreakerMap.computeIfAbsent(metadata,this::createBreaker);
+    public CircuitBreaker createBreaker(Metadata metadata){
+        return createBreaker(metadata.getServiceName());
     }
 
-    public CircuitBreaker createBreaker(Metadata metadata){
-        return new ResponseTimeCircuitBreaker(5,properties.getSlowRequestBreakRatio());
+    /**
+     * @return 方法名 -> 方法级熔断器，该服务没有单独配置的方法时返回 null
+     */
+    public Map<String, CircuitBreaker> createMethodBreakers(Metadata metadata) {
+        Set<String> methods = methodConfigured.get(metadata.getServiceName());
+        if (methods == null) {
+            return null;
+        }
+        Map<String, CircuitBreaker> breakers = new HashMap<>();
+        for (String method : methods) {
+            breakers.put(method, createBreaker(metadata.getServiceName() + "#" + method));
+        }
+        return breakers;
+    }
+
+    private CircuitBreaker createBreaker(String key) {
+        if (RESPONSE_TIME.equalsIgnoreCase(properties.getCircuitBreaker())) {
+            return new ResponseTimeCircuitBreaker(5,properties.getSlowRequestBreakRatio());
+        }
+        return new SlidingWindowCircuitBreaker(resolveConfig(key));
+    }
+
+    /**
+     * 优先级：服务名#方法名 > 服务名 > 默认配置（失败比例取 slowRequestBreakRatio）
+     */
+    CircuitBreakerConfig resolveConfig(String key) {
+        Map<String, CircuitBreakerConfig> configs = properties.getCircuitBreakers();
+        CircuitBreakerConfig config = configs.get(key);
+        int split = key.indexOf('#');
+        if (config == null && split > 0) {
+            config = configs.get(key.substring(0, split));
+        }
+        if (config == null) {
+            config = new CircuitBreakerConfig();
+            config.setFailRatio(properties.getSlowRequestBreakRatio());
+        }
+        return config;
     }
 }
@@ -0,0 +1,175 @@
+package org.cade.rpc.breaker;
+
+import org.cade.rpc.metrics.LatencySketch;
+import org.cade.rpc.metrics.RPCCallMetrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 滑动窗口熔断器。
+ * <p>
+ * 统计窗口是固定大小的 long 计数环，每个桶带有所属时间段的编号，写入时发现编号过期就 CAS 换成当前编号并清零，
+ * 读写都不加锁、不分配对象。桶切换的瞬间并发写入的极少量计数可能被清零丢失，对比例统计没有影响。
+ * <p>
+ * 慢调用阈值跟随最近成功调用延迟的分位数变化，而不是固定值；
+ * 半开状态放行 halfOpenProbes 个探测请求，成功比例达到 halfOpenSuccessRatio 时恢复，否则重新熔断。
+ */
+public class SlidingWindowCircuitBreaker implements CircuitBreaker {
+    // 每个桶占一个缓存行（8 个 long），避免相邻桶之间的伪共享
+    private static final int STRIDE = 8;
+    private static final int EPOCH = 0;
+    private static final int TOTAL = 1;
+    private static final int FAIL = 2;
+
+    private final CircuitBreakerConfig config;
+    private final int buckets;
+    private final long bucketMS;
+    private final AtomicLongArray counters;
+    private final LatencySketch latency;
+    private final AtomicLong thresholdRefreshMS = new AtomicLong();
+    private volatile long slowThresholdMS;
+
+    private final AtomicReference<State> stateRef = new AtomicReference<>(State.CLOSED);
+    private volatile long openedAtMS;
+    private final int probeSuccessNeeded;
+    private final AtomicInteger probePermits = new AtomicInteger();
+    private final AtomicInteger probeSuccess = new AtomicInteger();
+    private final AtomicInteger probeFail = new AtomicInteger();
+
+    public SlidingWindowCircuitBreaker(CircuitBreakerConfig config) {
+        this.config = config;
+        this.buckets = Math.max(1, config.getBucketCount());
+        this.bucketMS = Math.max(1, config.getWindowMS() / buckets);
+        this.counters = new AtomicLongArray(buckets * STRIDE);
+        this.latency = new LatencySketch(config.getLatencyWindowMS());
+        this.slowThresholdMS = config.getMaxSlowMS();
+        this.probeSuccessNeeded = (int) Math.ceil(config.getHalfOpenProbes() * config.getHalfOpenSuccessRatio());
+    }
+
+    @Override
+    public boolean allowRequest() {
+        return allowRequest(System.currentTimeMillis());
+    }
+
+    boolean allowRequest(long now) {
+        State state = stateRef.get();
+        if (state == State.CLOSED) {
+            return true;
+        }
+        if (state == State.OPEN) {
+            if (now - openedAtMS < config.getBreakTimeMS()) {
+                return false;
+            }
+            if (stateRef.compareAndSet(State.OPEN, State.HALFEN)) {
+                probeSuccess.set(0);
+                probeFail.set(0);
+                // 自己占用第一个探测名额
+                probePermits.set(config.getHalfOpenProbes() - 1);
+                return true;
+            }
+        }
+        return probePermits.getAndDecrement() > 0;
+    }
+
+    @Override
+    public void recordRPC(RPCCallMetrics metrics) {
+        boolean success = metrics.isComplete() && metrics.getThrowable() == null;
+        record(System.currentTimeMillis(), metrics.getDurationMS(), success);
+    }
+
+    void record(long now, long durationMS, boolean success) {
+        if (success) {
+            latency.record(TimeUnit.MILLISECONDS.toNanos(durationMS));
+        }
+        boolean fail = !success || durationMS > slowThresholdMS(now);
+
+        long epoch = now / bucketMS;
+        int base = (int) (epoch % buckets) * STRIDE;
+        long stamp = counters.get(base + EPOCH);
+        if (stamp < epoch && counters.compareAndSet(base + EPOCH, stamp, epoch)) {
+            counters.set(base + TOTAL, 0);
+            counters.set(base + FAIL, 0);
+        }
+        counters.incrementAndGet(base + TOTAL);
+        if (fail) {
+            counters.incrementAndGet(base + FAIL);
+        }
+
+        switch (stateRef.get()) {
+            case CLOSED -> {
+                if (fail) {
+                    checkTrip(now, epoch);
+                }
+            }
+            case HALFEN -> onProbe(now, fail);
+            case OPEN -> {
+            }
+        }
+    }
+
+    private void checkTrip(long now, long epoch) {
+        long total = 0;
+        long failCount = 0;
+        for (int i = 0; i < buckets; i++) {
+            int base = i * STRIDE;
+            long stamp = counters.get(base + EPOCH);
+            if (stamp > epoch - buckets && stamp <= epoch) {
+                total += counters.get(base + TOTAL);
+                failCount += counters.get(base + FAIL);
+            }
+        }
+        if (total < config.getMinRequests() || (double) failCount / total < config.getFailRatio()) {
+            return;
+        }
+        openedAtMS = now;
+        stateRef.compareAndSet(State.CLOSED, State.OPEN);
+    }
+
+    private void onProbe(long now, boolean fail) {
+        if (fail) {
+            if (probeFail.incrementAndGet() > config.getHalfOpenProbes() - probeSuccessNeeded) {
+                openedAtMS = now;
+                stateRef.compareAndSet(State.HALFEN, State.OPEN);
+            }
+            return;
+        }
+        if (probeSuccess.incrementAndGet() >= probeSuccessNeeded && stateRef.compareAndSet(State.HALFEN, State.CLOSED)) {
+            // 熔断前的失败不再参与统计，否则恢复后第一次失败就会重新熔断
+            for (int i = 0; i < buckets; i++) {
+                counters.set(i * STRIDE + EPOCH, 0);
+            }
+        }
+    }
+
+    /**
+     * 慢调用阈值每个桶的时间刷新一次，刷新需要扫描延迟直方图
+     */
+    private long slowThresholdMS(long now) {
+        long refreshed = thresholdRefreshMS.get();
+        if (now - refreshed >= bucketMS && thresholdRefreshMS.compareAndSet(refreshed, now)) {
+            long quantileMicros = latency.quantileMicros(config.getSlowPercentile(), config.getLatencyMinSamples());
+            if (quantileMicros < 0) {
+                slowThresholdMS = config.getMaxSlowMS();
+            } else {
+                long relative = (long) Math.ceil(quantileMicros * config.getSlowMultiplier() / 1000);
+                slowThresholdMS = Math.min(config.getMaxSlowMS(), Math.max(config.getMinSlowMS(), relative));
+            }
+        }
+        return slowThresholdMS;
+    }
+
+    public State getState() {
+        return stateRef.get();
+    }
+
+    /**
+     * @return 当前使用的慢调用阈值（毫秒）
+     */
+    public long getSlowThresholdMS() {
+        return slowThresholdMS;
+    }
+}
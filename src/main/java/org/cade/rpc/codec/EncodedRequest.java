@@ -0,0 +1,85 @@
+package org.cade.rpc.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.cade.rpc.compress.Compression;
+import org.cade.rpc.message.Request;
+import org.cade.rpc.serialize.Serializer;
+
+/**
+ * 一次调用的请求体，第一次请求、重试、对冲、forking 的每一路共用同一个实例。
+ * <p>
+ * 第一次写出时由 {@link MsgEncoder} 序列化、压缩一次，结果缓存为引用计数的 ByteBuf；
+ * 之后发往任何 provider 都只写 {@code retainedDuplicate()}，请求 ID 和剩余时间放在帧头里单独写，
+ * 不会修改共享的字节，多个 EventLoop 可以同时发送。
+ * <p>
+ * 调用结束后由调用方 {@link #release()}；之后仍有发送（例如晚到的对冲请求）时退化为每次单独编码。
+ */
+public class EncodedRequest {
+    private final Request request;
+    // 以下字段由 this 保护
+    private ByteBuf body;
+    private int codecKey = -1;
+    private byte serializeAndCompression;
+    private boolean released;
+
+    public EncodedRequest(Request request) {
+        this.request = request;
+    }
+
+    public Request getRequest() {
+        return request;
+    }
+
+    /**
+     * @return 编码后的请求体，调用方负责释放；序列化/压缩配置与缓存不一致或已经 release 时返回一份单独编码的结果
+     */
+    synchronized Body retainedBody(Serializer serializer, Compression compression) {
+        int key = (serializer.code() << 4) | compression.code();
+        if (released || (body != null && codecKey != key)) {
+            return encode(serializer, compression);
+        }
+        if (body == null) {
+            Body encoded = encode(serializer, compression);
+            body = encoded.payload;
+            codecKey = key;
+            serializeAndCompression = encoded.serializeAndCompression;
+        }
+        return new Body(body.retainedDuplicate(), serializeAndCompression);
+    }
+
+    private Body encode(Serializer serializer, Compression compression) {
+        byte[] payload = serializer.serialize(request);
+        // 根据数据大小动态判断是否需要压缩
+        int actualCompressionCode = 0;
+        if (compression.needCompress(payload)) {
+            actualCompressionCode = compression.code();
+            payload = compression.compress(payload);
+        }
+        return new Body(Unpooled.wrappedBuffer(payload), (byte) ((serializer.code() << 4) | actualCompressionCode));
+    }
+
+    /**
+     * 调用结束，释放缓存的请求体。已经写出的 duplicate 各自持有引用，不受影响
+     */
+    public synchronized void release() {
+        if (released) {
+            return;
+        }
+        released = true;
+        if (body != null) {
+            body.release();
+            body = null;
+        }
+    }
+
+    static class Body {
+        final ByteBuf payload;
+        final byte serializeAndCompression;
+
+        Body(ByteBuf payload, byte serializeAndCompression) {
+            this.payload = payload;
+            this.serializeAndCompression = serializeAndCompression;
+        }
+    }
+}
@@ -6,7 +6,9 @@ import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 import io.netty.util.AttributeKey;
 import org.cade.rpc.compress.Compression;
 import org.cade.rpc.compress.CompressionManager;
+import org.cade.rpc.limit.ByteBudget;
 import org.cade.rpc.message.Message;
+import org.cade.rpc.message.Request;
 import org.cade.rpc.serialize.Serializer;
 import org.cade.rpc.serialize.SerializerManager;
 
@@ -18,16 +20,23 @@ import java.util.Arrays;
  * 性能优化：第一次解码时从 Channel 属性中读取序列化器管理器和压缩器管理器并缓存到实例字段，
  * 后续解码操作直接使用缓存值，避免重复查找。
  * <p>
+ * 字节预算：channel 上设置了 {@link #BYTE_BUDGET_KEY} 时，读到长度前缀就按帧长度占用预算，帧解码完成后归还，
+ * 大帧在累积期间占用的内存可以被及时看到。未收完的帧不参与暂停读取的判断，见 {@link ByteBudget}。
+ * <p>
  * 注意：此 Handler 未标注 @Sharable，每个 Channel 拥有独立实例。
  */
 public class MsgDecoder extends LengthFieldBasedFrameDecoder {
     private final static int MaxLength = 1024 * 1024;
     private static final AttributeKey<SerializerManager> SERIALIZER_MANGER_ATTRIBUTE_KEY = AttributeKey.valueOf("serializerMangerKey");
     private static final AttributeKey<CompressionManager> COMPRESSION_MANAGER_ATTRIBUTE_KEY = AttributeKey.valueOf("compressionManagerKey");
+    public static final AttributeKey<ByteBudget> BYTE_BUDGET_KEY = AttributeKey.valueOf("byteBudgetKey");
 
     // 缓存的管理器实例，使用 volatile 保证跨线程可见性
     private volatile SerializerManager serializerManger;
     private volatile CompressionManager compressionManager;
+    // 字节预算和当前帧占用的字节数，只在 EventLoop 上访问
+    private ByteBudget byteBudget;
+    private long reservedFrameBytes;
 
     public MsgDecoder() {
         super(MaxLength, 0, Integer.BYTES, 0, Integer.BYTES);
@@ -40,7 +49,18 @@ public class MsgDecoder extends LengthFieldBasedFrameDecoder {
             initializeManagers(ctx);
         }
 
-        ByteBuf frame = (ByteBuf) super.decode(ctx, in);
+        if (byteBudget != null && reservedFrameBytes == 0 && in.readableBytes() >= Integer.BYTES) {
+            // 超过 MaxLength 的帧会被父类拒绝，最多按 MaxLength 占用
+            reservedFrameBytes = Math.min(in.getUnsignedInt(in.readerIndex()), MaxLength) + Integer.BYTES;
+            byteBudget.reserveReceiving(reservedFrameBytes);
+        }
+        ByteBuf frame;
+        try {
+            frame = (ByteBuf) super.decode(ctx, in);
+        } catch (Exception e) {
+            releaseFrameBytes();
+            throw e;
+        }
         if (frame == null) {
             return null;
         }
@@ -52,6 +72,9 @@ public class MsgDecoder extends LengthFieldBasedFrameDecoder {
             }
             byte[] version = new byte[Message.Version.length];
             frame.readBytes(version);
+            if (!Arrays.equals(version, Message.Version)) {
+                throw new IllegalArgumentException("version mismatch: " + new String(version));
+            }
 
             byte messageType = frame.readByte();
 
@@ -62,6 +85,10 @@ public class MsgDecoder extends LengthFieldBasedFrameDecoder {
             // 后4位为压缩类型
             int compressionCode = serializeAndCompressionByte & 0x0F;
 
+            // 请求 ID 和剩余时间只有 REQUEST 使用
+            int requestID = frame.readInt();
+            int timeoutMS = frame.readInt();
+
             // 读取 payload
             byte[] payload = new byte[frame.readableBytes()];
             frame.readBytes(payload);
@@ -86,12 +113,31 @@ public class MsgDecoder extends LengthFieldBasedFrameDecoder {
             }
 
             // 直接反序列化为对应的消息类型
-            return serializer.deserialize(payload, msgType.getMessageClass());
+            Object msg = serializer.deserialize(payload, msgType.getMessageClass());
+            if (msg instanceof Request request) {
+                request.setRequestID(requestID);
+                request.setTimeoutMS(timeoutMS);
+            }
+            return msg;
         } finally {
             frame.release();
+            releaseFrameBytes();
         }
     }
 
+    private void releaseFrameBytes() {
+        if (reservedFrameBytes > 0) {
+            byteBudget.releaseReceiving(reservedFrameBytes);
+            reservedFrameBytes = 0;
+        }
+    }
+
+    @Override
+    protected void handlerRemoved0(ChannelHandlerContext ctx) throws Exception {
+        // 连接关闭时还没收完的帧
+        releaseFrameBytes();
+    }
+
     /**
      * 从 Channel 属性中读取序列化器管理器和压缩器管理器，并缓存到实例字段。
      * <p>
@@ -111,5 +157,7 @@ public class MsgDecoder extends LengthFieldBasedFrameDecoder {
             // 如果没有设置，创建默认实例
             this.compressionManager = new CompressionManager();
         }
+
+        this.byteBudget = ctx.channel().attr(BYTE_BUDGET_KEY).get();
     }
 }
@@ -2,12 +2,14 @@ package org.cade.rpc.codec;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
 import io.netty.handler.codec.MessageToByteEncoder;
 import io.netty.util.AttributeKey;
 import lombok.extern.slf4j.Slf4j;
 import org.cade.rpc.compress.Compression;
 import org.cade.rpc.compress.CompressionManager;
 import org.cade.rpc.message.Message;
+import org.cade.rpc.message.Request;
 import org.cade.rpc.serialize.Serializer;
 import org.cade.rpc.serialize.SerializerManager;
 
@@ -20,6 +22,9 @@ import org.cade.rpc.serialize.SerializerManager;
  * 智能压缩：每次编码时根据数据大小动态判断是否需要压缩。对于小数据，即使用户配置了压缩，
  * 也会跳过压缩步骤（压缩代码回退到 0），避免压缩开销大于收益。
  * <p>
+ * 编码一次：消费者发送的是 {@link RequestFrame}，请求体只在第一次发送时编码，之后的重试、对冲、forking
+ * 只写新的帧头和共享请求体的 {@code retainedDuplicate()}，见 {@link EncodedRequest}。
+ * <p>
  * 注意：此 Handler 未标注 @Sharable，每个 Channel 拥有独立实例。
  */
 @Slf4j(topic = "encoder")
@@ -37,6 +42,22 @@ public class MsgEncoder extends MessageToByteEncoder<Object> {
     private volatile Compression configuredCompression;
     private volatile String configuredCompressionCode;
 
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (!(msg instanceof RequestFrame frame)) {
+            super.write(ctx, msg, promise);
+            return;
+        }
+        if (serializer == null) {
+            initializeCodecs(ctx);
+        }
+        EncodedRequest.Body body = frame.getRequest().retainedBody(serializer, configuredCompression);
+        ByteBuf header = ctx.alloc().buffer(Message.HEADER_LENGTH);
+        writeHeader(header, Message.MessageType.REQUEST, body.serializeAndCompression,
+                frame.getRequestID(), frame.getTimeoutMS(), body.payload.readableBytes());
+        ctx.write(ctx.alloc().compositeBuffer(2).addComponents(true, header, body.payload), promise);
+    }
+
     @Override
     protected void encode(ChannelHandlerContext ctx, Object msg, ByteBuf out) {
         Message.MessageType messageType = Message.getMessageType(msg.getClass());
@@ -50,9 +71,6 @@ public class MsgEncoder extends MessageToByteEncoder<Object> {
             initializeCodecs(ctx);
         }
 
-        byte[] magic = Message.Magic;
-        byte[] version = Message.Version;
-
         // 序列化
         byte[] payload = serializer.serialize(msg);
 
@@ -67,16 +85,28 @@ public class MsgEncoder extends MessageToByteEncoder<Object> {
         // 动态计算序列化和压缩类型字节：前4位为序列化类型，后4位为压缩类型
         byte serializeAndCompressionByte = (byte) ((serializer.code() << 4) | actualCompressionCode);
 
-        // 计算总长度
-        int length = magic.length + Byte.BYTES * 2 + version.length + payload.length;
+        int requestID = 0;
+        int timeoutMS = 0;
+        if (msg instanceof Request request) {
+            requestID = request.getRequestID();
+            timeoutMS = request.getTimeoutMS();
+        }
+        writeHeader(out, messageType, serializeAndCompressionByte, requestID, timeoutMS, payload.length);
+        out.writeBytes(payload);
+    }
 
-        // 写入数据
-        out.writeInt(length);
-        out.writeBytes(magic);
-        out.writeBytes(version);
+    /**
+     * 写入帧头，长度字段不包括它自己
+     */
+    private static void writeHeader(ByteBuf out, Message.MessageType messageType, byte serializeAndCompression,
+                                    int requestID, int timeoutMS, int payloadLength) {
+        out.writeInt(Message.HEADER_LENGTH - Integer.BYTES + payloadLength);
+        out.writeBytes(Message.Magic);
+        out.writeBytes(Message.Version);
         out.writeByte(messageType.getCode());
-        out.writeByte(serializeAndCompressionByte);
-        out.writeBytes(payload);
+        out.writeByte(serializeAndCompression);
+        out.writeInt(requestID);
+        out.writeInt(timeoutMS);
     }
 
     /**
@@ -0,0 +1,25 @@
+package org.cade.rpc.codec;
+
+import lombok.Getter;
+
+/**
+ * 消费者连接写给 {@link MsgEncoder} 的一次请求发送：共享的请求体加上这次发送自己的帧头字段
+ */
+@Getter
+public class RequestFrame {
+    private final EncodedRequest request;
+    /**
+     * 连接内分配的请求 ID
+     */
+    private final int requestID;
+    /**
+     * 剩余时间预算（毫秒）
+     */
+    private final int timeoutMS;
+
+    public RequestFrame(EncodedRequest request, int requestID, int timeoutMS) {
+        this.request = request;
+        this.requestID = requestID;
+        this.timeoutMS = timeoutMS;
+    }
+}
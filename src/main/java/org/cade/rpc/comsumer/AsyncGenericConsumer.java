@@ -0,0 +1,10 @@
+package org.cade.rpc.comsumer;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 异步泛化调用，参数含义与 {@link GenericConsumer#$invoke} 相同，调用线程不会等待响应
+ */
+public interface AsyncGenericConsumer {
+    CompletableFuture<Object> $invokeAsync(String serviceName, String methodName, String[] paramsType, Object[] args);
+}
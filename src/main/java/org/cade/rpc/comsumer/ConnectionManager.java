@@ -2,103 +2,430 @@ package org.cade.rpc.comsumer;
 
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.*;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollDomainSocketChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.channel.unix.DomainSocketAddress;
+import io.netty.handler.flush.FlushConsolidationHandler;
 import io.netty.handler.timeout.IdleStateHandler;
 import lombok.extern.slf4j.Slf4j;
 import org.cade.rpc.codec.MsgEncoder;
 import org.cade.rpc.codec.MsgDecoder;
+import org.cade.rpc.codec.RequestFrame;
 import org.cade.rpc.compress.CompressionManager;
+import org.cade.rpc.excpetion.LimitException;
+import org.cade.rpc.excpetion.RPCException;
+import org.cade.rpc.handler.ByteBudgetHandler;
 import org.cade.rpc.handler.HeartbeatHandler;
 import org.cade.rpc.handler.TrafficRecordHandler;
+import org.cade.rpc.limit.ByteBudget;
+import org.cade.rpc.message.CancelRequest;
 import org.cade.rpc.message.Response;
 import org.cade.rpc.register.Metadata;
 import org.cade.rpc.serialize.SerializerManager;
+import org.cade.rpc.transport.shm.ShmAddress;
+import org.cade.rpc.transport.shm.ShmChannel;
 
 
-import java.util.Map;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Slf4j(topic = "connection_manager")
 public class ConnectionManager {
-    private final Map<String, ChannelWrapper> channelTable;
+    /**
+     * 连接不可写时选择其他端点
+     */
+    public static final String UNWRITABLE_ROUTE = "route";
+    /**
+     * 连接不可写时等待恢复可写
+     */
+    public static final String UNWRITABLE_WAIT = "wait";
+    /**
+     * 连接不可写时直接失败
+     */
+    public static final String UNWRITABLE_FAIL = "fail";
+
+    private final Map<String, Connection> channelTable;
+    private final NioEventLoopGroup nioEventLoopGroup;
     private final Bootstrap bootstrap;
+    // epoll 不可用时为 null，此时忽略所有 unix 端点
+    private final Bootstrap unixBootstrap;
+    // 未开启 preferSharedMemory 或系统没有 /dev/shm 时为 null，此时忽略所有 shm 端点
+    private final Bootstrap shmBootstrap;
+    private final Set<String> localHosts;
     private final InflightRequestManager inflightRequestManager;
     private final ConsumerProperties properties;
     private final SerializerManager serializerManger;
     private final CompressionManager compressionManager;
+    private final ByteBudget byteBudget;
 
     public ConnectionManager(InflightRequestManager inflightRequestManager, ConsumerProperties properties) {
         channelTable = new ConcurrentHashMap<>();
+        this.nioEventLoopGroup = new NioEventLoopGroup(properties.getWorkThreadNum());
         this.bootstrap = createBootstrap(properties);
+        this.unixBootstrap = properties.isPreferUnixSocket() && Epoll.isAvailable() ? createUnixBootstrap(properties) : null;
+        this.shmBootstrap = properties.isPreferSharedMemory() && ShmAddress.isSupported() ? createShmBootstrap(properties) : null;
+        this.localHosts = collectLocalHosts();
         this.inflightRequestManager = inflightRequestManager;
         this.properties = properties;
         this.serializerManger = new SerializerManager();
         this.compressionManager = new CompressionManager();
+        this.byteBudget = new ByteBudget(properties.getMaxInflightBytes());
+    }
+
+    /**
+     * 全局字节预算：等待写出的请求帧和正在接收的响应帧占用的字节数
+     */
+    public ByteBudget getByteBudget() {
+        return byteBudget;
     }
 
     private Bootstrap createBootstrap(ConsumerProperties properties) {
         Bootstrap bootstrap = new Bootstrap();
-        NioEventLoopGroup nioEventLoopGroup = new NioEventLoopGroup(properties.getWorkThreadNum());
-        bootstrap.group(nioEventLoopGroup).channel(NioSocketChannel.class).option(ChannelOption.CONNECT_TIMEOUT_MILLIS, properties.getConnectTimeoutMS()).handler(new ChannelInitializer<NioSocketChannel>() {
-            @Override
-            protected void initChannel(NioSocketChannel nioSocketChannel) throws Exception {
-                nioSocketChannel.pipeline()
-                        .addLast(new TrafficRecordHandler())
-                        .addLast(new MsgDecoder())
-                        .addLast(new MsgEncoder())
-                        .addLast(new IdleStateHandler(30, 5, 0, TimeUnit.SECONDS))
-                        .addLast(new HeartbeatHandler())
-                        .addLast(new ConsumerHandler());
+        bootstrap.group(nioEventLoopGroup).channel(NioSocketChannel.class).option(ChannelOption.CONNECT_TIMEOUT_MILLIS, properties.getConnectTimeoutMS())
+                .option(ChannelOption.WRITE_BUFFER_WATER_MARK, writeBufferWaterMark(properties)).handler(new ConsumerChannelInitializer());
+        return bootstrap;
+    }
+
+    private Bootstrap createUnixBootstrap(ConsumerProperties properties) {
+        Bootstrap bootstrap = new Bootstrap();
+        EpollEventLoopGroup epollEventLoopGroup = new EpollEventLoopGroup(properties.getWorkThreadNum());
+        bootstrap.group(epollEventLoopGroup).channel(EpollDomainSocketChannel.class).option(ChannelOption.CONNECT_TIMEOUT_MILLIS, properties.getConnectTimeoutMS())
+                .option(ChannelOption.WRITE_BUFFER_WATER_MARK, writeBufferWaterMark(properties)).handler(new ConsumerChannelInitializer());
+        return bootstrap;
+    }
+
+    /**
+     * 共享内存连接复用 TCP 的 NIO EventLoop，收到的数据由连接自己的轮询线程投递到 EventLoop
+     */
+    private Bootstrap createShmBootstrap(ConsumerProperties properties) {
+        Bootstrap bootstrap = new Bootstrap();
+        bootstrap.group(nioEventLoopGroup).channel(ShmChannel.class)
+                .option(ChannelOption.WRITE_BUFFER_WATER_MARK, writeBufferWaterMark(properties)).handler(new ConsumerChannelInitializer());
+        return bootstrap;
+    }
+
+    private static WriteBufferWaterMark writeBufferWaterMark(ConsumerProperties properties) {
+        return new WriteBufferWaterMark(properties.getWriteBufferLowWaterMark(), properties.getWriteBufferHighWaterMark());
+    }
+
+    private class ConsumerChannelInitializer extends ChannelInitializer<Channel> {
+        @Override
+        protected void initChannel(Channel channel) throws Exception {
+            channel.pipeline()
+                    .addLast(new FlushConsolidationHandler())
+                    .addLast(new TrafficRecordHandler())
+                    .addLast(new ByteBudgetHandler(byteBudget, properties.getMaxConnectionInflightBytes(), null))
+                    .addLast(new MsgDecoder())
+                    .addLast(new MsgEncoder())
+                    .addLast(new IdleStateHandler(30, 5, 0, TimeUnit.SECONDS))
+                    .addLast(new HeartbeatHandler())
+                    .addLast(new ConsumerHandler());
+        }
+    }
+
+    private static Set<String> collectLocalHosts() {
+        Set<String> hosts = new HashSet<>();
+        hosts.add("localhost");
+        try {
+            for (NetworkInterface networkInterface : Collections.list(NetworkInterface.getNetworkInterfaces())) {
+                for (InetAddress address : Collections.list(networkInterface.getInetAddresses())) {
+                    hosts.add(address.getHostAddress());
+                }
+            }
+        } catch (SocketException e) {
+            log.warn("collect local address error", e);
+        }
+        return hosts;
+    }
+
+    /**
+     * 从注册中心返回的端点中挑选本次调用可用的端点。
+     * <p>
+     * 同一个 provider（serviceName + host + port）可能同时注册了 tcp、unix、shm 多个端点，
+     * 只保留当前进程可用且优先级最高的一个：shm > unix > tcp。
+     * 其他机器的 unix/shm 端点，或者本机看不到对应文件的端点全部丢弃。
+     */
+    public List<Metadata> resolveEndpoints(List<Metadata> metadataList) {
+        Map<String, Metadata> best = new LinkedHashMap<>();
+        for (Metadata metadata : metadataList) {
+            if (endpointRank(metadata) < 0) {
+                continue;
+            }
+            String provider = metadata.getServiceName() + "|" + metadata.getHost() + "|" + metadata.getPort();
+            best.merge(provider, metadata, (old, cur) -> endpointRank(cur) > endpointRank(old) ? cur : old);
+        }
+        return new ArrayList<>(best.values());
+    }
+
+    /**
+     * 端点优先级，不可用的端点返回 -1
+     */
+    private int endpointRank(Metadata metadata) {
+        String protocol = metadata.getProtocol();
+        if (Metadata.SHM.equals(protocol)) {
+            return isLocalEndpoint(shmBootstrap, metadata) ? 2 : -1;
+        }
+        if (Metadata.UNIX.equals(protocol)) {
+            return isLocalEndpoint(unixBootstrap, metadata) ? 1 : -1;
+        }
+        return protocol == null || Metadata.TCP.equals(protocol) ? 0 : -1;
+    }
+
+    private boolean isLocalEndpoint(Bootstrap bootstrap, Metadata metadata) {
+        return bootstrap != null
+                && metadata.getPath() != null
+                && localHosts.contains(metadata.getHost())
+                && Files.exists(Path.of(metadata.getPath()));
+    }
+
+    private String getKey(Metadata metadata) {
+        if (Metadata.UNIX.equals(metadata.getProtocol())) {
+            return "unix:" + metadata.getPath();
+        }
+        if (Metadata.SHM.equals(metadata.getProtocol())) {
+            return "shm:" + metadata.getPath();
+        }
+        return metadata.getHost() + ":" + metadata.getPort();
+    }
+
+    /**
+     * 获取到端点的连接，没有则发起建连，不等待建连完成。
+     * <p>
+     * 同一地址的端点共享一个 {@link Connection}，只在端点第一次取连接时按地址查表，之后直接使用端点上的引用。
+     * 建连的结果通过 Netty 的回调完成，调用线程和 EventLoop 都不会阻塞；连接已经建立时返回已完成的 future。
+     *
+     * @return 建连成功时完成为 channel，建连失败或超时（connectTimeoutMS）时完成为 null
+     */
+    public CompletableFuture<Channel> getChannel(Endpoint endpoint) {
+        Connection connection = endpoint.connection;
+        if (connection == null) {
+            Metadata metadata = endpoint.getMetadata();
+            connection = channelTable.computeIfAbsent(getKey(metadata), k -> new Connection(k, metadata));
+            endpoint.connection = connection;
+        }
+        return connection.get();
+    }
+
+    /**
+     * 等待连接恢复可写（写缓冲回落到低水位以下）
+     *
+     * @return 恢复可写时完成；超过 waitMS 时以可重试的 {@link LimitException} 失败，连接断开时以 {@link RPCException} 失败
+     */
+    CompletableFuture<Void> awaitWritable(Channel channel, long waitMS) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        channel.eventLoop().execute(() -> {
+            ConsumerHandler handler = channel.pipeline().get(ConsumerHandler.class);
+            if (channel.isWritable() || handler == null) {
+                // 连接已经关闭时交给写出失败处理
+                future.complete(null);
+                return;
             }
+            handler.awaitWritable(channel, future, waitMS);
         });
-        return bootstrap;
+        return future;
     }
 
-    private String getKey(String host, int port) {
-        return host + ":" + port;
+    private ChannelFuture connect(Metadata metadata) {
+        if (Metadata.UNIX.equals(metadata.getProtocol())) {
+            if (unixBootstrap == null) {
+                throw new IllegalStateException("unix socket not supported, endpoint:" + metadata);
+            }
+            return unixBootstrap.connect(new DomainSocketAddress(metadata.getPath()));
+        }
+        if (Metadata.SHM.equals(metadata.getProtocol())) {
+            if (shmBootstrap == null) {
+                throw new IllegalStateException("shared memory not supported, endpoint:" + metadata);
+            }
+            return shmBootstrap.connect(new ShmAddress(Path.of(metadata.getPath())));
+        }
+        return bootstrap.connect(metadata.getHost(), metadata.getPort());
     }
 
-    public Channel getChannel(Metadata metadata) {
-        String key = getKey(metadata.getHost(), metadata.getPort());
-        ChannelWrapper cw = channelTable.computeIfAbsent(key, (k) -> {
-            Channel channel = null;
+    /**
+     * 到一个地址的连接。连接断开后清空，下一次取连接时重新建立
+     */
+    class Connection {
+        private final String key;
+        private final Metadata metadata;
+        private final AtomicReference<CompletableFuture<Channel>> channel = new AtomicReference<>();
+
+        Connection(String key, Metadata metadata) {
+            this.key = key;
+            this.metadata = metadata;
+        }
+
+        /**
+         * 连接尚未建立时视为可写
+         */
+        boolean isWritable() {
+            CompletableFuture<Channel> future = channel.get();
+            Channel ch = future == null ? null : future.getNow(null);
+            return ch == null || ch.isWritable();
+        }
+
+        CompletableFuture<Channel> get() {
+            while (true) {
+                CompletableFuture<Channel> future = channel.get();
+                if (future == null) {
+                    CompletableFuture<Channel> connecting = new CompletableFuture<>();
+                    future = channel.compareAndExchange(null, connecting);
+                    if (future == null) {
+                        startConnect(connecting);
+                        return connecting;
+                    }
+                }
+                // 已经建立的连接断开后，closeFuture 的回调可能还没来得及清空
+                if (future.isDone()) {
+                    Channel ch = future.getNow(null);
+                    if (ch == null || !ch.isActive()) {
+                        channel.compareAndSet(future, null);
+                        continue;
+                    }
+                }
+                return future;
+            }
+        }
+
+        /**
+         * 建连失败时清空并以 null 完成，下一次取连接时重新建立；超时由 CONNECT_TIMEOUT_MILLIS 控制
+         */
+        private void startConnect(CompletableFuture<Channel> future) {
             try {
-                ChannelFuture cf = bootstrap.connect(metadata.getHost(), metadata.getPort()).sync();
-                channel = cf.channel();
-                channel.closeFuture().addListener(future -> {
-                    channelTable.remove(key);
-                    inflightRequestManager.clearChannel(metadata);
+                connect(metadata).addListener((ChannelFuture cf) -> {
+                    if (!cf.isSuccess()) {
+                        log.error("connect error {} err:{}", key, cf.cause());
+                        channel.compareAndSet(future, null);
+                        future.complete(null);
+                        return;
+                    }
+                    cf.channel().closeFuture().addListener(f -> channel.compareAndSet(future, null));
+                    future.complete(cf.channel());
                 });
-            } catch (InterruptedException e) {
-                log.error("connect error {}:{} err:{}", metadata.getHost(), metadata.getPort(), e);
+            } catch (RuntimeException e) {
+                log.error("connect error {} err:{}", key, e);
+                channel.compareAndSet(future, null);
+                future.complete(null);
             }
-            return new ChannelWrapper(channel);
-        });
-        Channel channel = cw.channel;
-        if (channel == null || !channel.isActive()) {
-            channelTable.remove(key);
-            channel = null;
         }
-        return channel;
     }
 
-    private static class ChannelWrapper {
-        private final Channel channel;
+    /**
+     * 维护本连接的在途请求表，所有方法都在 channel 的 EventLoop 上执行
+     */
+    private class ConsumerHandler extends ChannelDuplexHandler {
+        private final InflightTable inflightTable = inflightRequestManager.createTable();
+        // 等待连接恢复可写的调用，只在 EventLoop 上访问
+        private final ArrayDeque<CompletableFuture<Void>> writableWaiters = new ArrayDeque<>();
+        private ScheduledFuture<?> expireTask;
 
-        ChannelWrapper(Channel channel) {
-            this.channel = channel;
+        void awaitWritable(Channel channel, CompletableFuture<Void> waiter, long waitMS) {
+            writableWaiters.add(waiter);
+            ScheduledFuture<?> timeout = channel.eventLoop().schedule(() -> {
+                writableWaiters.remove(waiter);
+                waiter.completeExceptionally(new LimitException("provider connection unwritable", true));
+            }, waitMS, TimeUnit.MILLISECONDS);
+            waiter.whenComplete((v, e) -> timeout.cancel(false));
+        }
+
+        @Override
+        public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+            // 按等待的先后放行；放行的请求写出后连接可能再次不可写，剩下的继续等
+            CompletableFuture<Void> waiter;
+            while (ctx.channel().isWritable() && (waiter = writableWaiters.poll()) != null) {
+                waiter.complete(null);
+            }
+            ctx.fireChannelWritabilityChanged();
+        }
+
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+            if (!(msg instanceof InflightFuture inflight)) {
+                ctx.write(msg, promise);
+                return;
+            }
+            // 连接或全局的在途字节数已满，不再编码新的请求
+            ByteBudget budget = ctx.channel().attr(MsgDecoder.BYTE_BUDGET_KEY).get();
+            if (budget != null && budget.isExhausted()) {
+                reject(inflight, promise, "byte budget exhausted");
+                return;
+            }
+            if (!inflightTable.register(inflight)) {
+                reject(inflight, promise, "inflight table full");
+                return;
+            }
+            inflight.markRegistered();
+            int requestID = inflight.getRequestID();
+            inflight.onCancel(() -> ctx.executor().execute(() -> cancel(ctx, requestID, inflight)));
+            long remainingMS = TimeUnit.NANOSECONDS.toMillis(inflight.getDeadlineNanos() - System.nanoTime());
+            int timeoutMS = (int) Math.min(Integer.MAX_VALUE, Math.max(1, remainingMS));
+            ctx.write(new RequestFrame(inflight.getRequest(), requestID, timeoutMS), promise.unvoid()).addListener(f -> {
+                if (f.isSuccess()) {
+                    return;
+                }
+                InflightFuture removed = inflightTable.remove(requestID);
+                if (removed != null) {
+                    inflightRequestManager.completeExceptionRequst(removed, f.cause());
+                }
+            });
         }
-    }
 
-    private class ConsumerHandler extends SimpleChannelInboundHandler<Response> {
+        private void reject(InflightFuture inflight, ChannelPromise promise, String message) {
+            LimitException limitException = new LimitException(message);
+            inflight.markRegistered();
+            inflightRequestManager.completeExceptionRequst(inflight, limitException);
+            promise.tryFailure(limitException);
+        }
 
         @Override
-        protected void channelRead0(ChannelHandlerContext channelHandlerContext, Response response) throws Exception {
-            inflightRequestManager.completeRequst(response.getRequestId(), response);
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            if (!(msg instanceof Response response)) {
+                ctx.fireChannelRead(msg);
+                return;
+            }
+            InflightFuture inflight = inflightTable.remove(response.getRequestId());
+            if (inflight == null) {
+                // 超时或被取消（forking、对冲落败）的请求已经移出 inflight 表，provider 随后到达的响应是正常情况
+                log.debug("can not find request id:{} channel:{}", response.getRequestId(), ctx.channel());
+                return;
+            }
+            inflightRequestManager.completeRequst(inflight, response);
         }
 
+        /**
+         * 调用方取消了请求：移除、归还许可，并通知 provider 不必再处理
+         */
+        private void cancel(ChannelHandlerContext ctx, int requestID, InflightFuture inflight) {
+            if (!inflightTable.remove(requestID, inflight)) {
+                return;
+            }
+            inflightRequestManager.completeExceptionRequst(inflight, new CancellationException());
+            ctx.writeAndFlush(new CancelRequest(requestID));
+        }
+
+        private void expireTimeoutRequest(ChannelHandlerContext ctx) {
+            int expired = inflightTable.expire(System.nanoTime(), inflight -> {
+                inflightRequestManager.completeExceptionRequst(inflight, new TimeoutException());
+                // 超时的请求 provider 可能还在排队，通知它不必再执行
+                ctx.write(new CancelRequest(inflight.getRequestID()));
+            });
+            if (expired > 0) {
+                ctx.flush();
+            }
+        }
 
         @Override
         public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
@@ -109,6 +436,15 @@ public class ConnectionManager {
         @Override
         public void channelInactive(ChannelHandlerContext ctx) throws Exception {
             log.info("Service{} close", ctx.channel().remoteAddress());
+            if (expireTask != null) {
+                expireTask.cancel(false);
+            }
+            RPCException closed = new RPCException("provider connection closed");
+            inflightTable.drain(inflight -> inflightRequestManager.completeExceptionRequst(inflight, closed));
+            CompletableFuture<Void> waiter;
+            while ((waiter = writableWaiters.poll()) != null) {
+                waiter.completeExceptionally(closed);
+            }
             ctx.channel().attr(MsgEncoder.SERIALIZE_KEY).set(null);
             ctx.channel().attr(MsgEncoder.SERIALIZER_MANGER_ATTRIBUTE_KEY).set(null);
             ctx.channel().attr(MsgEncoder.COMPRESSION_KEY).set(null);
@@ -119,6 +455,8 @@ public class ConnectionManager {
         @Override
         public void channelActive(ChannelHandlerContext ctx) throws Exception {
             log.info("New Service:{}", ctx.channel().remoteAddress());
+            long interval = properties.getInflightSweepIntervalMS();
+            expireTask = ctx.executor().scheduleWithFixedDelay(() -> expireTimeoutRequest(ctx), interval, interval, TimeUnit.MILLISECONDS);
             ctx.channel().attr(MsgEncoder.SERIALIZE_KEY).set(properties.getSerializer());
             ctx.channel().attr(MsgEncoder.SERIALIZER_MANGER_ATTRIBUTE_KEY).set(serializerManger);
 
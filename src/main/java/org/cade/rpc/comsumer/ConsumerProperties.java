@@ -1,8 +1,14 @@
 package org.cade.rpc.comsumer;
 
 import lombok.Data;
+import org.cade.rpc.breaker.CircuitBreakerConfig;
+import org.cade.rpc.breaker.CircuitBreakerManager;
+import org.cade.rpc.limit.RateLimitConfig;
 import org.cade.rpc.register.RegistryConfig;
 
+import java.util.HashMap;
+import java.util.Map;
+
 @Data
 public class ConsumerProperties {
     private Integer workThreadNum = 4;
@@ -13,9 +19,128 @@ public class ConsumerProperties {
     private String retryPolicy = "same";
     private int rpcPreSecond = 100000;
     private int rpcPreChannelSecond = 1000000;
+    /**
+     * 分层令牌桶限流，key 为 *（全局）、服务名 或 服务名#方法名，每项单独配置速率和突发量；端点这一级使用 rpcPreChannelSecond
+     */
+    private Map<String, RateLimitConfig> rateLimits = new HashMap<>();
     private double slowRequestBreakRatio = 0.5;
+    /**
+     * 熔断器实现：sliding_window 或 response_time
+     */
+    private String circuitBreaker = CircuitBreakerManager.SLIDING_WINDOW;
+    /**
+     * sliding_window 熔断器的配置，key 为服务名或 服务名#方法名；未配置的服务使用默认配置，失败比例取 slowRequestBreakRatio
+     */
+    private Map<String, CircuitBreakerConfig> circuitBreakers = new HashMap<>();
     private String serializer = "json";
     private String compress = "zstd";
+    /**
+     * provider 与消费者同机且注册了 unix 端点时，优先走 Unix Domain Socket
+     */
+    private boolean preferUnixSocket = true;
+    /**
+     * provider 与消费者同机且注册了 shm 端点时，优先走共享内存（实验特性，默认关闭，优先级高于 unix 端点）
+     */
+    private boolean preferSharedMemory = false;
+    /**
+     * 同一 JVM 中存在本地导出的服务时直接进程内调用
+     */
+    private boolean injvm = true;
+    /**
+     * 进程内调用时对参数和返回值做深拷贝，保持与远程调用相同的隔离语义
+     */
+    private boolean injvmDeepCopy = true;
+    /**
+     * 单个连接的在途请求表容量，超过后新请求按限流失败
+     */
+    private int inflightTableCapacity = 65536;
+    /**
+     * 连接在 EventLoop 上扫描超时请求的间隔，即请求超时的检测精度
+     */
+    private long inflightSweepIntervalMS = 10;
+    /**
+     * 同时在途的同步调用上限，0 表示不限制。
+     * 调用方使用虚拟线程时，同步调用只会挂起虚拟线程，用该信号量代替线程池大小限制并发；超过上限时等待，最长 requestTimeoutMS
+     */
+    private int maxBlockingCalls = 0;
+    /**
+     * 每个服务的重试预算：每次首次请求成功积累的重试次数，即重试量与成功请求量之比的上限，0 表示不限制重试
+     */
+    private double retryBudgetRatio = 0.1;
+    /**
+     * 重试预算每秒保底补充的重试次数，保证低流量服务也能重试
+     */
+    private int retryBudgetMinPerSecond = 10;
+    /**
+     * 重试预算最多积累的重试次数
+     */
+    private int retryBudgetMaxTokens = 100;
+    /**
+     * hedged 重试策略每次调用最多追加的对冲请求数
+     */
+    private int maxHedges = 1;
+    /**
+     * 异常检测：同一地址连续失败（超时、连接失败、provider 返回错误）多少次后驱逐，0 表示不按失败驱逐
+     */
+    private int outlierConsecutiveErrors = 5;
+    /**
+     * 异常检测比较端点延迟的周期
+     */
+    private long outlierIntervalMS = 10000;
+    /**
+     * 第一次驱逐的时长，之后每次翻倍
+     */
+    private long outlierBaseEjectionMS = 30000;
+    /**
+     * 驱逐时长上限
+     */
+    private long outlierMaxEjectionMS = 300000;
+    /**
+     * 一个服务最多排除的端点比例（百分比），至少允许排除一个，0 表示关闭异常检测
+     */
+    private int outlierMaxEjectionPercent = 10;
+    /**
+     * 端点的延迟中位数超过集群中位数多少倍时驱逐，0 表示不按延迟驱逐
+     */
+    private double outlierLatencyFactor = 3.0;
+    /**
+     * 每个端点使用自适应并发限流（TCP Vegas），根据请求耗时相对无负载耗时的变化调整在途请求上限。
+     * 开启后每个端点的在途请求不超过 adaptiveMaxLimit，默认关闭
+     */
+    private boolean adaptiveLimit = false;
+    /**
+     * 自适应并发限流的初始上限
+     */
+    private int adaptiveInitialLimit = 100;
+    /**
+     * 自适应并发限流的上限最大值
+     */
+    private int adaptiveMaxLimit = 1000;
+    /**
+     * 全局在途字节数上限：等待写出的请求帧和正在接收的响应帧，超过后新请求按限流失败，0 表示不限制
+     */
+    private long maxInflightBytes = 256L * 1024 * 1024;
+    /**
+     * 单个连接的在途字节数上限，超过后发往该连接的新请求按限流失败，0 表示不限制
+     */
+    private long maxConnectionInflightBytes = 64L * 1024 * 1024;
+    /**
+     * 连接写缓冲的低水位（字节），回落到低水位以下后连接恢复可写
+     */
+    private int writeBufferLowWaterMark = 32 * 1024;
+    /**
+     * 连接写缓冲的高水位（字节），待写出的请求超过高水位后连接不可写
+     */
+    private int writeBufferHighWaterMark = 64 * 1024;
+    /**
+     * 连接不可写时的处理方式：route 选择端点时避开不可写的连接，都不可写时按 fail 处理；
+     * wait 最多等待 unwritableWaitMS 恢复可写；fail 直接抛出可重试的 {@link org.cade.rpc.excpetion.LimitException}
+     */
+    private String unwritablePolicy = ConnectionManager.UNWRITABLE_ROUTE;
+    /**
+     * unwritablePolicy 为 wait 时最多等待的时间
+     */
+    private long unwritableWaitMS = 10;
 
     private RegistryConfig registryConfig = new RegistryConfig();
 }
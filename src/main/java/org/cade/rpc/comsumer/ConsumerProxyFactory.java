@@ -4,24 +4,31 @@ import io.netty.channel.*;
 import lombok.extern.slf4j.Slf4j;
 import org.cade.rpc.breaker.CircuitBreaker;
 import org.cade.rpc.breaker.CircuitBreakerManager;
+import org.cade.rpc.codec.EncodedRequest;
+import org.cade.rpc.context.RpcContext;
+import org.cade.rpc.excpetion.LimitException;
 import org.cade.rpc.excpetion.RPCException;
 import org.cade.rpc.fallback.CacheFallback;
 import org.cade.rpc.fallback.DefaultFallback;
 import org.cade.rpc.fallback.Fallback;
 import org.cade.rpc.fallback.MockFallback;
+import org.cade.rpc.handler.WriteCoalescer;
 import org.cade.rpc.interceptor.InterceptorConfig;
 import org.cade.rpc.interceptor.Interceptor; // 需要引入
 import org.cade.rpc.interceptor.InterceptorAnnotationUtil; // 需要引入
 import org.cade.rpc.interceptor.InterceptorChain; // 需要引入
 import org.cade.rpc.interceptor.InvocationContext; // 需要引入
 
+import org.cade.rpc.limit.ByteBudget;
 import org.cade.rpc.loadbalance.LoadBalancer;
 import org.cade.rpc.loadbalance.LoadBalancerManager;
 import org.cade.rpc.message.Request;
 import org.cade.rpc.message.Response;
 import org.cade.rpc.metrics.RPCCallMetrics;
+import org.cade.rpc.outlier.OutlierDetector;
+import org.cade.rpc.provider.InJvmRegistry;
+import org.cade.rpc.provider.ProviderRegistry;
 import org.cade.rpc.register.DefaultServiceRegister;
-import org.cade.rpc.register.Metadata;
 import org.cade.rpc.register.ServiceRegister;
 import org.cade.rpc.retry.*;
 import org.cade.rpc.serialize.JSONSerializer;
@@ -31,15 +38,21 @@ import org.cade.rpc.utils.BaseType;
 import org.checkerframework.checker.nullness.qual.NonNull;
 
 import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Proxy;
+import java.lang.reflect.Type;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map; // 需要引入
 import java.util.concurrent.ConcurrentHashMap; // 需要引入
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 
 // 感觉ConsumerProxyFactory中的inFlightRequestTable和ConnectionManager应该交由外部去维护
 // 为啥这里需要动态代理？一个简单的模板方法也能够解决这个问题
@@ -51,11 +64,15 @@ public class ConsumerProxyFactory {
     private final ConsumerProperties properties;
     private final ConnectionManager connectionManager;
     private final InflightRequestManager inflightRequestManager;
-    private final CircuitBreakerManager circuitBreakerManager;
+    private final EndpointManager endpointManager;
     private final Fallback fallback;
     private final RetryManager retryManager;
     private final LoadBalancerManager loadBalancerManager;
     private final Serializer jsonSerializer;
+    // maxBlockingCalls 为 0 时为 null
+    private final Semaphore blockingCallPermits;
+    // 服务名 -> 重试预算，retryBudgetRatio 为 0 时不创建
+    private final Map<String, RetryBudget> retryBudgets = new ConcurrentHashMap<>();
     private final List<org.cade.rpc.interceptor.Interceptor> globalInterceptors = new CopyOnWriteArrayList<>();
 
     // 需要一个地方存储所有 ConsumerInvocationHandler 实例，以便在 addGlobalInterceptor 时清除它们的缓存
@@ -87,19 +104,50 @@ public class ConsumerProxyFactory {
 
 
     public ConsumerProxyFactory(ConsumerProperties properties) throws Exception {
+        this(properties, new DefaultServiceRegister(properties.getRegistryConfig()));
+    }
+
+    /**
+     * @param serviceRegister 服务发现的实现，用于接入自定义注册中心
+     */
+    public ConsumerProxyFactory(ConsumerProperties properties, ServiceRegister serviceRegister) {
         this.jsonSerializer = new JSONSerializer();
         this.inflightRequestManager = new InflightRequestManager(properties);
         this.retryManager = new RetryManager();
         this.loadBalancerManager = new LoadBalancerManager();
         this.connectionManager = new ConnectionManager(inflightRequestManager, properties);
-        this.serviceRegister = new DefaultServiceRegister(properties.getRegistryConfig());
-        this.circuitBreakerManager = new CircuitBreakerManager(properties);
+        this.serviceRegister = serviceRegister;
+        this.endpointManager = new EndpointManager(connectionManager, new CircuitBreakerManager(properties),
+                new OutlierDetector(properties), properties);
 
         this.properties = properties;
         this.fallback = new DefaultFallback(new CacheFallback(), new MockFallback());
+        this.blockingCallPermits = properties.getMaxBlockingCalls() > 0 ? new Semaphore(properties.getMaxBlockingCalls()) : null;
     }
 
 
+    /**
+     * @return 服务名 -> 重试预算，用于观察各服务的重试消耗
+     */
+    public Map<String, RetryBudget> getRetryBudgets() {
+        return Collections.unmodifiableMap(retryBudgets);
+    }
+
+    /**
+     * @return 全局字节预算，用于观察等待写出的请求和正在接收的响应占用的字节数
+     */
+    public ByteBudget getByteBudget() {
+        return connectionManager.getByteBudget();
+    }
+
+    private RetryBudget retryBudget(String serviceName) {
+        if (properties.getRetryBudgetRatio() <= 0) {
+            return null;
+        }
+        return retryBudgets.computeIfAbsent(serviceName, k -> new RetryBudget(properties.getRetryBudgetRatio(),
+                properties.getRetryBudgetMinPerSecond(), properties.getRetryBudgetMaxTokens()));
+    }
+
     private LoadBalancer createLoadBalancer() {
         LoadBalancer loadBalancer = this.loadBalancerManager.getLoadBalancer(properties.getLoadBalancePolicy());
         if (loadBalancer == null) {
@@ -184,9 +232,10 @@ public class ConsumerProxyFactory {
             }
 
 
+            boolean asyncInvoke = isAsyncInvoke(method);
             if (chain.isEmpty()) {
                 // 快速路径：无拦截器，使用现有逻辑
-                return invokeRPC(method, args);
+                return asyncInvoke ? invokeRPCAsync(method, args) : invokeRPC(method, args);
             }
 
             // 构建调用上下文
@@ -199,6 +248,11 @@ public class ConsumerProxyFactory {
                     .traceID(TraceContext.getOrCreate())
                     .build();
 
+            // 异步调用在 future 完成后执行 AFTER 拦截器
+            if (asyncInvoke) {
+                return chain.executeAsync(context, () -> invokeRPCAsync(method, args));
+            }
+
             // 在 RPC 调用周围执行拦截器链
             try {
                 return chain.execute(context, () -> {
@@ -217,96 +271,446 @@ public class ConsumerProxyFactory {
         }
 
         private Object invokeRPC(Method method, Object[] args) throws Throwable {
+            if (blockingCallPermits == null) {
+                return doInvokeRPC(method, args);
+            }
+            if (!blockingCallPermits.tryAcquire(RpcContext.timeoutMS(properties.getRequestTimeoutMS()), TimeUnit.MILLISECONDS)) {
+                throw new LimitException("too many blocking calls");
+            }
+            try {
+                return doInvokeRPC(method, args);
+            } finally {
+                blockingCallPermits.release();
+            }
+        }
+
+        private Object doInvokeRPC(Method method, Object[] args) throws Throwable {
             boolean genericInvoke = isGenericInvoke(method);
             String serviceName = genericInvoke?args[0].toString() : interfaceClass.getName();
 
+            if (properties.isInjvm() && !genericInvoke) {
+                ProviderRegistry.Invocation<?> local = InJvmRegistry.find(serviceName);
+                if (local != null) {
+                    return callInJvm(local, method, args);
+                }
+            }
 
-            List<Metadata> metadataList = new ArrayList<>(serviceRegister.fetchServicelist(serviceName));
-            Metadata service = decideProvider(metadataList);
-            RPCCallMetrics metrics = RPCCallMetrics.create(service, method, args);
+            // 在服务方法内发起的调用继承上游剩余的时间预算
+            long requestTimeoutMS = RpcContext.timeoutMS(properties.getRequestTimeoutMS());
+            long functionTimeoutMS = RpcContext.timeoutMS(properties.getFunctionTimeoutMS());
+            List<Endpoint> endpoints = endpointManager.endpoints(serviceName, serviceRegister.fetchServicelist(serviceName));
+            String methodName = genericInvoke ? args[1].toString() : method.getName();
+            Endpoint service = decideProvider(endpoints, methodName);
+            RPCCallMetrics metrics = RPCCallMetrics.create(service == null ? null : service.getMetadata(), method, args);
             if (service == null) {
                 return fallback.fallback(metrics);
             }
-            Response response;
+            // 请求只构建、编码一次，重试和对冲共用
+            EncodedRequest request = new EncodedRequest(buildRequest(method, args));
+            try {
+                Response response;
+
+                RetryBudget retryBudget = retryBudget(serviceName);
+                CircuitBreaker breaker = service.getBreaker(methodName);
+                try {
+                    CompletableFuture<Response> future = callRPCAsync(request, service, requestTimeoutMS);
+                    if (isIdempotent(method)) {
+                        future = retryPolicy.hedge(createRetryContext(metrics, request, service, endpoints, functionTimeoutMS, null), future);
+                    }
+                    response = future.get(requestTimeoutMS, TimeUnit.MILLISECONDS);
+                    metrics.complete(response);
+                    // 只有成功的首次请求积累重试预算，错误响应（service busy 等）不积累
+                    if (retryBudget != null && response.getCode() == 0) {
+                        retryBudget.deposit();
+                    }
+                    return processResponse(response,method,args);
+                } catch (Exception e) {
+                    metrics.complete(e);
+                } finally {
+                    breaker.recordRPC(metrics);
+                    fallback.recordMetrics(metrics);
+                }
+                try {
+                    return processResponse(doRetry(metrics, request, service, endpoints, functionTimeoutMS, retryBudget),method,args);
+                } catch (Exception e) {
+                    return fallback.fallback(metrics);
+                }
+            } finally {
+                request.release();
+            }
+        }
 
-            CircuitBreaker breaker = circuitBreakerManager.getCircuitBreaker(service);
+        /**
+         * 异步调用：方法返回 CompletableFuture / CompletionStage，或者泛化调用 $invokeAsync。
+         * <p>
+         * 与 {@link #doInvokeRPC} 流程相同，但发送、熔断统计、重试和降级都串在 future 的回调上，
+         * 调用线程和 EventLoop 都不会阻塞等待响应；请求超时由在途请求表负责。
+         */
+        private CompletableFuture<Object> invokeRPCAsync(Method method, Object[] args) {
             try {
-                CompletableFuture<Response> future = callRPCAsync(metrics.getMethod(), metrics.getArgs(), service);
-                response = future.get(properties.getRequestTimeoutMS(), TimeUnit.MILLISECONDS);
-                metrics.complete(response);
-                return processResponse(response,method,args);
+                boolean genericInvoke = isGenericInvoke(method);
+                String serviceName = genericInvoke ? args[0].toString() : interfaceClass.getName();
+
+                if (properties.isInjvm() && !genericInvoke) {
+                    ProviderRegistry.Invocation<?> local = InJvmRegistry.find(serviceName);
+                    if (local != null) {
+                        return callInJvmAsync(local, method, args);
+                    }
+                }
+
+                long requestTimeoutMS = RpcContext.timeoutMS(properties.getRequestTimeoutMS());
+                long functionTimeoutMS = RpcContext.timeoutMS(properties.getFunctionTimeoutMS());
+                List<Endpoint> endpoints = endpointManager.endpoints(serviceName, serviceRegister.fetchServicelist(serviceName));
+                String methodName = genericInvoke ? args[1].toString() : method.getName();
+                Endpoint service = decideProvider(endpoints, methodName);
+                RPCCallMetrics metrics = RPCCallMetrics.create(service == null ? null : service.getMetadata(), method, args);
+                if (service == null) {
+                    return fallbackAsync(metrics);
+                }
+                RetryBudget retryBudget = retryBudget(serviceName);
+                CircuitBreaker breaker = service.getBreaker(methodName);
+                // 请求只构建、编码一次，重试和对冲共用
+                EncodedRequest request = new EncodedRequest(buildRequest(method, args));
+                CompletableFuture<Response> future;
+                try {
+                    future = callRPCAsync(request, service, requestTimeoutMS);
+                    if (isIdempotent(method)) {
+                        future = retryPolicy.hedge(createRetryContext(metrics, request, service, endpoints, functionTimeoutMS, null), future);
+                    }
+                } catch (Exception e) {
+                    future = CompletableFuture.failedFuture(e);
+                }
+                return future.handle((response, e) -> {
+                    Throwable failure = unwrap(e);
+                    Object result = null;
+                    if (failure == null) {
+                        metrics.complete(response);
+                        if (retryBudget != null && response.getCode() == 0) {
+                            retryBudget.deposit();
+                        }
+                        try {
+                            result = processResponse(response, method, args);
+                        } catch (Exception ex) {
+                            failure = ex;
+                            metrics.complete(ex);
+                        }
+                    } else {
+                        metrics.complete(failure);
+                    }
+                    breaker.recordRPC(metrics);
+                    fallback.recordMetrics(metrics);
+                    if (failure == null) {
+                        return CompletableFuture.completedFuture(result);
+                    }
+                    if (e != null && failure instanceof RPCException rpcException && !rpcException.retry()) {
+                        return fallbackAsync(metrics);
+                    }
+                    return doRetryAsync(metrics, request, service, endpoints, functionTimeoutMS, retryBudget)
+                            .thenApply(retryResponse -> processResponse(retryResponse, method, args))
+                            .exceptionallyCompose(retryError -> fallbackAsync(metrics));
+                }).thenCompose(Function.identity()).whenComplete((r, e) -> request.release());
+            } catch (Throwable e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        private CompletableFuture<Response> doRetryAsync(RPCCallMetrics metrics, EncodedRequest request, Endpoint failService, List<Endpoint> endpoints, long functionTimeoutMS, RetryBudget retryBudget) {
+            long functionMS = functionTimeoutMS - metrics.getDurationMS();
+            if (functionMS <= 0) {
+                return CompletableFuture.failedFuture(new TimeoutException());
+            }
+            if (retryBudget != null && !retryBudget.tryAcquire()) {
+                return CompletableFuture.failedFuture(new LimitException("retry budget exhausted"));
+            }
+            try {
+                return retryPolicy.retry(createRetryContext(metrics, request, failService, endpoints, functionMS, retryBudget));
+            } catch (RPCException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        /**
+         * 降级实现本身返回 future 时直接使用，否则包装为已完成的 future
+         */
+        private CompletableFuture<Object> fallbackAsync(RPCCallMetrics metrics) {
+            try {
+                Object result = fallback.fallback(metrics);
+                if (result instanceof CompletionStage<?> stage) {
+                    return (CompletableFuture<Object>) stage.toCompletableFuture();
+                }
+                return CompletableFuture.completedFuture(result);
             } catch (Exception e) {
-                metrics.complete(e);
-            } finally {
-                breaker.recordRPC(metrics);
-                fallback.recordMetrics(metrics);
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        private static Throwable unwrap(Throwable e) {
+            while ((e instanceof CompletionException || e instanceof ExecutionException) && e.getCause() != null) {
+                e = e.getCause();
             }
+            return e;
+        }
+
+        /**
+         * 进程内调用，失败时与远程调用一样走降级；成功的结果同样交给降级记录，供缓存降级使用
+         */
+        private Object callInJvm(ProviderRegistry.Invocation<?> local, Method method, Object[] args) throws Throwable {
+            RPCCallMetrics metrics = RPCCallMetrics.create(null, method, args);
+            Object result;
             try {
-                return processResponse(doRetry(metrics, metadataList),method,args);
+                result = invokeInJvm(local, method, args);
             } catch (Exception e) {
+                metrics.complete(e);
                 return fallback.fallback(metrics);
             }
+            metrics.complete(Response.ok(result, 0));
+            fallback.recordMetrics(metrics);
+            return result;
+        }
+
+        /**
+         * 异步方法的进程内调用，失败时走 {@link #fallbackAsync}
+         */
+        private CompletableFuture<Object> callInJvmAsync(ProviderRegistry.Invocation<?> local, Method method, Object[] args) {
+            RPCCallMetrics metrics = RPCCallMetrics.create(null, method, args);
+            CompletableFuture<Object> future;
+            try {
+                CompletionStage<Object> stage = (CompletionStage<Object>) invokeInJvm(local, method, args);
+                future = stage == null ? CompletableFuture.completedFuture(null) : stage.toCompletableFuture();
+            } catch (Throwable e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            return future.handle((result, e) -> {
+                if (e == null) {
+                    metrics.complete(Response.ok(result, 0));
+                    fallback.recordMetrics(metrics);
+                    return CompletableFuture.completedFuture(result);
+                }
+                metrics.complete(unwrap(e));
+                return fallbackAsync(metrics);
+            }).thenCompose(Function.identity());
+        }
+
+        /**
+         * 进程内调用：直接执行本地导出的 Invocation，provider 端拦截器链照常执行，
+         * TraceID 由当前线程的 TraceContext 直接传递。
+         */
+        private Object invokeInJvm(ProviderRegistry.Invocation<?> local, Method method, Object[] args) throws Throwable {
+            boolean deepCopy = properties.isInjvmDeepCopy();
+            Class<?>[] paramsType = method.getParameterTypes();
+            Object[] params = args == null ? new Object[0] : args;
+            if (deepCopy) {
+                params = new Object[params.length];
+                for (int i = 0; i < params.length; i++) {
+                    params[i] = deepCopy(args[i], paramsType[i]);
+                }
+            }
+            Object result;
+            try {
+                result = local.invoke(method.getName(), paramsType, params);
+            } catch (InvocationTargetException e) {
+                throw new RPCException(String.format("Call Function Fail err:%s", e.getTargetException()), e);
+            }
+            if (!deepCopy) {
+                return result;
+            }
+            Type resultType = resultType(method);
+            if (isAsyncInvoke(method)) {
+                return result == null ? null : ((CompletionStage<?>) result).thenApply(value -> deepCopy(value, resultType));
+            }
+            return deepCopy(result, resultType);
+        }
+
+        private Object deepCopy(Object value, Type type) {
+            Class<?> rawType = rawClass(type);
+            if (value == null || rawType == void.class || rawType == Void.class || BaseType.is(rawType)) {
+                return value;
+            }
+            return jsonSerializer.deserialize(jsonSerializer.serialize(value), type);
         }
 
-        private CompletableFuture<Response> callRPCAsync(Method method, Object[] args, Metadata provider) {
-            Request request = buildRequest(method, args);
-            Channel channel = connectionManager.getChannel(provider);
-            CompletableFuture<Response> responseFuture = inflightRequestManager.inFlightRequest(request, properties.getRequestTimeoutMS(), provider);
+        private CompletableFuture<Response> callRPCAsync(EncodedRequest request, Endpoint provider, long timeoutMS) {
+            if (timeoutMS <= 0) {
+                return CompletableFuture.failedFuture(new RPCException("deadline exceeded"));
+            }
+            CompletableFuture<Channel> connecting = connectionManager.getChannel(provider);
+            if (connecting.isDone()) {
+                return callConnected(request, provider, connecting.getNow(null), timeoutMS);
+            }
+            // 第一次调用时连接还在建立，建连完成后在 Netty 的回调里发送，建连耗时计入请求超时
+            long startNanos = System.nanoTime();
+            CompletableFuture<Response> result = new CompletableFuture<>();
+            connecting.whenComplete((channel, e) -> {
+                if (result.isDone()) {
+                    // 建连期间调用方已经放弃
+                    return;
+                }
+                long remainingMS = timeoutMS - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+                if (remainingMS <= 0) {
+                    result.completeExceptionally(new RPCException("deadline exceeded"));
+                    return;
+                }
+                try {
+                    relay(callConnected(request, provider, channel, remainingMS), result);
+                } catch (RuntimeException ex) {
+                    result.completeExceptionally(ex);
+                }
+            });
+            return result;
+        }
+
+        private CompletableFuture<Response> callConnected(EncodedRequest request, Endpoint provider, Channel channel, long timeoutMS) {
+            if (channel != null && !channel.isWritable()) {
+                return callUnwritable(request, provider, channel, timeoutMS);
+            }
+            return send(request, provider, channel, timeoutMS);
+        }
+
+        /**
+         * 把已经发出的请求的结果转交给返回给调用方的 future；调用方取消（对冲、超时）时一并取消已经发出的请求
+         */
+        private static void relay(CompletableFuture<Response> sent, CompletableFuture<Response> result) {
+            sent.whenComplete((r, ex) -> {
+                if (ex != null) {
+                    result.completeExceptionally(ex);
+                } else {
+                    result.complete(r);
+                }
+            });
+            result.whenComplete((r, ex) -> {
+                if (result.isCancelled()) {
+                    sent.cancel(false);
+                }
+            });
+        }
+
+        /**
+         * 连接的写缓冲超过高水位：wait 策略等到恢复可写再发送，否则直接以可重试的 {@link LimitException} 失败，
+         * 由重试策略换一个端点。此时还没有获取限流许可，也不计入地址的连续失败
+         */
+        private CompletableFuture<Response> callUnwritable(EncodedRequest request, Endpoint provider, Channel channel, long timeoutMS) {
+            if (!ConnectionManager.UNWRITABLE_WAIT.equals(properties.getUnwritablePolicy())) {
+                return CompletableFuture.failedFuture(new LimitException("provider connection unwritable", true));
+            }
+            long startNanos = System.nanoTime();
+            CompletableFuture<Response> result = new CompletableFuture<>();
+            connectionManager.awaitWritable(channel, Math.min(properties.getUnwritableWaitMS(), timeoutMS)).whenComplete((v, e) -> {
+                if (e != null) {
+                    result.completeExceptionally(e);
+                    return;
+                }
+                long remainingMS = timeoutMS - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+                if (remainingMS <= 0) {
+                    result.completeExceptionally(new RPCException("deadline exceeded"));
+                    return;
+                }
+                try {
+                    // 只等一次，恢复可写后即使又被其他请求写满也直接发送
+                    relay(send(request, provider, channel, remainingMS), result);
+                } catch (RuntimeException ex) {
+                    result.completeExceptionally(ex);
+                }
+            });
+            return result;
+        }
+
+        private CompletableFuture<Response> send(EncodedRequest request, Endpoint provider, Channel channel, long timeoutMS) {
+            InflightFuture responseFuture = inflightRequestManager.inFlightRequest(request, timeoutMS, provider);
+            long startNanos = provider.callStart();
+            responseFuture.whenComplete((r, e) -> provider.callEnd(startNanos, r, e));
             if (channel == null) {
-                responseFuture.completeExceptionally(new RPCException("provider connection failed"));
+                inflightRequestManager.completeExceptionRequst(responseFuture, new RPCException("provider connection failed"));
                 return responseFuture;
             }
-            channel.writeAndFlush(request).addListener(f -> {
-                if (!f.isSuccess()) {
-                    responseFuture.completeExceptionally(f.cause());
+            // 请求 ID 由 ConsumerHandler 在 EventLoop 上分配；没有到达 ConsumerHandler 就失败时（例如 EventLoop 已关闭）在这里兜底。
+            // 多个业务线程的请求经写合并队列批量写出，每批只 flush 一次
+            WriteCoalescer.of(channel).write(responseFuture).addListener(f -> {
+                if (!f.isSuccess() && !responseFuture.isRegistered()) {
+                    inflightRequestManager.completeExceptionRequst(responseFuture, f.cause());
                 }
             });
             return responseFuture;
         }
 
-        private Metadata decideProvider(List<Metadata> metadataList) throws Exception {
-            while (!metadataList.isEmpty()) {
-                Metadata service = loadBalancer.select(metadataList);
-                CircuitBreaker breaker = circuitBreakerManager.getCircuitBreaker(service);
-                if (breaker != null && breaker.allowRequest()) {
+        private Endpoint decideProvider(List<Endpoint> endpoints, String methodName) {
+            // route 策略优先选择连接可写的端点，都不可写时再按原来的方式选择，发送时按 fail 处理
+            if (ConnectionManager.UNWRITABLE_ROUTE.equals(properties.getUnwritablePolicy())) {
+                Endpoint service = selectProvider(endpoints, methodName, true);
+                if (service != null) {
                     return service;
                 }
-                metadataList.remove(service);
             }
-            return null;
+            return selectProvider(endpoints, methodName, false);
+        }
 
+        private Endpoint selectProvider(List<Endpoint> endpoints, String methodName, boolean writableOnly) {
+            List<Endpoint> candidates = endpoints;
+            while (!candidates.isEmpty()) {
+                Endpoint service = loadBalancer.select(candidates);
+                // 先判断可写，不可写的端点不消耗熔断器半开状态的探测名额
+                if ((!writableOnly || service.isWritable()) && service.getBreaker(methodName).allowRequest()) {
+                    return service;
+                }
+                // 端点列表是共享的快照，第一次需要排除熔断的端点时才复制
+                if (candidates == endpoints) {
+                    candidates = new ArrayList<>(endpoints);
+                }
+                candidates.remove(service);
+            }
+            return null;
         }
 
-        private Response doRetry(RPCCallMetrics metrics, List<Metadata> metadataList) throws Exception {
+        private Response doRetry(RPCCallMetrics metrics, EncodedRequest request, Endpoint failService, List<Endpoint> endpoints, long functionTimeoutMS, RetryBudget retryBudget) throws Exception {
             if (metrics.getThrowable() instanceof ExecutionException ee && ee.getCause() instanceof RPCException rpcException && !rpcException.retry()) {
                 throw rpcException;
             }
             Response response;
-            long functionMS = properties.getFunctionTimeoutMS() - metrics.getDurationMS();
+            long functionMS = functionTimeoutMS - metrics.getDurationMS();
             if (functionMS <= 0) {
                 throw new TimeoutException();
             }
-            RetryContext retryContext = createRetryContext(metrics, metadataList, functionMS);
-            response = retryPolicy.retry(retryContext);
+            // 预算耗尽时不进入重试策略，避免白等第一次退避
+            if (retryBudget != null && !retryBudget.tryAcquire()) {
+                throw new LimitException("retry budget exhausted");
+            }
+            RetryContext retryContext = createRetryContext(metrics, request, failService, endpoints, functionMS, retryBudget);
+            CompletableFuture<Response> future = retryPolicy.retry(retryContext);
+            try {
+                response = future.get(functionMS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // 调用已经超时放弃，尚未发出的重试不再发出
+                future.cancel(false);
+                throw e;
+            }
             return response;
         }
 
-        private @NonNull RetryContext createRetryContext(RPCCallMetrics metrics, List<Metadata> metadataList, long functionMS) {
+        /**
+         * @param retryBudget 重试请求消耗的预算，调用方已经为第一次请求预先扣除；对冲请求有自己的预算，传 null
+         */
+        private @NonNull RetryContext createRetryContext(RPCCallMetrics metrics, EncodedRequest request, Endpoint failService, List<Endpoint> endpoints, long functionMS, RetryBudget retryBudget) {
             RetryContext retryContext = new RetryContext();
-            retryContext.setFailService(metrics.getProvider());
-            retryContext.setAllService(metadataList);
+            retryContext.setMethodKey(interfaceClass.getName() + "#" + metrics.getMethod().getName());
+            retryContext.setFailService(failService);
+            retryContext.setAllService(endpoints);
             retryContext.setFunctionTimeoutMS(functionMS);
             retryContext.setLoadBalancer(loadBalancer);
-            retryContext.setRequestTimeout(properties.getRequestTimeoutMS());
+            retryContext.setMaxHedges(properties.getMaxHedges());
+            long requestTimeoutMS = Math.min(properties.getRequestTimeoutMS(), functionMS);
+            retryContext.setRequestTimeout(requestTimeoutMS);
+            AtomicBoolean prepaid = new AtomicBoolean(true);
             retryContext.setRetry(provider -> {
-                CircuitBreaker breaker = circuitBreakerManager.getCircuitBreaker(metrics.getProvider());
+                if (retryBudget != null && !prepaid.compareAndSet(true, false) && !retryBudget.tryAcquire()) {
+                    throw new LimitException("retry budget exhausted");
+                }
+                CircuitBreaker breaker = provider.getBreaker(request.getRequest().getMethodName());
                 if (!breaker.allowRequest()) {
                     CompletableFuture<Response> breakFuture = new CompletableFuture<>();
                     breakFuture.completeExceptionally(new RPCException("provider is break provider:" + provider.toString()));
                     return breakFuture;
                 }
-                CompletableFuture<Response> requestFuture = callRPCAsync(metrics.getMethod(), metrics.getArgs(), provider);
-                RPCCallMetrics retryMetrics = RPCCallMetrics.create(provider, metrics.getMethod(), metrics.getArgs());
+                CompletableFuture<Response> requestFuture = callRPCAsync(request, provider, requestTimeoutMS);
+                RPCCallMetrics retryMetrics = RPCCallMetrics.create(provider.getMetadata(), metrics.getMethod(), metrics.getArgs());
                 requestFuture.whenComplete((r, e) -> {
                     if (e != null) {
                         retryMetrics.complete(e);
@@ -328,13 +732,37 @@ public class ConsumerProxyFactory {
             }
             boolean genericInvoke = isGenericInvoke(method);
             Object result = response.getResult();
-            Class<?> returnClass = method.getReturnType();
-            if(!genericInvoke && returnClass!=void.class && !BaseType.is(returnClass)){
-                result = jsonSerializer.deserialize(result.toString().getBytes(StandardCharsets.UTF_8),returnClass);
+            Type resultType = resultType(method);
+            Class<?> returnClass = rawClass(resultType);
+            if(!genericInvoke && result!=null && returnClass!=void.class && returnClass!=Void.class && !BaseType.is(returnClass)){
+                result = jsonSerializer.deserialize(result.toString().getBytes(StandardCharsets.UTF_8),resultType);
             }
             return result;
         }
 
+        /**
+         * 反序列化使用的结果类型：异步方法取 future 的泛型参数，同步方法保留泛型信息
+         */
+        private static Type resultType(Method method) {
+            if (!isAsyncInvoke(method)) {
+                return method.getGenericReturnType();
+            }
+            if (method.getGenericReturnType() instanceof ParameterizedType parameterizedType) {
+                return parameterizedType.getActualTypeArguments()[0];
+            }
+            return Object.class;
+        }
+
+        private static Class<?> rawClass(Type type) {
+            if (type instanceof Class<?> clazz) {
+                return clazz;
+            }
+            if (type instanceof ParameterizedType parameterizedType) {
+                return (Class<?>) parameterizedType.getRawType();
+            }
+            return Object.class;
+        }
+
         private @NonNull Request buildRequest(Method method, Object[] args) {
             boolean genericInvoke = isGenericInvoke(method);
             Request request = new Request();
@@ -378,10 +806,19 @@ public class ConsumerProxyFactory {
         }
 
         private static boolean isGenericInvoke(Method method) {
-            boolean genericInvoke = method.getName().equals("$invoke");
+            boolean genericInvoke = method.getName().equals("$invoke") || method.getName().equals("$invokeAsync");
             return genericInvoke;
         }
 
+        private static boolean isIdempotent(Method method) {
+            return method.isAnnotationPresent(Idempotent.class);
+        }
+
+        private static boolean isAsyncInvoke(Method method) {
+            Class<?> returnType = method.getReturnType();
+            return returnType == CompletableFuture.class || returnType == CompletionStage.class;
+        }
+
         private @NonNull Object invokeObjectMethod(Object proxy, Method method, Object[] args) {
             if (method.getName().equals("toString")) {
                 return "cade ConsumerProxyFactory" + interfaceClass.getName();
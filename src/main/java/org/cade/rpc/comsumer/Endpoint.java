@@ -0,0 +1,149 @@
+package org.cade.rpc.comsumer;
+
+import org.cade.rpc.breaker.CircuitBreaker;
+import org.cade.rpc.excpetion.LimitException;
+import org.cade.rpc.limit.Limiter;
+import org.cade.rpc.message.Response;
+import org.cade.rpc.metrics.LatencySketch;
+import org.cade.rpc.outlier.HostHealth;
+import org.cade.rpc.register.Metadata;
+
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 一个服务在一个 provider 上的端点。
+ * <p>
+ * 注册中心的服务列表变化时由 {@link EndpointManager} 创建，provider 没有下线前一直复用同一个实例。
+ * 熔断器、限流器、连接、地址健康状态、延迟统计和在途请求数都挂在端点上，调用路径上直接取字段，
+ * 不再按 {@link Metadata}（每次都要计算 hashCode 和 equals）查表或拼接 host:port。
+ * <p>
+ * 没有重写 equals/hashCode，两个端点相同当且仅当是同一个对象。
+ */
+public class Endpoint {
+    private static final long LATENCY_WINDOW_MS = 10_000;
+
+    private final Metadata metadata;
+    private final CircuitBreaker breaker;
+    // 单独配置了熔断参数的方法，没有时为 null
+    private final Map<String, CircuitBreaker> methodBreakers;
+    private final Limiter limiter;
+    // 自适应并发限流，未开启时为 null
+    private final Limiter concurrencyLimiter;
+    // 同一地址上所有服务的端点共享
+    private final HostHealth health;
+    private final LatencySketch latency = new LatencySketch(LATENCY_WINDOW_MS);
+    private final AtomicInteger inflight = new AtomicInteger();
+    // 第一次取连接时由 ConnectionManager 设置，同一地址的端点共享一个连接
+    volatile ConnectionManager.Connection connection;
+
+    public Endpoint(Metadata metadata, CircuitBreaker breaker, Map<String, CircuitBreaker> methodBreakers,
+                    Limiter limiter, Limiter concurrencyLimiter, HostHealth health) {
+        this.metadata = metadata;
+        this.breaker = breaker;
+        this.methodBreakers = methodBreakers;
+        this.limiter = limiter;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.health = health;
+    }
+
+    public Metadata getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * @return 方法单独配置了熔断参数时返回方法级熔断器，否则返回端点的熔断器
+     */
+    public CircuitBreaker getBreaker(String methodName) {
+        if (methodBreakers == null) {
+            return breaker;
+        }
+        return methodBreakers.getOrDefault(methodName, breaker);
+    }
+
+    public Limiter getLimiter() {
+        return limiter;
+    }
+
+    /**
+     * @return 根据耗时调整上限的并发限流器，未开启时返回 null
+     */
+    public Limiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    /**
+     * @return 端点所在地址的健康状态，用于异常检测
+     */
+    public HostHealth getHealth() {
+        return health;
+    }
+
+    /**
+     * @return 最近成功请求的延迟分布
+     */
+    public LatencySketch getLatency() {
+        return latency;
+    }
+
+    /**
+     * @return 当前发往该端点的在途请求数，即本消费者看到的负载
+     */
+    public int getInflight() {
+        return inflight.get();
+    }
+
+    /**
+     * @return 连接的写缓冲没有超过高水位；还没有建立连接时返回 true
+     */
+    public boolean isWritable() {
+        ConnectionManager.Connection c = connection;
+        return c == null || c.isWritable();
+    }
+
+    /**
+     * 请求发出
+     *
+     * @return 开始时间，传给 {@link #callEnd}
+     */
+    long callStart() {
+        inflight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    /**
+     * 请求结束。
+     * <p>
+     * 调用方取消（对冲失败的一方、forking 的其余请求、放弃等待）和消费者本地的限流拒绝（字节预算、在途请求表已满、
+     * 连接不可写）都不是 provider 的问题，不计入地址健康状态，否则赢不了竞速的健康地址也会积累连续失败被驱逐。
+     * 服务方法自身抛出的业务异常（{@link Response#CODE_BIZ_ERROR}）说明 provider 工作正常，同样不计入。
+     *
+     * @param response 收到的响应，失败时为 null
+     * @param error    超时、连接失败、取消或本地拒绝，收到响应时为 null
+     */
+    void callEnd(long startNanos, Response response, Throwable error) {
+        inflight.decrementAndGet();
+        if (error == null && response.getCode() == 0) {
+            latency.record(System.nanoTime() - startNanos);
+            health.onSuccess();
+        } else if (error == null && response.getCode() == Response.CODE_BIZ_ERROR) {
+            return;
+        } else if (error == null || !isLocalFailure(error)) {
+            health.onError(System.currentTimeMillis());
+        }
+    }
+
+    private static boolean isLocalFailure(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error instanceof CancellationException || error instanceof LimitException;
+    }
+
+    @Override
+    public String toString() {
+        return "Endpoint{" + metadata + '}';
+    }
+}
@@ -0,0 +1,102 @@
+package org.cade.rpc.comsumer;
+
+import org.cade.rpc.breaker.CircuitBreakerManager;
+import org.cade.rpc.limit.StripedRateLimiter;
+import org.cade.rpc.limit.VegasLimiter;
+import org.cade.rpc.outlier.OutlierDetector;
+import org.cade.rpc.register.Metadata;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 维护每个服务的 {@link Endpoint} 列表。
+ * <p>
+ * 注册中心返回的服务列表与上一次是同一个实例时直接复用上一次的端点列表（按引用比较，调用路径上不逐个比较 Metadata，
+ * 见 {@link org.cade.rpc.register.ServiceRegister#fetchServicelist}）；列表变化时重新筛选可用端点，
+ * 仍然在线的 provider 复用原来的 Endpoint（熔断状态、限流和延迟统计延续下去），新上线的 provider 创建新的 Endpoint。
+ * <p>
+ * 返回端点列表前由 {@link OutlierDetector} 排除被驱逐的地址，并且每个检测周期在调用线程上顺带比较一次各端点的延迟。
+ * 返回的端点列表不可修改。
+ */
+class EndpointManager {
+    private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+    private final ConnectionManager connectionManager;
+    private final CircuitBreakerManager circuitBreakerManager;
+    private final OutlierDetector outlierDetector;
+    private final ConsumerProperties properties;
+
+    EndpointManager(ConnectionManager connectionManager, CircuitBreakerManager circuitBreakerManager,
+                    OutlierDetector outlierDetector, ConsumerProperties properties) {
+        this.connectionManager = connectionManager;
+        this.circuitBreakerManager = circuitBreakerManager;
+        this.outlierDetector = outlierDetector;
+        this.properties = properties;
+    }
+
+    List<Endpoint> endpoints(String serviceName, List<Metadata> metadataList) {
+        Snapshot snapshot = snapshots.get(serviceName);
+        if (snapshot == null || snapshot.source != metadataList) {
+            snapshot = snapshots.compute(serviceName, (k, old) -> {
+                if (old != null && old.source == metadataList) {
+                    return old;
+                }
+                return rebuild(old, metadataList);
+            });
+        }
+        long now = System.currentTimeMillis();
+        long next = snapshot.nextDetectMS.get();
+        if (now >= next && snapshot.nextDetectMS.compareAndSet(next, now + outlierDetector.getIntervalMS())) {
+            outlierDetector.detectLatencyOutliers(snapshot.endpoints, now);
+        }
+        return outlierDetector.filter(snapshot.endpoints, now);
+    }
+
+    private Snapshot rebuild(Snapshot old, List<Metadata> metadataList) {
+        Map<Metadata, Endpoint> previous = new HashMap<>();
+        if (old != null) {
+            for (Endpoint endpoint : old.endpoints) {
+                previous.put(endpoint.getMetadata(), endpoint);
+            }
+        }
+        List<Endpoint> endpoints = new ArrayList<>();
+        for (Metadata metadata : connectionManager.resolveEndpoints(metadataList)) {
+            Endpoint endpoint = previous.get(metadata);
+            endpoints.add(endpoint != null ? endpoint : createEndpoint(metadata));
+        }
+        if (old != null) {
+            outlierDetector.expunge();
+        }
+        long nextDetectMS = old != null ? old.nextDetectMS.get() : System.currentTimeMillis() + outlierDetector.getIntervalMS();
+        return new Snapshot(metadataList, List.copyOf(endpoints), nextDetectMS);
+    }
+
+    private Endpoint createEndpoint(Metadata metadata) {
+        return new Endpoint(metadata,
+                circuitBreakerManager.createBreaker(metadata),
+                circuitBreakerManager.createMethodBreakers(metadata),
+                new StripedRateLimiter(properties.getRpcPreChannelSecond(), properties.getRpcPreChannelSecond()),
+                properties.isAdaptiveLimit()
+                        ? new VegasLimiter(properties.getAdaptiveInitialLimit(), 1, properties.getAdaptiveMaxLimit())
+                        : null,
+                outlierDetector.host(metadata));
+    }
+
+    private static class Snapshot {
+        // 注册中心返回的原始列表，按引用判断是否变化
+        private final List<Metadata> source;
+        private final List<Endpoint> endpoints;
+        // 下一次比较端点延迟的时间，第一个周期积累样本
+        private final AtomicLong nextDetectMS;
+
+        Snapshot(List<Metadata> source, List<Endpoint> endpoints, long nextDetectMS) {
+            this.source = source;
+            this.endpoints = endpoints;
+            this.nextDetectMS = new AtomicLong(nextDetectMS);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.cade.rpc.comsumer;
+
+import org.cade.rpc.codec.EncodedRequest;
+import org.cade.rpc.limit.Limiter;
+import org.cade.rpc.message.Response;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 在途请求：既是调用方等待的 future，也是写入 channel 的消息。
+ * <p>
+ * ConsumerHandler 在 EventLoop 上收到它时才分配请求 ID、登记到连接的 {@link InflightTable}，
+ * 再把请求 ID 和共享的 {@link EncodedRequest} 交给编码器。同一次调用的重试、对冲共用一个 EncodedRequest，
+ * 请求 ID 只记录在各自的 InflightFuture 上。
+ * <p>
+ * {@link #cancel} 会把请求从在途表中移除、归还限流许可，并通知 provider 不再处理该请求。
+ */
+class InflightFuture extends CompletableFuture<Response> {
+    private final EncodedRequest request;
+    // 只在 EventLoop 上读写
+    private int requestID;
+    private final long deadlineNanos;
+    private final Limiter channelLimiter;
+    // 端点的自适应并发限流器，未开启时为 null
+    private final Limiter concurrencyLimiter;
+    private final long startNanos = System.nanoTime();
+    // 只在 EventLoop 上写入；写出失败时据此判断由谁负责完成 future
+    private volatile boolean registered;
+    // 登记后由 ConsumerHandler 设置，在 EventLoop 上移除请求并发送 CANCEL
+    private volatile Runnable canceller;
+
+    InflightFuture(EncodedRequest request, long deadlineNanos, Limiter channelLimiter, Limiter concurrencyLimiter) {
+        this.request = request;
+        this.deadlineNanos = deadlineNanos;
+        this.channelLimiter = channelLimiter;
+        this.concurrencyLimiter = concurrencyLimiter;
+    }
+
+    EncodedRequest getRequest() {
+        return request;
+    }
+
+    int getRequestID() {
+        return requestID;
+    }
+
+    void setRequestID(int requestID) {
+        this.requestID = requestID;
+    }
+
+    long getDeadlineNanos() {
+        return deadlineNanos;
+    }
+
+    Limiter getChannelLimiter() {
+        return channelLimiter;
+    }
+
+    Limiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    long getStartNanos() {
+        return startNanos;
+    }
+
+    boolean isRegistered() {
+        return registered;
+    }
+
+    void markRegistered() {
+        this.registered = true;
+    }
+
+    /**
+     * 设置取消回调；登记前就已被取消时立即执行。回调可能执行两次，需要保证幂等
+     */
+    void onCancel(Runnable canceller) {
+        this.canceller = canceller;
+        if (isCancelled()) {
+            canceller.run();
+        }
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+        Runnable c = canceller;
+        if (cancelled && c != null) {
+            c.run();
+        }
+        return cancelled;
+    }
+}
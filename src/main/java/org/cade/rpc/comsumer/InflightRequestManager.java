@@ -1,79 +1,89 @@
 package org.cade.rpc.comsumer;
 
-import io.netty.util.HashedWheelTimer;
-import io.netty.util.Timeout;
 import lombok.extern.slf4j.Slf4j;
+import org.cade.rpc.codec.EncodedRequest;
 import org.cade.rpc.excpetion.LimitException;
 import org.cade.rpc.limit.ConcurrencyLimiter;
+import org.cade.rpc.limit.HierarchicalLimiter;
 import org.cade.rpc.limit.Limiter;
-import org.cade.rpc.limit.RateLimiter;
 import org.cade.rpc.message.Request;
 import org.cade.rpc.message.Response;
-import org.cade.rpc.register.Metadata;
 
-import java.util.Map;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
-
+/**
+ * 管理在途请求的限流许可。
+ * <p>
+ * 请求本身登记在各连接自己的 {@link InflightTable} 中（由 ConsumerHandler 在 EventLoop 上维护），
+ * 这里只负责在请求发出前获取全局并发、分层令牌桶（方法、服务、端点、全局）和端点自适应并发限流许可，并在请求结束时释放。
+ * 自适应限流器只采样成功响应的耗时和超时，取消、连接断开、错误响应与下游负载无关，只归还许可。
+ */
 @Slf4j(topic = "inflight_resust_manager")
 public class InflightRequestManager {
-    private final Map<Integer, CompletableFuture<Response>> inFlightRequestTable ;
-    private final HashedWheelTimer timeoutTimer;
     private final Limiter globelLimiter;
-    private final Map<Metadata,Limiter> channelLimiter;
+    private final HierarchicalLimiter rateLimiter;
     private final ConsumerProperties properties;
 
     InflightRequestManager(ConsumerProperties properties){
         this.properties = properties;
         this.globelLimiter = new ConcurrencyLimiter(properties.getRpcPreSecond());
-        this.timeoutTimer = new HashedWheelTimer();
-        this.inFlightRequestTable = new ConcurrentHashMap<>();
-        this.channelLimiter =  new ConcurrentHashMap<>();
-    }
-
-    public void clearChannel(Metadata metadata){
-        channelLimiter.remove(metadata);
+        this.rateLimiter = new HierarchicalLimiter(properties.getRateLimits());
     }
 
-    public CompletableFuture<Response> inFlightRequest(Request request,long timeoutMS,Metadata metadata) {
-        CompletableFuture<Response> responseFuture = new CompletableFuture<>();
+    /**
+     * @param endpoint channel 限流和自适应并发限流使用端点自己的限流器
+     */
+    InflightFuture inFlightRequest(EncodedRequest request,long timeoutMS,Endpoint endpoint) {
         if(!globelLimiter.tryAcquire()){
             throw new LimitException("globel limiter too many inflight request");
         }
 
-        Limiter limiter = channelLimiter.computeIfAbsent(metadata,k->new RateLimiter(properties.getRpcPreChannelSecond()));
-        if(!limiter.tryAcquire()){
-            throw new LimitException("channel limiter too many inflight request");
+        Request rpcRequest = request.getRequest();
+        Limiter limiter = endpoint.getLimiter();
+        if(!rateLimiter.tryAcquire(rpcRequest.getServiceName(), rpcRequest.getMethodName(), limiter)){
+            globelLimiter.release();
+            throw new LimitException("rate limiter too many request");
         }
-        inFlightRequestTable.put(request.getRequestID(), responseFuture);
-        Timeout timeout = timeoutTimer.newTimeout((t)->responseFuture.completeExceptionally(new TimeoutException()),timeoutMS, TimeUnit.MILLISECONDS);
-        responseFuture.whenComplete((r,e)->{
-            inFlightRequestTable.remove(request.getRequestID());
+        Limiter concurrencyLimiter = endpoint.getConcurrencyLimiter();
+        if (concurrencyLimiter != null && !concurrencyLimiter.tryAcquire()) {
+            rateLimiter.cancel(rpcRequest.getServiceName(), rpcRequest.getMethodName(), limiter);
             globelLimiter.release();
-            limiter.release();
-            timeout.cancel();
-        });
-        return responseFuture;
+            throw new LimitException("endpoint concurrency limit exceeded");
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMS);
+        return new InflightFuture(request, deadline, limiter, concurrencyLimiter);
     }
 
-    public boolean completeRequst(int reqsutID,Response response){
-        CompletableFuture<Response> future = inFlightRequestTable.remove(reqsutID);
-        if(future == null){
-            log.warn("can not find request id:{}", response.getRequestId());
-            return false;
-        }
+    InflightTable createTable() {
+        return new InflightTable(properties.getInflightTableCapacity());
+    }
+
+    /**
+     * 完成一个已经从在途请求表中移除（或从未登记）的请求，每个请求只能调用一次
+     */
+    boolean completeRequst(InflightFuture future, Response response){
+        release(future, response.getCode() == 0, false);
         return future.complete(response);
     }
 
-    public boolean completeExceptionRequst(int requestID,Exception exception){
-        CompletableFuture<Response> future = inFlightRequestTable.remove(requestID);
-        if(future == null){
-            log.warn("can not find request id:{}", requestID);
-            return false;
-        }
+    boolean completeExceptionRequst(InflightFuture future, Throwable exception){
+        boolean timeout = exception instanceof TimeoutException;
+        release(future, timeout, timeout);
         return future.completeExceptionally(exception);
     }
+
+    private void release(InflightFuture future, boolean sample, boolean dropped) {
+        globelLimiter.release();
+        future.getChannelLimiter().release();
+        Limiter concurrencyLimiter = future.getConcurrencyLimiter();
+        if (concurrencyLimiter == null) {
+            return;
+        }
+        if (sample) {
+            concurrencyLimiter.release(System.nanoTime() - future.getStartNanos(), dropped);
+        } else {
+            concurrencyLimiter.release();
+        }
+    }
 }
@@ -0,0 +1,204 @@
+package org.cade.rpc.comsumer;
+
+import java.util.function.Consumer;
+
+/**
+ * 单个连接的在途请求表：以 int 请求 ID 为键的开放寻址哈希表，同时负责分配请求 ID。
+ * <p>
+ * 表只在连接所属的 EventLoop 上访问，因此不需要任何锁或原子操作：
+ * 请求 ID 是一个普通自增计数器，在请求真正写出时分配，只在本连接内唯一。
+ * 计数器回绕后跳过仍在途的 ID，长连接上也不会串号。
+ * <p>
+ * 删除采用后移（backward shift）而非墓碑，查找链不会退化。
+ * 超时由 {@link #expire} 在 EventLoop 上周期性扫描，容量有界，写满时 {@link #register} 失败。
+ */
+final class InflightTable {
+    private static final int HASH_SEED = 0x9E3779B9;
+
+    private final int maxSize;
+    private final int mask;
+    private final int[] keys;
+    private final InflightFuture[] values;
+    private int size;
+    private int nextRequestID;
+    // 最早的截止时间，扫描时据此跳过没有到期请求的情况
+    private long earliestDeadline = Long.MAX_VALUE;
+
+    InflightTable(int capacity) {
+        this(capacity, 1);
+    }
+
+    InflightTable(int capacity, int firstRequestID) {
+        this.maxSize = Math.max(1, capacity);
+        // 负载因子不超过 0.5，线性探测的查找长度保持在常数级
+        int slots = nextPowerOfTwo(maxSize * 2);
+        this.mask = slots - 1;
+        this.keys = new int[slots];
+        this.values = new InflightFuture[slots];
+        this.nextRequestID = firstRequestID;
+    }
+
+    private static int nextPowerOfTwo(int value) {
+        return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+
+    private int homeSlot(int requestID) {
+        int h = requestID * HASH_SEED;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * 为请求分配 ID 并登记
+     *
+     * @return 表已写满时返回 false，请求不会被登记
+     */
+    boolean register(InflightFuture future) {
+        if (size >= maxSize) {
+            return false;
+        }
+        while (true) {
+            int requestID = nextRequestID++;
+            int i = homeSlot(requestID);
+            while (values[i] != null && keys[i] != requestID) {
+                i = (i + 1) & mask;
+            }
+            if (values[i] != null) {
+                // 计数器回绕后该 ID 仍在途，换下一个
+                continue;
+            }
+            keys[i] = requestID;
+            values[i] = future;
+            size++;
+            future.setRequestID(requestID);
+            if (future.getDeadlineNanos() - earliestDeadline < 0) {
+                earliestDeadline = future.getDeadlineNanos();
+            }
+            return true;
+        }
+    }
+
+    /**
+     * @return 请求不存在时返回 null
+     */
+    InflightFuture remove(int requestID) {
+        int i = homeSlot(requestID);
+        while (values[i] != null) {
+            if (keys[i] == requestID) {
+                InflightFuture future = values[i];
+                removeAt(i);
+                return future;
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * 只有 ID 当前对应的正是 {@code expected} 时才移除，用于取消：请求可能已经完成，ID 也可能已被复用
+     *
+     * @return 是否移除
+     */
+    boolean remove(int requestID, InflightFuture expected) {
+        int i = homeSlot(requestID);
+        while (values[i] != null) {
+            if (keys[i] == requestID) {
+                if (values[i] != expected) {
+                    return false;
+                }
+                removeAt(i);
+                return true;
+            }
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * 移除截止时间早于 {@code nowNanos} 的请求并交给 {@code onExpire}。
+     * 回调可能再次写入请求（例如触发重试），因此在扫描结束后才执行。
+     *
+     * @return 本次过期的请求数
+     */
+    int expire(long nowNanos, Consumer<InflightFuture> onExpire) {
+        if (size == 0 || nowNanos - earliestDeadline < 0) {
+            return 0;
+        }
+        InflightFuture[] expired = null;
+        int count = 0;
+        long earliest = Long.MAX_VALUE;
+        int i = 0;
+        while (i <= mask) {
+            InflightFuture future = values[i];
+            if (future != null && nowNanos - future.getDeadlineNanos() >= 0) {
+                if (expired == null) {
+                    expired = new InflightFuture[size];
+                }
+                expired[count++] = future;
+                // 后移删除可能把后面的元素搬到 i，需要重新检查当前槽位
+                removeAt(i);
+                continue;
+            }
+            if (future != null && future.getDeadlineNanos() - earliest < 0) {
+                earliest = future.getDeadlineNanos();
+            }
+            i++;
+        }
+        earliestDeadline = earliest;
+        for (int j = 0; j < count; j++) {
+            onExpire.accept(expired[j]);
+        }
+        return count;
+    }
+
+    /**
+     * 移除全部请求，用于连接关闭
+     */
+    int drain(Consumer<InflightFuture> onRemove) {
+        if (size == 0) {
+            return 0;
+        }
+        InflightFuture[] all = new InflightFuture[size];
+        int count = 0;
+        for (int i = 0; i <= mask; i++) {
+            if (values[i] != null) {
+                all[count++] = values[i];
+                values[i] = null;
+            }
+        }
+        size = 0;
+        earliestDeadline = Long.MAX_VALUE;
+        for (int j = 0; j < count; j++) {
+            onRemove.accept(all[j]);
+        }
+        return count;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * 删除槽位 i，并把同一探测链上后续的元素前移填补空洞
+     */
+    private void removeAt(int i) {
+        size--;
+        int hole = i;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (values[j] == null) {
+                break;
+            }
+            int home = homeSlot(keys[j]);
+            // home 在环上位于 (hole, j] 之间时元素不能前移
+            boolean stay = hole <= j ? (hole < home && home <= j) : (hole < home || home <= j);
+            if (stay) {
+                continue;
+            }
+            keys[hole] = keys[j];
+            values[hole] = values[j];
+            hole = j;
+        }
+        values[hole] = null;
+    }
+}
@@ -0,0 +1,87 @@
+package org.cade.rpc.context;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * RpcContext - 当前线程正在处理的 RPC 请求的上下文
+ * <p>
+ * provider 执行服务方法前把消费者传来的截止时间设置到当前线程，服务方法内发起的下游调用
+ * 使用 {@code min(自身超时, 剩余时间)} 作为超时，调用方已经放弃的请求不会在下游继续消耗资源。
+ * <p>
+ * 消费者取消请求后 {@link #isCancelled()} 返回 true，耗时较长的服务方法可以据此提前结束，结果不会再发给消费者。
+ * <p>
+ * 使用普通 ThreadLocal：截止时间只在执行服务方法的线程上有效，不会被业务线程池中的其他任务继承。
+ * 服务方法把下游调用放到其他线程执行时，需要自行用 {@link #getDeadlineNanos()} / {@link #setDeadline(long)} 传递。
+ */
+public class RpcContext {
+
+    /**
+     * 截止时间（{@link System#nanoTime()}），不存在表示没有截止时间
+     */
+    private static final ThreadLocal<Long> DEADLINE_HOLDER = new ThreadLocal<>();
+
+    /**
+     * 当前请求是否已被消费者取消
+     */
+    private static final ThreadLocal<BooleanSupplier> CANCEL_HOLDER = new ThreadLocal<>();
+
+    private RpcContext() {
+    }
+
+    /**
+     * 设置当前线程的截止时间
+     *
+     * @param deadlineNanos 基于 {@link System#nanoTime()} 的截止时间
+     */
+    public static void setDeadline(long deadlineNanos) {
+        DEADLINE_HOLDER.set(deadlineNanos);
+    }
+
+    /**
+     * @return 当前线程的截止时间，没有时返回 null
+     */
+    public static Long getDeadlineNanos() {
+        return DEADLINE_HOLDER.get();
+    }
+
+    /**
+     * 剩余时间（毫秒），已过期时返回 0，没有截止时间时返回 {@link Long#MAX_VALUE}
+     */
+    public static long remainingMS() {
+        Long deadline = DEADLINE_HOLDER.get();
+        if (deadline == null) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+    }
+
+    /**
+     * 下游调用实际使用的超时：自身超时与剩余时间取较小值
+     *
+     * @param timeoutMS 调用自身配置的超时（毫秒）
+     */
+    public static long timeoutMS(long timeoutMS) {
+        return Math.min(timeoutMS, remainingMS());
+    }
+
+    public static void setCancelSignal(BooleanSupplier cancelled) {
+        CANCEL_HOLDER.set(cancelled);
+    }
+
+    /**
+     * @return 当前请求已被消费者取消时返回 true；不在服务方法中调用时返回 false
+     */
+    public static boolean isCancelled() {
+        BooleanSupplier cancelled = CANCEL_HOLDER.get();
+        return cancelled != null && cancelled.getAsBoolean();
+    }
+
+    /**
+     * 清理当前线程的截止时间和取消状态，在服务方法执行完成后调用
+     */
+    public static void clear() {
+        DEADLINE_HOLDER.remove();
+        CANCEL_HOLDER.remove();
+    }
+}
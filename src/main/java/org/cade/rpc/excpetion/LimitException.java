@@ -1,7 +1,22 @@
 package org.cade.rpc.excpetion;
 
 public class LimitException extends RPCException {
+    private final boolean retry;
+
     public LimitException(String message) {
+        this(message, false);
+    }
+
+    /**
+     * @param retry 只是这一个连接暂时发不出去（例如写缓冲超过高水位），换一个端点重试可能成功
+     */
+    public LimitException(String message, boolean retry) {
         super(message);
+        this.retry = retry;
+    }
+
+    @Override
+    public boolean retry() {
+        return retry;
     }
 }
@@ -0,0 +1,98 @@
+package org.cade.rpc.handler;
+
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * 管理连接的 autoRead。不同原因（字节预算耗尽、写缓冲超过高水位）各自暂停读取，所有原因都解除后才恢复。
+ * <p>
+ * 暂停原因记录在连接属性上，状态变更都切到连接的 EventLoop 上执行，暂停和恢复的顺序不会错乱。
+ */
+@Slf4j(topic = "auto_read")
+public class AutoReadController {
+    /**
+     * 在途字节数超过预算
+     */
+    public static final int BYTE_BUDGET = 1;
+    /**
+     * 写缓冲超过高水位
+     */
+    public static final int WRITABILITY = 1 << 1;
+
+    private static final AttributeKey<Integer> PAUSE_REASONS = AttributeKey.valueOf("pauseReasons");
+
+    private final Set<Channel> paused = ConcurrentHashMap.newKeySet();
+
+    public void pause(Channel channel, int reason) {
+        if (!channel.eventLoop().inEventLoop()) {
+            channel.eventLoop().execute(() -> pause(channel, reason));
+            return;
+        }
+        int reasons = reasons(channel);
+        if ((reasons & reason) != 0) {
+            return;
+        }
+        channel.attr(PAUSE_REASONS).set(reasons | reason);
+        if (reasons == 0) {
+            log.debug("pause read {} reason:{}", channel, reason);
+            channel.config().setAutoRead(false);
+            paused.add(channel);
+        }
+    }
+
+    public void resume(Channel channel, int reason) {
+        if (!channel.eventLoop().inEventLoop()) {
+            channel.eventLoop().execute(() -> resume(channel, reason));
+            return;
+        }
+        int reasons = reasons(channel);
+        if ((reasons & reason) == 0) {
+            return;
+        }
+        reasons &= ~reason;
+        channel.attr(PAUSE_REASONS).set(reasons);
+        if (reasons == 0) {
+            log.debug("resume read {} reason:{}", channel, reason);
+            paused.remove(channel);
+            channel.config().setAutoRead(true);
+        }
+    }
+
+    /**
+     * 全局的条件解除后，恢复其他因同一原因暂停、自身条件也已满足的连接
+     */
+    public void resumeAll(int reason, Predicate<Channel> canResume) {
+        if (paused.isEmpty()) {
+            return;
+        }
+        for (Channel channel : paused) {
+            if (canResume.test(channel)) {
+                resume(channel, reason);
+            }
+        }
+    }
+
+    /**
+     * 连接关闭时调用
+     */
+    public void remove(Channel channel) {
+        paused.remove(channel);
+    }
+
+    /**
+     * 当前暂停读取的连接数
+     */
+    public int getPausedCount() {
+        return paused.size();
+    }
+
+    private static int reasons(Channel channel) {
+        Integer reasons = channel.attr(PAUSE_REASONS).get();
+        return reasons == null ? 0 : reasons;
+    }
+}
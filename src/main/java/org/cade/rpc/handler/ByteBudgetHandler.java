@@ -0,0 +1,92 @@
+package org.cade.rpc.handler;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import org.cade.rpc.codec.MsgDecoder;
+import org.cade.rpc.limit.ByteBudget;
+
+/**
+ * 连接的字节预算：编码后的帧在写出前占用预算，写出完成（或失败）后归还；
+ * 正在接收的帧由 {@link MsgDecoder} 从读到长度前缀开始占用，解码完成后归还。
+ * <p>
+ * 放在 pipeline 最前面，写出方向经过编码器之后看到的是实际的 ByteBuf。
+ * 传入 {@link AutoReadController} 时（provider），连接或全局预算耗尽后暂停读取，不再接收新请求、分配更多内存，
+ * 占用回落到一半以下后恢复；consumer 不传，由 ConsumerHandler 在预算耗尽时拒绝新请求。
+ * <p>
+ * 暂停和恢复只看等待写出的帧和已经收完的帧，不计入解码器里还没收完的帧：暂停期间这些帧收不完，
+ * 计入的话连接的预算可能永远回落不到一半（例如连接预算小于单帧上限），只能等空闲超时断开。
+ * <p>
+ * 注意：此 Handler 未标注 @Sharable，每个 Channel 拥有独立实例。
+ */
+public class ByteBudgetHandler extends ChannelDuplexHandler {
+    private final ByteBudget global;
+    private final ByteBudget budget;
+    private final AutoReadController autoRead;
+
+    public ByteBudgetHandler(ByteBudget global, long connectionMaxBytes, AutoReadController autoRead) {
+        this.global = global;
+        this.budget = global.child(connectionMaxBytes);
+        this.autoRead = autoRead;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        ctx.channel().attr(MsgDecoder.BYTE_BUDGET_KEY).set(budget);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (!(msg instanceof ByteBuf buf)) {
+            ctx.write(msg, promise);
+            return;
+        }
+        long bytes = buf.readableBytes();
+        budget.reserve(bytes);
+        ChannelPromise unvoid = promise.unvoid();
+        unvoid.addListener(f -> {
+            budget.release(bytes);
+            update(ctx);
+        });
+        ctx.write(msg, unvoid);
+        update(ctx);
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        // 这一批数据已经解码，检查解码器的占用
+        update(ctx);
+        ctx.fireChannelReadComplete();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        if (autoRead != null) {
+            autoRead.remove(ctx.channel());
+        }
+        ctx.fireChannelInactive();
+    }
+
+    private void update(ChannelHandlerContext ctx) {
+        if (autoRead == null) {
+            return;
+        }
+        if (budget.isExhausted(false)) {
+            autoRead.pause(ctx.channel(), AutoReadController.BYTE_BUDGET);
+        } else if (budget.isRecovered(false)) {
+            autoRead.resume(ctx.channel(), AutoReadController.BYTE_BUDGET);
+            // 全局预算回落后，因全局预算暂停的其他连接也可以恢复
+            if (global.isRecovered(false)) {
+                autoRead.resumeAll(AutoReadController.BYTE_BUDGET, channel -> {
+                    ByteBudget other = channel.attr(MsgDecoder.BYTE_BUDGET_KEY).get();
+                    return other == null || other.isRecovered(false);
+                });
+            }
+        }
+    }
+
+    public ByteBudget getBudget() {
+        return budget;
+    }
+}
@@ -0,0 +1,36 @@
+package org.cade.rpc.handler;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+
+/**
+ * 写缓冲超过高水位（连接不可写）时暂停读取，回落到低水位以下恢复。
+ * <p>
+ * 消费者读得慢或者链路拥塞时，provider 继续读取新请求只会让待写出的响应在直接内存中越积越多；
+ * 停止读取后消费者的发送也会被 TCP 流控挡住。
+ */
+@ChannelHandler.Sharable
+public class WritabilityHandler extends ChannelInboundHandlerAdapter {
+    private final AutoReadController autoRead;
+
+    public WritabilityHandler(AutoReadController autoRead) {
+        this.autoRead = autoRead;
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isWritable()) {
+            autoRead.resume(ctx.channel(), AutoReadController.WRITABILITY);
+        } else {
+            autoRead.pause(ctx.channel(), AutoReadController.WRITABILITY);
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        autoRead.remove(ctx.channel());
+        ctx.fireChannelInactive();
+    }
+}
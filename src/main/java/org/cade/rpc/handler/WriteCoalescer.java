@@ -0,0 +1,158 @@
+package org.cade.rpc.handler;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.AttributeKey;
+import io.netty.util.ReferenceCountUtil;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 连接的写合并队列：业务线程的写出先放进无锁的并发队列，EventLoop 一次取出一批全部 write，最后只 flush 一次。
+ * <p>
+ * 每个业务线程直接 {@code writeAndFlush} 时，每次都要向 EventLoop 提交一个任务、做一次 write 系统调用。
+ * 这里只有队列从空变为非空的那次写出提交任务，同一批的帧在 ChannelOutboundBuffer 里一起 flush，
+ * NIO 连接有多个待写出的 ByteBuf 时用 writev 一次写出。
+ * <p>
+ * 已经在 EventLoop 上的写出直接执行并 flush，读取过程中的多次 flush 由 pipeline 里的
+ * {@link io.netty.handler.flush.FlushConsolidationHandler} 合并到 channelReadComplete。
+ */
+public class WriteCoalescer {
+    private static final AttributeKey<WriteCoalescer> KEY = AttributeKey.valueOf("writeCoalescer");
+    // 一批最多处理的写出数，避免长时间占用 EventLoop
+    private static final int MAX_BATCH = 1024;
+
+    private final Channel channel;
+    private final Queue<PendingWrite> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Runnable drainTask = this::drain;
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+
+    private WriteCoalescer(Channel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * 连接的写合并队列，第一次使用时创建
+     */
+    public static WriteCoalescer of(Channel channel) {
+        WriteCoalescer coalescer = channel.attr(KEY).get();
+        if (coalescer == null) {
+            WriteCoalescer created = new WriteCoalescer(channel);
+            coalescer = channel.attr(KEY).setIfAbsent(created);
+            if (coalescer == null) {
+                coalescer = created;
+            }
+        }
+        return coalescer;
+    }
+
+    /**
+     * 写出一条消息
+     */
+    public ChannelFuture write(Object msg) {
+        return write(msg, null);
+    }
+
+    /**
+     * 写出一条消息，只 write 不 flush，同一批的写出执行完后统一 flush
+     *
+     * @param beforeWrite 在 EventLoop 上、真正写出前调用，返回 false 时放弃写出并释放消息，
+     *                    用于只能在 EventLoop 上访问的状态检查（例如请求已被取消），为 null 时不检查
+     */
+    public ChannelFuture write(Object msg, BooleanSupplier beforeWrite) {
+        ChannelPromise promise = channel.newPromise();
+        PendingWrite pending = new PendingWrite(msg, promise, beforeWrite);
+        writes.increment();
+        if (channel.eventLoop().inEventLoop() && queue.isEmpty()) {
+            pending.run();
+            flushes.increment();
+            channel.flush();
+            return promise;
+        }
+        queue.offer(pending);
+        schedule();
+        return promise;
+    }
+
+    private void schedule() {
+        if (!scheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            channel.eventLoop().execute(drainTask);
+        } catch (RejectedExecutionException e) {
+            // EventLoop 已经关闭，队列里的写出不会再执行：先清标记，之后入队的写出自己走到这里失败，不会留在队列里
+            scheduled.set(false);
+            PendingWrite pending;
+            while ((pending = queue.poll()) != null) {
+                pending.fail(e);
+            }
+        }
+    }
+
+    private void drain() {
+        // 先清标记再取队列：之后入队的写出要么在这一批取到，要么重新提交任务
+        scheduled.set(false);
+        int count = 0;
+        PendingWrite pending;
+        while (count < MAX_BATCH && (pending = queue.poll()) != null) {
+            pending.run();
+            count++;
+        }
+        if (count > 0) {
+            flushes.increment();
+            channel.flush();
+        }
+        if (!queue.isEmpty()) {
+            schedule();
+        }
+    }
+
+    /**
+     * 累计的写出次数
+     */
+    public long getWrites() {
+        return writes.sum();
+    }
+
+    /**
+     * 累计的 flush 次数，每次 flush 至多一次 write/writev 系统调用（写缓冲满时除外）
+     */
+    public long getFlushes() {
+        return flushes.sum();
+    }
+
+    private class PendingWrite {
+        private final Object msg;
+        private final ChannelPromise promise;
+        private final BooleanSupplier beforeWrite;
+
+        PendingWrite(Object msg, ChannelPromise promise, BooleanSupplier beforeWrite) {
+            this.msg = msg;
+            this.promise = promise;
+            this.beforeWrite = beforeWrite;
+        }
+
+        void run() {
+            if (beforeWrite != null && !beforeWrite.getAsBoolean()) {
+                ReferenceCountUtil.release(msg);
+                promise.cancel(false);
+                return;
+            }
+            channel.write(msg, promise);
+        }
+
+        void fail(Throwable cause) {
+            ReferenceCountUtil.release(msg);
+            promise.tryFailure(cause);
+        }
+    }
+}
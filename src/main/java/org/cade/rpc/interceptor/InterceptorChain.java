@@ -5,6 +5,10 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -115,6 +119,82 @@ public class InterceptorChain {
         }
     }
 
+    /**
+     * 异步版本的 {@link #execute}，用于返回 {@link CompletionStage} 的方法。
+     * <p>
+     * BEFORE 和 AROUND 拦截器仍在调用线程上同步执行；实际调用返回的 future 完成后，
+     * 再以它的结果或异常执行 AFTER 拦截器，语义与同步版本一致。
+     * 实际调用返回普通值时，等同于同步执行后包装为已完成的 future。
+     *
+     * @param context          调用上下文
+     * @param actualInvocation 实际的方法调用
+     * @return 方法结果或拦截器结果，异常通过 future 传递
+     */
+    public CompletableFuture<Object> executeAsync(InvocationContext context, Callable<Object> actualInvocation) {
+        context.setStartTimeMillis(System.currentTimeMillis());
+
+        Object result;
+        try {
+            Object beforeResult = executeBefore(context);
+            if (beforeResult instanceof ShortCircuitResult) {
+                context.setEndTimeMillis(System.currentTimeMillis());
+                return CompletableFuture.completedFuture(((ShortCircuitResult) beforeResult).getValue());
+            }
+
+            if (!aroundInterceptors.isEmpty()) {
+                result = executeAround(context, actualInvocation);
+            } else {
+                result = actualInvocation.call();
+            }
+        } catch (Exception e) {
+            return executeAfterAsync(context, null, e);
+        }
+
+        if (result instanceof ShortCircuitResult) {
+            context.setEndTimeMillis(System.currentTimeMillis());
+            return CompletableFuture.completedFuture(((ShortCircuitResult) result).getValue());
+        }
+        if (result instanceof CompletionStage<?> stage) {
+            return stage.toCompletableFuture()
+                    .handle((value, error) -> executeAfterAsync(context, value, error))
+                    .thenCompose(Function.identity());
+        }
+        return executeAfterAsync(context, result, null);
+    }
+
+    /**
+     * 以实际调用的结果或异常执行 AFTER 拦截器
+     */
+    private CompletableFuture<Object> executeAfterAsync(InvocationContext context, Object value, Throwable error) {
+        try {
+            if (error == null) {
+                context.setResult(value);
+                Object afterResult = executeAfter(context);
+                if (afterResult instanceof ShortCircuitResult) {
+                    return CompletableFuture.completedFuture(((ShortCircuitResult) afterResult).getValue());
+                }
+                return CompletableFuture.completedFuture(context.getResult());
+            }
+
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            context.setException(cause);
+            try {
+                Object afterResult = executeAfter(context);
+                if (afterResult instanceof ShortCircuitResult) {
+                    // After 拦截器可以用阻断覆盖异常
+                    return CompletableFuture.completedFuture(((ShortCircuitResult) afterResult).getValue());
+                }
+            } catch (Exception afterException) {
+                cause.addSuppressed(afterException);
+            }
+            return CompletableFuture.failedFuture(cause);
+        } catch (Exception afterException) {
+            return CompletableFuture.failedFuture(afterException);
+        } finally {
+            context.setEndTimeMillis(System.currentTimeMillis());
+        }
+    }
+
     /**
      * 按顺序执行 BEFORE 拦截器。
      */
@@ -0,0 +1,125 @@
+package org.cade.rpc.limit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按字节数限制在途内存。请求数限流只限制个数，几个很大的请求或响应就能耗尽直接内存。
+ * <p>
+ * 预算分两级：全局一个，每个连接从全局预算创建一个子预算，占用同时计入两级。
+ * 占用的是编码后等待写出的帧、以及读到长度前缀之后正在接收的帧，写出或解码完成后归还。
+ * <p>
+ * 已经在网络上的数据无法拒绝，{@link #reserve} 总是成功；调用方根据 {@link #isExhausted()} 拒绝新请求（consumer）
+ * 或暂停读取（provider），占用回落到上限的一半以下（{@link #isRecovered()}）才恢复，避免在上限附近来回切换。
+ * <p>
+ * 正在接收的帧单独记录（{@link #reserveReceiving}）。暂停读取后这些帧收不完、占用也归还不了，
+ * 暂停和恢复读取的判断不计入它们（includeReceiving = false），否则只靠未收完的帧就能让连接一直暂停到空闲断开。
+ */
+public class ByteBudget {
+    private final ByteBudget parent;
+    private final long maxBytes;
+    private final AtomicLong used = new AtomicLong();
+    // used 中正在接收、尚未解码完的帧
+    private final AtomicLong receiving = new AtomicLong();
+
+    /**
+     * @param maxBytes 字节数上限，0 表示不限制，只统计占用
+     */
+    public ByteBudget(long maxBytes) {
+        this(null, maxBytes);
+    }
+
+    private ByteBudget(ByteBudget parent, long maxBytes) {
+        this.parent = parent;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 创建一个连接的子预算，占用同时计入本预算
+     */
+    public ByteBudget child(long maxBytes) {
+        return new ByteBudget(this, maxBytes);
+    }
+
+    public void reserve(long bytes) {
+        used.addAndGet(bytes);
+        if (parent != null) {
+            parent.reserve(bytes);
+        }
+    }
+
+    public void release(long bytes) {
+        used.addAndGet(-bytes);
+        if (parent != null) {
+            parent.release(bytes);
+        }
+    }
+
+    /**
+     * 占用正在接收的帧：从读到长度前缀开始，到解码完成为止
+     */
+    public void reserveReceiving(long bytes) {
+        receiving.addAndGet(bytes);
+        used.addAndGet(bytes);
+        if (parent != null) {
+            parent.reserveReceiving(bytes);
+        }
+    }
+
+    public void releaseReceiving(long bytes) {
+        receiving.addAndGet(-bytes);
+        used.addAndGet(-bytes);
+        if (parent != null) {
+            parent.releaseReceiving(bytes);
+        }
+    }
+
+    /**
+     * 本级或全局的占用达到上限
+     */
+    public boolean isExhausted() {
+        return isExhausted(true);
+    }
+
+    /**
+     * @param includeReceiving 是否计入正在接收的帧
+     */
+    public boolean isExhausted(boolean includeReceiving) {
+        return (maxBytes > 0 && levelUsed(includeReceiving) >= maxBytes) || (parent != null && parent.isExhausted(includeReceiving));
+    }
+
+    /**
+     * 本级和全局的占用都不超过上限的一半
+     */
+    public boolean isRecovered() {
+        return isRecovered(true);
+    }
+
+    /**
+     * @param includeReceiving 是否计入正在接收的帧
+     */
+    public boolean isRecovered(boolean includeReceiving) {
+        return (maxBytes <= 0 || levelUsed(includeReceiving) <= maxBytes / 2)
+                && (parent == null || parent.isRecovered(includeReceiving));
+    }
+
+    private long levelUsed(boolean includeReceiving) {
+        return includeReceiving ? used.get() : used.get() - receiving.get();
+    }
+
+    public long getUsedBytes() {
+        return used.get();
+    }
+
+    public long getReceivingBytes() {
+        return receiving.get();
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "ByteBudget{used=" + used.get() + ", max=" + maxBytes + '}';
+    }
+}
@@ -0,0 +1,99 @@
+package org.cade.rpc.limit;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 分层限流：方法、服务、调用方、全局四级令牌桶，一个请求要依次通过所有配置了的层级。
+ * <p>
+ * 规则的 key 为 {@code *}（全局）、服务名 或 服务名#方法名；调用方这一级由调用者传入
+ * （consumer 端是端点的限流器，provider 端是连接的限流器）。先检查最细的层级，被拒绝时不会消耗上层的令牌；
+ * 某一级拒绝时，已经通过的层级通过 {@link Limiter#cancel()} 退回令牌。
+ * <p>
+ * 各级都是令牌桶，放行之后不需要 release。服务和全局的令牌桶由所有调用线程共享，使用 {@link StripedRateLimiter}。
+ */
+public class HierarchicalLimiter {
+    public static final String GLOBAL = "*";
+
+    private final Limiter global;
+    // 服务名 -> 服务级和方法级限流器，构造后只读
+    private final Map<String, ServiceLimits> services = new HashMap<>();
+
+    public HierarchicalLimiter(Map<String, RateLimitConfig> rules) {
+        Limiter global = null;
+        for (Map.Entry<String, RateLimitConfig> rule : rules.entrySet()) {
+            String key = rule.getKey();
+            Limiter limiter = create(rule.getValue());
+            if (GLOBAL.equals(key)) {
+                global = limiter;
+                continue;
+            }
+            int split = key.indexOf('#');
+            if (split < 0) {
+                services.computeIfAbsent(key, k -> new ServiceLimits()).service = limiter;
+            } else {
+                services.computeIfAbsent(key.substring(0, split), k -> new ServiceLimits())
+                        .methods.put(key.substring(split + 1), limiter);
+            }
+        }
+        this.global = global;
+    }
+
+    private static Limiter create(RateLimitConfig config) {
+        long burst = config.getBurst() > 0 ? config.getBurst() : config.getRate();
+        return new StripedRateLimiter(config.getRate(), burst);
+    }
+
+    /**
+     * @param caller 调用方这一级的限流器，可以为 null
+     * @return false 表示某一级的令牌不足
+     */
+    public boolean tryAcquire(String serviceName, String methodName, Limiter caller) {
+        ServiceLimits limits = services.get(serviceName);
+        Limiter method = limits == null ? null : limits.methods.get(methodName);
+        Limiter service = limits == null ? null : limits.service;
+        if (method != null && !method.tryAcquire()) {
+            return false;
+        }
+        if (service != null && !service.tryAcquire()) {
+            cancel(method);
+            return false;
+        }
+        if (caller != null && !caller.tryAcquire()) {
+            cancel(method);
+            cancel(service);
+            return false;
+        }
+        if (global != null && !global.tryAcquire()) {
+            cancel(method);
+            cancel(service);
+            cancel(caller);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 请求通过了所有层级，但被之后的限流拒绝、没有发出时退回令牌
+     */
+    public void cancel(String serviceName, String methodName, Limiter caller) {
+        ServiceLimits limits = services.get(serviceName);
+        if (limits != null) {
+            cancel(limits.methods.get(methodName));
+            cancel(limits.service);
+        }
+        cancel(caller);
+        cancel(global);
+    }
+
+    private static void cancel(Limiter limiter) {
+        if (limiter != null) {
+            limiter.cancel();
+        }
+    }
+
+    private static class ServiceLimits {
+        private Limiter service;
+        private final Map<String, Limiter> methods = new HashMap<>();
+    }
+}
@@ -8,4 +8,22 @@ public interface Limiter {
     }
 
     void release(int remain);
+
+    /**
+     * 归还一个许可，同时报告这次请求的耗时。自适应限流器据此调整上限，其他限流器等同于 {@link #release()}
+     *
+     * @param rttNanos 从获取许可到请求结束的耗时
+     * @param dropped  请求超时或被下游拒绝
+     */
+    default void release(long rttNanos, boolean dropped) {
+        release();
+    }
+
+    /**
+     * 撤销刚获取的许可：请求被后面的限流拒绝、没有发出。
+     * 并发限流器等同于 {@link #release()}；令牌桶的 release 什么都不做，cancel 把令牌放回桶中
+     */
+    default void cancel() {
+        release();
+    }
 }
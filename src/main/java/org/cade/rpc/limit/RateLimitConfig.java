@@ -0,0 +1,18 @@
+package org.cade.rpc.limit;
+
+import lombok.Data;
+
+/**
+ * 一级令牌桶限流的配置
+ */
+@Data
+public class RateLimitConfig {
+    /**
+     * 每秒放行的请求数
+     */
+    private long rate;
+    /**
+     * 允许的突发请求数，即桶容量，0 表示与 rate 相同
+     */
+    private long burst;
+}
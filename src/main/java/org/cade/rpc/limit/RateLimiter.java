@@ -20,12 +20,23 @@ public class RateLimiter implements Limiter {
     private final AtomicLong lastRefillTimestamp;
 
     public RateLimiter(long capacity) {
-        if ( capacity <= 0) {
+        this(capacity, capacity);
+    }
+
+    /**
+     * @param ratePerSecond 每秒生成的令牌数
+     * @param burst         桶容量，即允许的突发请求数
+     */
+    public RateLimiter(long ratePerSecond, long burst) {
+        if (ratePerSecond <= 0 || burst <= 0) {
             throw new IllegalArgumentException("rate and capacity must be positive");
         }
-        this.capacity = capacity;
-        this.nanosPerToken = TimeUnit.SECONDS.toNanos(1) / capacity;
-        this.tokens = new AtomicLong(capacity);
+        if (ratePerSecond > TimeUnit.SECONDS.toNanos(1)) {
+            throw new IllegalArgumentException("rate must not exceed 1e9 per second");
+        }
+        this.capacity = burst;
+        this.nanosPerToken = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+        this.tokens = new AtomicLong(burst);
         this.lastRefillTimestamp = new AtomicLong(System.nanoTime());
     }
 
@@ -45,6 +56,33 @@ public class RateLimiter implements Limiter {
         }
     }
 
+    /**
+     * 一次取走最多 max 个令牌，供 {@link StripedRateLimiter} 批量预留
+     *
+     * @return 取到的令牌数，没有令牌时返回 0
+     */
+    long tryAcquireUpTo(long max) {
+        refill();
+        while (true) {
+            long current = tokens.get();
+            if (current < 1) {
+                return 0;
+            }
+            long take = Math.min(current, max);
+            if (tokens.compareAndSet(current, current - take)) {
+                return take;
+            }
+        }
+    }
+
+    /**
+     * 请求没有发出，令牌放回桶中
+     */
+    @Override
+    public void cancel() {
+        tokens.updateAndGet(current -> Math.min(capacity, current + 1));
+    }
+
     /**
      * 补充令牌。
      * <p>
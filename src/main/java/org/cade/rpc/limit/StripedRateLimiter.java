@@ -0,0 +1,101 @@
+package org.cade.rpc.limit;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 分段令牌桶：多线程共享的限流器，降低 {@link RateLimiter} 单个 AtomicLong 上的 CAS 竞争。
+ * <p>
+ * 令牌仍然从一个中心令牌桶生成，线程按线程 ID 落到某个分段，每次从中心桶批量预留 chunk 个令牌放在分段里，
+ * 之后的请求先在自己的分段里扣减，只有同一分段的线程之间才会竞争；中心桶每 chunk 个请求才访问一次。
+ * <p>
+ * 预留的令牌都已经从中心桶取走，从启动开始累计放行的请求数不超过 burst + rate × 时间；中心桶取不到令牌时会从其他分段借，
+ * 不会因为令牌滞留在空闲分段而少放行。分段里预留的令牌在中心桶补满之后仍然可用，所以某一段时间内的突发最多多出 分段数 × chunk 个。
+ */
+public class StripedRateLimiter implements Limiter {
+    // 每个分段占一个缓存行，避免伪共享
+    private static final int STRIDE = 8;
+    private static final int MAX_STRIPES = 64;
+    private static final long MAX_CHUNK = 64;
+
+    private final RateLimiter bucket;
+    private final AtomicLongArray stripes;
+    private final int mask;
+    private final long chunk;
+
+    /**
+     * @param ratePerSecond 每秒生成的令牌数
+     * @param burst         允许的突发请求数
+     */
+    public StripedRateLimiter(long ratePerSecond, long burst) {
+        this(ratePerSecond, burst, defaultStripes());
+    }
+
+    StripedRateLimiter(long ratePerSecond, long burst, int stripeCount) {
+        if (Integer.bitCount(stripeCount) != 1) {
+            throw new IllegalArgumentException("stripe count must be a power of two");
+        }
+        this.bucket = new RateLimiter(ratePerSecond, burst);
+        this.stripes = new AtomicLongArray(stripeCount * STRIDE);
+        this.mask = stripeCount - 1;
+        // 预留太多会让低速率的限流器在某个分段里囤积大部分令牌
+        this.chunk = Math.max(1, Math.min(MAX_CHUNK, burst / (stripeCount * 4L)));
+    }
+
+    private static int defaultStripes() {
+        int cpus = Runtime.getRuntime().availableProcessors() * 2;
+        int stripes = 1;
+        while (stripes < cpus && stripes < MAX_STRIPES) {
+            stripes <<= 1;
+        }
+        return stripes;
+    }
+
+    @Override
+    public boolean tryAcquire() {
+        int index = stripeIndex();
+        if (takeLocal(index)) {
+            return true;
+        }
+        long reserved = bucket.tryAcquireUpTo(chunk);
+        if (reserved > 0) {
+            if (reserved > 1) {
+                stripes.addAndGet(index, reserved - 1);
+            }
+            return true;
+        }
+        // 中心桶没有令牌了，从其他分段借，避免令牌滞留在不活跃的分段里
+        for (int i = 0; i <= mask; i++) {
+            if (takeLocal(i * STRIDE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean takeLocal(int index) {
+        long current;
+        while ((current = stripes.get(index)) > 0) {
+            if (stripes.compareAndSet(index, current, current - 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int stripeIndex() {
+        long id = Thread.currentThread().getId();
+        // 线程 ID 是连续分配的，打散后再取低位
+        int hash = (int) (id * 0x9E3779B97F4A7C15L >>> 32);
+        return (hash & mask) * STRIDE;
+    }
+
+    @Override
+    public void release(int remain) {
+        // 令牌桶不需要归还
+    }
+
+    @Override
+    public void cancel() {
+        stripes.incrementAndGet(stripeIndex());
+    }
+}
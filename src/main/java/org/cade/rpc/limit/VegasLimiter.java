@@ -0,0 +1,180 @@
+package org.cade.rpc.limit;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * 自适应并发限流器，按 TCP Vegas 的思路根据请求耗时调整并发上限。
+ * <p>
+ * 记录无负载时的耗时 rttNoLoad（观察到的最小耗时），每一轮用 limit * (1 - rttNoLoad / 这一轮的最小耗时) 估算排队中的请求数：
+ * 排队少于 alpha 时增大上限，排队超过 beta 时减小上限，这一轮有请求超时或被拒绝时上限乘以 0.9。
+ * alpha、beta 随上限按 log10 增长，上限越大调整步长越大。
+ * <p>
+ * 下游的耗时基线会变化（扩容、换机器），每 30 轮左右把上限减半一轮，排空自己造成的排队后重新测量 rttNoLoad。
+ * 不能在排队时直接重新测量：测到的基线包含了排队时间，之后每次重新测量基线都会更大，上限越来越高。
+ * <p>
+ * 获取和归还许可都不加锁，样本通过原子变量累积到当前一轮；只有让这一轮样本数达到阈值的线程加锁，取走这一轮的统计并调整上限。
+ */
+public class VegasLimiter implements Limiter {
+    // 每隔多少轮排空一次队列重新测量 rttNoLoad
+    private static final int PROBE_ROUNDS = 30;
+    private static final int MIN_WINDOW_SAMPLES = 10;
+    // 一轮中有请求超时或被拒绝时上限乘以该系数
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final AtomicInteger inflight = new AtomicInteger();
+    private volatile int limit;
+
+    // 当前一轮的样本，归还许可时无锁累积
+    private final AtomicInteger windowSamples = new AtomicInteger();
+    private final AtomicInteger windowRttCount = new AtomicInteger();
+    private final LongAccumulator windowMinRtt = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    private final LongAccumulator windowMaxInflight = new LongAccumulator(Math::max, 0);
+    private final AtomicBoolean windowDropped = new AtomicBoolean();
+    // 一轮需要的样本数，调整上限时更新
+    private volatile int roundSamples;
+
+    // 以下字段由 this 保护
+    private double estimatedLimit;
+    private long rttNoLoadNanos;
+    // 正在排空队列重新测量 rttNoLoad，结束后恢复为 probeSavedLimit
+    private boolean probing;
+    private double probeSavedLimit;
+    private long probeCountdown;
+
+    public VegasLimiter(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit <= 0 || initialLimit < minLimit || maxLimit < initialLimit) {
+            throw new IllegalArgumentException("require 0 < minLimit <= initialLimit <= maxLimit");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = initialLimit;
+        this.estimatedLimit = initialLimit;
+        this.probeCountdown = nextProbeCountdown();
+        this.roundSamples = Math.max(initialLimit, MIN_WINDOW_SAMPLES);
+    }
+
+    @Override
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inflight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inflight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 归还许可但不参与调整，例如请求被取消、连接断开或者结果与下游负载无关
+     */
+    @Override
+    public void release(int remain) {
+        inflight.addAndGet(-remain);
+    }
+
+    @Override
+    public void release(long rttNanos, boolean dropped) {
+        int current = inflight.getAndDecrement();
+        if (dropped) {
+            windowDropped.set(true);
+        } else {
+            windowRttCount.incrementAndGet();
+            windowMinRtt.accumulate(rttNanos);
+        }
+        windowMaxInflight.accumulate(current);
+        // 每一轮（约 limit 个请求，即一个 RTT）调整一次；逐个样本调整时，上限的变化要一个 RTT 之后才反映到耗时上，会来回震荡
+        if (windowSamples.incrementAndGet() >= roundSamples) {
+            endRound();
+        }
+    }
+
+    private synchronized void endRound() {
+        // 同时越过边界的其他线程拿到锁时这一轮已经结束
+        if (windowSamples.get() < roundSamples) {
+            return;
+        }
+        windowSamples.set(0);
+        int rttCount = windowRttCount.getAndSet(0);
+        long minRtt = windowMinRtt.getThenReset();
+        long maxInflight = windowMaxInflight.getThenReset();
+        boolean dropped = windowDropped.getAndSet(false);
+        adjust(rttCount, minRtt, maxInflight, dropped);
+        // 排空的一轮要等减半之前发出的请求都结束，再收到一批减半之后发出的请求
+        int samples = probing ? (int) (probeSavedLimit * 2) : limit;
+        roundSamples = Math.max(samples, MIN_WINDOW_SAMPLES);
+    }
+
+    private void adjust(int windowRttCount, long windowMinRtt, long windowMaxInflight, boolean windowDropped) {
+        if (probing) {
+            // 队列已经排空，这一轮的最小耗时就是新的基线
+            if (windowRttCount > 0) {
+                rttNoLoadNanos = Math.max(1, windowMinRtt);
+            }
+            probing = false;
+            estimatedLimit = probeSavedLimit;
+            limit = (int) estimatedLimit;
+            return;
+        }
+        if (--probeCountdown <= 0 && rttNoLoadNanos > 0) {
+            probeCountdown = nextProbeCountdown();
+            probing = true;
+            probeSavedLimit = estimatedLimit;
+            limit = Math.max(minLimit, (int) (estimatedLimit / 2));
+            return;
+        }
+        if (windowRttCount > 0 && (rttNoLoadNanos == 0 || windowMinRtt < rttNoLoadNanos)) {
+            rttNoLoadNanos = Math.max(1, windowMinRtt);
+        }
+        double current = estimatedLimit;
+        double step = Math.max(1, Math.log10(current));
+        double target;
+        if (windowDropped) {
+            target = current * BACKOFF_RATIO;
+        } else {
+            // 在途请求不到上限的一半时说明调用方自己没有那么多请求，耗时不能说明上限偏大还是偏小
+            if (windowMaxInflight * 2 < current) {
+                return;
+            }
+            // 与 rttNoLoad 一样取这一轮的最小耗时，耗时本身的波动不会被当成排队
+            double queue = Math.ceil(current * (1 - (double) rttNoLoadNanos / windowMinRtt));
+            double alpha = 3 * step;
+            double beta = 6 * step;
+            if (queue <= step) {
+                target = current + beta;
+            } else if (queue < alpha) {
+                target = current + step;
+            } else if (queue > beta) {
+                target = current - step;
+            } else {
+                return;
+            }
+        }
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, target));
+        limit = (int) estimatedLimit;
+    }
+
+    private static long nextProbeCountdown() {
+        // 加一点随机，避免多个限流器同时重新测量
+        return (long) (PROBE_ROUNDS * (1 + ThreadLocalRandom.current().nextDouble(0.5)));
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInflight() {
+        return inflight.get();
+    }
+
+    @Override
+    public String toString() {
+        return "VegasLimiter{limit=" + limit + ", inflight=" + inflight.get() + '}';
+    }
+}
@@ -1,10 +1,13 @@
 package org.cade.rpc.loadbalance;
 
-import org.cade.rpc.register.Metadata;
+import org.cade.rpc.comsumer.Endpoint;
 import org.cade.rpc.spi.Extension;
 
 import java.util.List;
 
 public interface LoadBalancer  {
-    Metadata select(List<Metadata> metadataList);
+    /**
+     * @param endpoints 候选端点，不要修改
+     */
+    Endpoint select(List<Endpoint> endpoints);
 }
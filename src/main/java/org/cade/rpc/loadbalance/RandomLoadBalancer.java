@@ -1,6 +1,6 @@
 package org.cade.rpc.loadbalance;
 
-import org.cade.rpc.register.Metadata;
+import org.cade.rpc.comsumer.Endpoint;
 import org.cade.rpc.spi.SPI;
 
 import java.util.List;
@@ -12,11 +12,11 @@ public class RandomLoadBalancer implements LoadBalancer {
 
 
     @Override
-    public Metadata select(List<Metadata> metadataList) {
-        if(metadataList.isEmpty()){
+    public Endpoint select(List<Endpoint> endpoints) {
+        if(endpoints.isEmpty()){
             return null;
         }
-        int inx = random.nextInt(0,metadataList.size());
-        return metadataList.get(inx);
+        int inx = random.nextInt(0,endpoints.size());
+        return endpoints.get(inx);
     }
 }
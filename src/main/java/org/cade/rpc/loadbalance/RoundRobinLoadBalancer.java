@@ -1,6 +1,6 @@
 package org.cade.rpc.loadbalance;
 
-import org.cade.rpc.register.Metadata;
+import org.cade.rpc.comsumer.Endpoint;
 import org.cade.rpc.spi.SPI;
 
 import java.util.List;
@@ -11,11 +11,11 @@ public class RoundRobinLoadBalancer implements LoadBalancer {
     private final AtomicInteger lastInx = new AtomicInteger(0);
 
     @Override
-    public Metadata select(List<Metadata> metadataList) {
-        if (metadataList.isEmpty()){
+    public Endpoint select(List<Endpoint> endpoints) {
+        if (endpoints.isEmpty()){
             return null;
         }
         int inx = Math.abs(lastInx.getAndIncrement());
-        return metadataList.get(inx % metadataList.size());
+        return endpoints.get(inx % endpoints.size());
     }
 }
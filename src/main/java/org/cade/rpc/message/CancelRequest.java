@@ -0,0 +1,23 @@
+package org.cade.rpc.message;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 消费者放弃一个在途请求（超时、重试中被其他请求抢先完成等）时发给 provider，
+ * provider 收到后不再执行尚未开始的请求，也不再写出它的响应。
+ */
+@Data
+@NoArgsConstructor
+public class CancelRequest implements Serializable {
+    /**
+     * 被取消请求的 ID，只在发送它的连接内有效
+     */
+    private int requestID;
+
+    public CancelRequest(int requestID) {
+        this.requestID = requestID;
+    }
+}
@@ -9,7 +9,14 @@ import java.util.Map;
 @Data
 public class Message {
     public static final byte[] Magic = "cade".getBytes();
-    public static final byte[] Version = "10.00.00".getBytes();
+    /**
+     * 10.01.00 起请求 ID 和剩余时间移到帧头，请求体编码一次后可以发给多个 provider
+     */
+    public static final byte[] Version = "10.01.00".getBytes();
+    /**
+     * 帧头长度：Length(4) + Magic(4) + Version(8) + Type(1) + Ser/Comp(1) + RequestID(4) + TimeoutMS(4)
+     */
+    public static final int HEADER_LENGTH = Integer.BYTES + Magic.length + Version.length + Byte.BYTES * 2 + Integer.BYTES * 2;
 
     private byte[] magic;
 
@@ -48,7 +55,8 @@ public class Message {
         REQUEST(1, Request.class),
         RESPONSE(2, Response.class),
         HEARTBEAT_REQUEST(3, HeartbeatRequest.class),
-        HEARTBEAT_RESPONSE(4, HeartbeatResponse.class);
+        HEARTBEAT_RESPONSE(4, HeartbeatResponse.class),
+        CANCEL(5, CancelRequest.class);
 
         @Getter
         private final Class<?> messageClass;
@@ -3,12 +3,9 @@ package org.cade.rpc.message;
 import lombok.Data;
 
 import java.io.Serializable;
-import java.util.concurrent.atomic.AtomicInteger;
 
 @Data
 public class Request implements Serializable {
-    private static final AtomicInteger idGenerator = new AtomicInteger(1);
-
     private String serviceName;
     private boolean genericInvoke;
     private String methodName;
@@ -16,7 +13,15 @@ public class Request implements Serializable {
     private String[] paramsTypeStr;
     private Object[] params;
     private String returnTypeStr;
-    private int requestID = idGenerator.getAndIncrement();
+    /**
+     * 请求 ID，只在连接内唯一。在帧头中传输，不进入请求体；由 MsgDecoder 解码时从帧头填入
+     */
+    private transient int requestID;
+    /**
+     * 剩余时间预算（毫秒），0 表示不限制。在帧头中传输，不进入请求体；由 MsgDecoder 解码时从帧头填入。
+     * 使用相对时间而不是绝对时间戳，两端时钟不同步也不受影响；网络传输耗时不计入。
+     */
+    private transient int timeoutMS;
 
     /**
      * 分布式链路追踪 ID
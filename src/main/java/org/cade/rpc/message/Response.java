@@ -6,6 +6,11 @@ import java.io.Serializable;
 
 @Data
 public class Response implements Serializable {
+    /**
+     * 服务方法自身抛出的业务异常，区别于限流、过载、找不到服务等 provider 侧的失败（-1）
+     */
+    public static final int CODE_BIZ_ERROR = -2;
+
     private Object result;
     private Integer code;
     private String message;
@@ -31,4 +36,10 @@ public class Response implements Serializable {
         response.setRequestId(RequestId);
         return response;
     }
+
+    public static Response bizError(String message, int RequestId) {
+        Response response = error(message, RequestId);
+        response.setCode(CODE_BIZ_ERROR);
+        return response;
+    }
 }
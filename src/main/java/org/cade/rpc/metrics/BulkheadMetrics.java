@@ -0,0 +1,91 @@
+package org.cade.rpc.metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * 单个舱壁线程池的统计：排队耗时、活跃线程数、拒绝数（队列满）、丢弃数（CoDel 过载时排队过久）
+ */
+public class BulkheadMetrics {
+    private final String name;
+    private final IntSupplier queueSize;
+    private final AtomicInteger activeThreads = new AtomicInteger();
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder queueWaitNanos = new LongAdder();
+    private final AtomicLong maxQueueWaitNanos = new AtomicLong();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder shed = new LongAdder();
+
+    public BulkheadMetrics(String name, IntSupplier queueSize) {
+        this.name = name;
+        this.queueSize = queueSize;
+    }
+
+    public void recordStart(long waitNanos) {
+        activeThreads.incrementAndGet();
+        executed.increment();
+        queueWaitNanos.add(waitNanos);
+        maxQueueWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    public void recordEnd() {
+        activeThreads.decrementAndGet();
+    }
+
+    public void recordRejected() {
+        rejected.increment();
+    }
+
+    public void recordShed() {
+        shed.increment();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getQueueSize() {
+        return queueSize.getAsInt();
+    }
+
+    public int getActiveThreads() {
+        return activeThreads.get();
+    }
+
+    public long getExecuted() {
+        return executed.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public long getShed() {
+        return shed.sum();
+    }
+
+    public long getAverageQueueWaitNanos() {
+        long count = executed.sum();
+        return count == 0 ? 0 : queueWaitNanos.sum() / count;
+    }
+
+    public long getMaxQueueWaitNanos() {
+        return maxQueueWaitNanos.get();
+    }
+
+    @Override
+    public String toString() {
+        return "BulkheadMetrics{" +
+                "name='" + name + '\'' +
+                ", queueSize=" + getQueueSize() +
+                ", activeThreads=" + getActiveThreads() +
+                ", executed=" + getExecuted() +
+                ", rejected=" + getRejected() +
+                ", shed=" + getShed() +
+                ", avgQueueWaitNanos=" + getAverageQueueWaitNanos() +
+                ", maxQueueWaitNanos=" + getMaxQueueWaitNanos() +
+                '}';
+    }
+}
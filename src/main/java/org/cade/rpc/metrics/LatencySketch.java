@@ -0,0 +1,103 @@
+package org.cade.rpc.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 延迟分布草图：对数-线性分桶的直方图，用来估算延迟分位数。
+ * <p>
+ * 每个 2 的幂区间再等分为 8 个子桶，相对误差不超过 12.5%；512 个计数覆盖 1 微秒到数百年，记录只有一次原子自增。
+ * 只保留最近两个统计窗口的数据，分位数随负载变化而更新。
+ */
+public class LatencySketch {
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+    private final long windowNanos;
+    private volatile Window current;
+    private volatile Window previous;
+
+    public LatencySketch(long windowMS) {
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMS);
+        this.current = new Window(System.nanoTime());
+        this.previous = new Window(current.startNanos - windowNanos);
+    }
+
+    public void record(long latencyNanos) {
+        Window window = rotate(System.nanoTime());
+        window.counts.incrementAndGet(index(Math.max(1, TimeUnit.NANOSECONDS.toMicros(latencyNanos))));
+    }
+
+    /**
+     * @param quantile   分位数，例如 0.95
+     * @param minSamples 最近两个窗口的样本数不足时返回 -1
+     * @return 分位数所在桶的上界（微秒）
+     */
+    public long quantileMicros(double quantile, long minSamples) {
+        Window now = rotate(System.nanoTime());
+        Window prev = previous;
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = now.counts.get(i) + prev.counts.get(i);
+            total += counts[i];
+        }
+        if (total == 0 || total < minSamples) {
+            return -1;
+        }
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    private Window rotate(long nowNanos) {
+        Window window = current;
+        if (nowNanos - window.startNanos < windowNanos) {
+            return window;
+        }
+        synchronized (this) {
+            window = current;
+            if (nowNanos - window.startNanos >= windowNanos) {
+                // 超过两个窗口没有数据时旧窗口已经没有参考价值
+                previous = nowNanos - window.startNanos >= 2 * windowNanos ? new Window(nowNanos - windowNanos) : window;
+                window = new Window(nowNanos);
+                current = window;
+            }
+            return window;
+        }
+    }
+
+    static int index(long micros) {
+        int msb = 63 - Long.numberOfLeadingZeros(micros);
+        if (msb < SUB_BITS) {
+            return (int) micros;
+        }
+        int shift = msb - SUB_BITS;
+        return ((shift + 1) << SUB_BITS) + (int) ((micros >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index >>> SUB_BITS) - 1;
+        long sub = index & (SUB_BUCKETS - 1);
+        return ((SUB_BUCKETS + sub + 1) << shift) - 1;
+    }
+
+    private static class Window {
+        private final long startNanos;
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+        Window(long startNanos) {
+            this.startNanos = startNanos;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package org.cade.rpc.metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * provider 业务线程占用统计。
+ * <p>
+ * busyNanos 只统计业务线程真正被占用的时间：异步服务方法返回 future 后线程即被释放，
+ * 之后等待 future 完成的时间计入 pendingAsync 而不是线程占用。
+ * 占用率 = 两次采样间 busyNanos 的增量 / (采样间隔 * 线程数)。
+ */
+public class WorkerMetrics {
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+    private final LongAdder busyNanos = new LongAdder();
+    private final LongAdder completedTasks = new LongAdder();
+    private final AtomicInteger pendingAsync = new AtomicInteger();
+    private final LongAdder asyncInvocations = new LongAdder();
+    private final LongAdder inlineInvocations = new LongAdder();
+    private final LongAdder expiredDropped = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+
+    /**
+     * 业务线程开始执行任务
+     *
+     * @return 开始时间，传给 {@link #taskEnd}
+     */
+    public long taskStart() {
+        activeWorkers.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    public void taskEnd(long startNanos) {
+        busyNanos.add(System.nanoTime() - startNanos);
+        completedTasks.increment();
+        activeWorkers.decrementAndGet();
+    }
+
+    /**
+     * 服务方法返回了未完成的 future，业务线程已释放
+     */
+    public void asyncStart() {
+        asyncInvocations.increment();
+        pendingAsync.incrementAndGet();
+    }
+
+    public void asyncEnd() {
+        pendingAsync.decrementAndGet();
+    }
+
+    /**
+     * 非阻塞方法直接在 EventLoop 上执行完成，不占用业务线程
+     */
+    public void inlineInvoked() {
+        inlineInvocations.increment();
+    }
+
+    /**
+     * 请求出队时已超过消费者的截止时间，没有执行服务方法
+     */
+    public void expiredDropped() {
+        expiredDropped.increment();
+    }
+
+    /**
+     * 消费者取消了请求，provider 不再执行或不再写出响应
+     */
+    public void cancelled() {
+        cancelled.increment();
+    }
+
+    public int getActiveWorkers() {
+        return activeWorkers.get();
+    }
+
+    public long getBusyNanos() {
+        return busyNanos.sum();
+    }
+
+    public long getCompletedTasks() {
+        return completedTasks.sum();
+    }
+
+    public int getPendingAsync() {
+        return pendingAsync.get();
+    }
+
+    public long getAsyncInvocations() {
+        return asyncInvocations.sum();
+    }
+
+    public long getInlineInvocations() {
+        return inlineInvocations.sum();
+    }
+
+    public long getExpiredDropped() {
+        return expiredDropped.sum();
+    }
+
+    public long getCancelled() {
+        return cancelled.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "WorkerMetrics{" +
+                "activeWorkers=" + getActiveWorkers() +
+                ", busyNanos=" + getBusyNanos() +
+                ", completedTasks=" + getCompletedTasks() +
+                ", pendingAsync=" + getPendingAsync() +
+                ", asyncInvocations=" + getAsyncInvocations() +
+                ", inlineInvocations=" + getInlineInvocations() +
+                ", expiredDropped=" + getExpiredDropped() +
+                ", cancelled=" + getCancelled() +
+                '}';
+    }
+}
@@ -0,0 +1,82 @@
+package org.cade.rpc.outlier;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 一个 provider 地址（host:port）的健康状态，该地址上所有服务的端点共享同一个实例。
+ * <p>
+ * 连续失败次数达到阈值，或者延迟明显偏离集群中位数时驱逐该地址，驱逐期间所有服务在负载均衡前都会排除它。
+ * 驱逐时长为 baseEjectionMS * 2^(驱逐次数-1)，不超过 maxEjectionMS；
+ * 每健康一个 baseEjectionMS 驱逐次数减一，下一次驱逐时长逐步回落。
+ */
+@Slf4j(topic = "outlier_detector")
+public class HostHealth {
+    private final String address;
+    private final OutlierDetector detector;
+    private final AtomicInteger consecutiveErrors = new AtomicInteger();
+    private volatile long ejectedUntilMS;
+    // 由 this 保护
+    private int ejections;
+
+    HostHealth(String address, OutlierDetector detector) {
+        this.address = address;
+        this.detector = detector;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public boolean isEjected(long nowMS) {
+        return nowMS < ejectedUntilMS;
+    }
+
+    public int getConsecutiveErrors() {
+        return consecutiveErrors.get();
+    }
+
+    public void onSuccess() {
+        // 绝大多数请求都成功，先读再写，避免所有调用线程争抢同一个缓存行
+        if (consecutiveErrors.get() != 0) {
+            consecutiveErrors.set(0);
+        }
+    }
+
+    /**
+     * 请求超时、连接失败或 provider 返回错误；取消和消费者本地的限流拒绝不调用
+     */
+    public void onError(long nowMS) {
+        int threshold = detector.getConsecutiveErrors();
+        if (consecutiveErrors.incrementAndGet() >= threshold && threshold > 0) {
+            eject(nowMS, "consecutive errors " + threshold);
+        }
+    }
+
+    /**
+     * @return false 表示已经处于驱逐中
+     */
+    synchronized boolean eject(long nowMS, String reason) {
+        if (isEjected(nowMS)) {
+            return false;
+        }
+        long baseMS = detector.getBaseEjectionMS();
+        if (ejections > 0 && baseMS > 0) {
+            // 上一次驱逐结束后每健康一个 baseEjectionMS 回落一级
+            long healthyMS = nowMS - ejectedUntilMS;
+            ejections = (int) Math.max(0, ejections - healthyMS / baseMS);
+        }
+        ejections++;
+        long durationMS = Math.min(detector.getMaxEjectionMS(), baseMS << Math.min(ejections - 1, 20));
+        ejectedUntilMS = nowMS + durationMS;
+        consecutiveErrors.set(0);
+        log.warn("eject {} for {}ms, ejections:{} reason:{}", address, durationMS, ejections, reason);
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "HostHealth{" + address + ", ejectedUntilMS=" + ejectedUntilMS + '}';
+    }
+}
@@ -0,0 +1,156 @@
+package org.cade.rpc.outlier;
+
+import org.cade.rpc.comsumer.ConsumerProperties;
+import org.cade.rpc.comsumer.Endpoint;
+import org.cade.rpc.register.Metadata;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 被动异常检测：按 provider 地址统计，不区分服务。
+ * <p>
+ * 熔断器挂在每个服务的端点上，一台机器对所有服务都失败时要每个熔断器分别熔断；
+ * 异常检测把同一地址的结果合在一起，驱逐之后对该地址上的所有服务生效。
+ * <ul>
+ *     <li>连续失败：请求超时、连接失败、provider 返回错误都计入，任意一次成功清零</li>
+ *     <li>延迟偏离：每个检测周期比较同一服务各端点的延迟中位数，超过集群中位数 latencyFactor 倍的地址被驱逐</li>
+ * </ul>
+ * 任何时候一个服务被排除的端点不超过 maxEjectionPercent，避免把整个集群都驱逐掉。
+ */
+public class OutlierDetector {
+    // 参与延迟比较的最少端点数和每个端点的最少样本数
+    private static final int LATENCY_MIN_HOSTS = 3;
+    private static final long LATENCY_MIN_SAMPLES = 50;
+    // 与中位数的差距小于 10ms 时不算异常，避免亚毫秒级的正常波动被放大
+    private static final long LATENCY_MIN_DEVIATION_MICROS = 10_000;
+
+    // 端点持有强引用，地址上的端点全部下线后自动回收
+    private final Map<String, WeakReference<HostHealth>> hosts = new ConcurrentHashMap<>();
+    private final int consecutiveErrors;
+    private final long intervalMS;
+    private final long baseEjectionMS;
+    private final long maxEjectionMS;
+    private final int maxEjectionPercent;
+    private final double latencyFactor;
+
+    public OutlierDetector(ConsumerProperties properties) {
+        this.consecutiveErrors = properties.getOutlierConsecutiveErrors();
+        this.intervalMS = properties.getOutlierIntervalMS();
+        this.baseEjectionMS = properties.getOutlierBaseEjectionMS();
+        this.maxEjectionMS = properties.getOutlierMaxEjectionMS();
+        this.maxEjectionPercent = properties.getOutlierMaxEjectionPercent();
+        this.latencyFactor = properties.getOutlierLatencyFactor();
+    }
+
+    /**
+     * @return 地址的健康状态，同一地址返回同一个实例
+     */
+    public HostHealth host(Metadata metadata) {
+        String address = metadata.getHost() + ":" + metadata.getPort();
+        WeakReference<HostHealth> ref = hosts.get(address);
+        HostHealth health = ref == null ? null : ref.get();
+        if (health != null) {
+            return health;
+        }
+        HostHealth[] created = new HostHealth[1];
+        hosts.compute(address, (k, old) -> {
+            HostHealth existing = old == null ? null : old.get();
+            if (existing != null) {
+                created[0] = existing;
+                return old;
+            }
+            created[0] = new HostHealth(k, this);
+            return new WeakReference<>(created[0]);
+        });
+        return created[0];
+    }
+
+    /**
+     * 清理已经回收的地址
+     */
+    public void expunge() {
+        hosts.values().removeIf(ref -> ref.get() == null);
+    }
+
+    /**
+     * 负载均衡之前排除被驱逐的端点，排除的数量不超过 maxEjectionPercent（至少允许排除一个，但总会留下一个）。
+     *
+     * @return 没有需要排除的端点时返回原列表
+     */
+    public List<Endpoint> filter(List<Endpoint> endpoints, long nowMS) {
+        if (maxEjectionPercent <= 0 || endpoints.size() < 2) {
+            return endpoints;
+        }
+        int ejected = 0;
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.getHealth().isEjected(nowMS)) {
+                ejected++;
+            }
+        }
+        if (ejected == 0) {
+            return endpoints;
+        }
+        int allowed = Math.min(endpoints.size() - 1, Math.max(1, endpoints.size() * maxEjectionPercent / 100));
+        List<Endpoint> healthy = new ArrayList<>(endpoints.size());
+        int skipped = 0;
+        for (Endpoint endpoint : endpoints) {
+            if (skipped < allowed && endpoint.getHealth().isEjected(nowMS)) {
+                skipped++;
+                continue;
+            }
+            healthy.add(endpoint);
+        }
+        return healthy;
+    }
+
+    /**
+     * 比较同一服务各端点的延迟中位数，驱逐明显偏慢的地址
+     */
+    public void detectLatencyOutliers(List<Endpoint> endpoints, long nowMS) {
+        if (latencyFactor <= 0 || endpoints.size() < LATENCY_MIN_HOSTS) {
+            return;
+        }
+        long[] medians = new long[endpoints.size()];
+        long[] samples = new long[endpoints.size()];
+        int count = 0;
+        for (int i = 0; i < endpoints.size(); i++) {
+            medians[i] = endpoints.get(i).getLatency().quantileMicros(0.5, LATENCY_MIN_SAMPLES);
+            if (medians[i] >= 0) {
+                samples[count++] = medians[i];
+            }
+        }
+        if (count < LATENCY_MIN_HOSTS) {
+            return;
+        }
+        Arrays.sort(samples, 0, count);
+        long clusterMedian = samples[count / 2];
+        long limit = Math.max((long) (clusterMedian * latencyFactor), clusterMedian + LATENCY_MIN_DEVIATION_MICROS);
+        for (int i = 0; i < endpoints.size(); i++) {
+            if (medians[i] > limit) {
+                endpoints.get(i).getHealth().eject(nowMS,
+                        "latency p50 " + medians[i] + "us, cluster median " + clusterMedian + "us");
+            }
+        }
+    }
+
+    public int getConsecutiveErrors() {
+        return consecutiveErrors;
+    }
+
+    public long getIntervalMS() {
+        return intervalMS;
+    }
+
+    public long getBaseEjectionMS() {
+        return baseEjectionMS;
+    }
+
+    public long getMaxEjectionMS() {
+        return maxEjectionMS;
+    }
+}
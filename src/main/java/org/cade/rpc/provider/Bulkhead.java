@@ -0,0 +1,28 @@
+package org.cade.rpc.provider;
+
+import java.lang.annotation.*;
+
+/**
+ * 舱壁隔离：为服务接口或接口方法指定独立的业务线程池，避免慢方法占满共享线程池拖垮其他方法。
+ * <p>
+ * 标注在接口上对整个服务生效，标注在接口方法上只对同名方法生效，方法级优先。
+ * {@link ProviderProperties#getBulkheads()} 中的配置优先于注解。
+ */
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Bulkhead {
+    /**
+     * 线程池分组名，同名的舱壁共享一个线程池；为空时每个服务/方法独立
+     */
+    String group() default "";
+
+    int coreSize() default 4;
+
+    int queueSize() default 256;
+
+    /**
+     * 队列满时的拒绝策略，见 {@link BulkheadConfig#getRejectPolicy()}
+     */
+    String rejectPolicy() default BulkheadConfig.FAST_FAIL;
+}
@@ -0,0 +1,35 @@
+package org.cade.rpc.provider;
+
+import lombok.Data;
+
+/**
+ * 舱壁线程池配置
+ */
+@Data
+public class BulkheadConfig {
+    /**
+     * 拒绝新请求，直接响应 service busy
+     */
+    public static final String FAST_FAIL = "fast_fail";
+    /**
+     * 丢弃队列中等待最久的请求（响应 service busy），新请求入队
+     */
+    public static final String DISCARD_OLDEST = "discard_oldest";
+
+    /**
+     * 线程池分组名，同名的舱壁共享一个线程池；为空时每个服务/方法独立
+     */
+    private String group;
+    private int coreSize = 4;
+    private int queueSize = 256;
+    private String rejectPolicy = FAST_FAIL;
+
+    static BulkheadConfig of(Bulkhead annotation) {
+        BulkheadConfig config = new BulkheadConfig();
+        config.setGroup(annotation.group());
+        config.setCoreSize(annotation.coreSize());
+        config.setQueueSize(annotation.queueSize());
+        config.setRejectPolicy(annotation.rejectPolicy());
+        return config;
+    }
+}
@@ -0,0 +1,85 @@
+package org.cade.rpc.provider;
+
+import org.cade.rpc.metrics.BulkheadMetrics;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 舱壁线程池：固定线程数 + 有界队列，队列满时按配置的策略拒绝，并统计排队耗时、活跃线程和拒绝数。
+ * <p>
+ * 开启 CoDel 时使用 {@link CoDelQueue}，任务出队时由 {@link CoDelAdmission} 判断是否丢弃。
+ */
+class BulkheadExecutor extends ThreadPoolExecutor {
+    private final BulkheadMetrics metrics;
+    private final CoDelAdmission admission;
+
+    /**
+     * @param admission 为 null 时不做基于排队时延的丢弃，队列为普通 FIFO
+     * @param fastFail  真正拒绝一个任务时调用，负责给消费者响应 service busy
+     */
+    BulkheadExecutor(String name, BulkheadConfig config, CoDelAdmission admission, RejectedExecutionHandler fastFail) {
+        super(config.getCoreSize(), config.getCoreSize(), 10, TimeUnit.SECONDS,
+                admission == null ? new ArrayBlockingQueue<>(config.getQueueSize()) : new CoDelQueue(config.getQueueSize(), admission),
+                new NamedThreadFactory(name));
+        this.admission = admission;
+        this.metrics = new BulkheadMetrics(name, () -> getQueue().size());
+        boolean discardOldest = BulkheadConfig.DISCARD_OLDEST.equalsIgnoreCase(config.getRejectPolicy());
+        setRejectedExecutionHandler((task, executor) -> {
+            metrics.recordRejected();
+            if (discardOldest) {
+                Runnable oldest = getQueue().poll();
+                if (oldest != null) {
+                    fastFail.rejectedExecution(oldest, executor);
+                    if (getQueue().offer(task)) {
+                        return;
+                    }
+                }
+            }
+            fastFail.rejectedExecution(task, executor);
+        });
+    }
+
+    BulkheadMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    protected void beforeExecute(Thread t, Runnable r) {
+        long waitNanos = 0;
+        if (r instanceof TimedTask task) {
+            long now = System.nanoTime();
+            waitNanos = now - task.getCreateNanos();
+            if (admission != null && admission.onDequeue(waitNanos, ((CoDelQueue) getQueue()).oldestAgeNanos(now), now)) {
+                metrics.recordShed();
+                task.shed();
+            }
+        }
+        metrics.recordStart(waitNanos);
+    }
+
+    @Override
+    protected void afterExecute(Runnable r, Throwable t) {
+        metrics.recordEnd();
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger index = new AtomicInteger();
+
+        NamedThreadFactory(String name) {
+            this.prefix = "bulkhead-" + name + "-";
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, prefix + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.cade.rpc.provider;
+
+import lombok.extern.slf4j.Slf4j;
+import org.cade.rpc.metrics.BulkheadMetrics;
+
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionHandler;
+
+/**
+ * 按服务、方法把请求分派到对应的舱壁线程池。
+ * <p>
+ * 配置来源按优先级：ProviderProperties 中的方法级（key 为 {@code 服务名#方法名}）、方法上的 {@link Bulkhead}、
+ * ProviderProperties 中的服务级（key 为服务名）、接口上的 {@link Bulkhead}；都没有时使用默认线程池。
+ * 路由在服务注册时一次性解析好，请求路径上只有两次 map 查找。
+ */
+@Slf4j(topic = "bulkhead")
+class BulkheadManager {
+    private final Map<String, BulkheadConfig> configs;
+    private final ProviderProperties properties;
+    private final RejectedExecutionHandler fastFail;
+    private final Map<String, BulkheadExecutor> executors = new ConcurrentHashMap<>();
+    private final Map<String, Executor> serviceRoutes = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Executor>> methodRoutes = new ConcurrentHashMap<>();
+
+    BulkheadManager(ProviderProperties properties, RejectedExecutionHandler fastFail) {
+        this.configs = properties.getBulkheads() == null ? Map.of() : properties.getBulkheads();
+        this.properties = properties;
+        this.fastFail = fastFail;
+    }
+
+    /**
+     * 按配置创建线程池，开启 CoDel 时每个线程池有独立的准入控制
+     */
+    BulkheadExecutor newExecutor(String name, BulkheadConfig config) {
+        CoDelAdmission admission = properties.isCodelEnabled()
+                ? new CoDelAdmission(properties.getCodelTargetMS(), properties.getCodelIntervalMS())
+                : null;
+        return new BulkheadExecutor(name, config, admission, fastFail);
+    }
+
+    void register(Class<?> interfaceClass) {
+        String serviceName = interfaceClass.getName();
+        Map<String, Executor> routes = new ConcurrentHashMap<>();
+        for (Method method : interfaceClass.getMethods()) {
+            String key = serviceName + "#" + method.getName();
+            BulkheadConfig config = configs.get(key);
+            if (config == null && method.isAnnotationPresent(Bulkhead.class)) {
+                config = BulkheadConfig.of(method.getAnnotation(Bulkhead.class));
+            }
+            if (config != null) {
+                routes.put(method.getName(), executor(key, config));
+            }
+        }
+        if (!routes.isEmpty()) {
+            methodRoutes.put(serviceName, routes);
+        }
+        BulkheadConfig serviceConfig = configs.get(serviceName);
+        if (serviceConfig == null && interfaceClass.isAnnotationPresent(Bulkhead.class)) {
+            serviceConfig = BulkheadConfig.of(interfaceClass.getAnnotation(Bulkhead.class));
+        }
+        if (serviceConfig != null) {
+            serviceRoutes.put(serviceName, executor(serviceName, serviceConfig));
+        }
+    }
+
+    private Executor executor(String key, BulkheadConfig config) {
+        String name = config.getGroup() == null || config.getGroup().isEmpty() ? key : config.getGroup();
+        return executors.computeIfAbsent(name, n -> {
+            log.info("create bulkhead:{} coreSize:{} queueSize:{} rejectPolicy:{}", n, config.getCoreSize(), config.getQueueSize(), config.getRejectPolicy());
+            return newExecutor(n, config);
+        });
+    }
+
+    /**
+     * @return 没有配置舱壁时返回 null，由调用方使用默认线程池
+     */
+    Executor select(String serviceName, String methodName) {
+        Map<String, Executor> routes = methodRoutes.get(serviceName);
+        if (routes != null) {
+            Executor executor = routes.get(methodName);
+            if (executor != null) {
+                return executor;
+            }
+        }
+        return serviceRoutes.get(serviceName);
+    }
+
+    Map<String, BulkheadMetrics> metrics() {
+        Map<String, BulkheadMetrics> metrics = new LinkedHashMap<>();
+        executors.forEach((name, executor) -> metrics.put(name, executor.getMetrics()));
+        return metrics;
+    }
+
+    void shutdown() {
+        executors.values().forEach(BulkheadExecutor::shutdown);
+    }
+}
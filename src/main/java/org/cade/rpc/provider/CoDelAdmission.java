@@ -0,0 +1,59 @@
+package org.cade.rpc.provider;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于排队时延的准入控制（CoDel）。
+ * <p>
+ * 每个统计窗口（interval）内记录任务出队时的最小排队时延：最小值都超过 target，说明队列里积压的是持续排不掉的请求
+ * 而不是一阵突发，下一个窗口进入过载状态。过载时排队超过 2 * target 的任务不再执行、直接快速失败，
+ * 同时队列改为 LIFO 出队，优先服务还没超时的新请求（见 {@link CoDelQueue}）。
+ * <p>
+ * 排队时延取出队任务与队头最旧任务二者的较大值：LIFO 出队的新任务几乎不排队，只看它会让过载状态每个窗口来回切换，
+ * 而队头最旧任务的等待时间只有在队列真正排空后才会回落，过载状态因此一直保持到积压消失。
+ * <p>
+ * 只在窗口切换时加锁一次，出队路径上只有原子操作。
+ */
+class CoDelAdmission {
+    private final long targetNanos;
+    private final long intervalNanos;
+    private final AtomicLong minDelay = new AtomicLong(Long.MAX_VALUE);
+    private volatile long intervalEnd;
+    private volatile boolean overloaded;
+
+    CoDelAdmission(long targetMS, long intervalMS) {
+        this.targetNanos = TimeUnit.MILLISECONDS.toNanos(targetMS);
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMS);
+        this.intervalEnd = System.nanoTime() + intervalNanos;
+    }
+
+    /**
+     * 任务出队时调用
+     *
+     * @param sojournNanos      任务的排队时延
+     * @param oldestQueuedNanos 出队后队头最旧任务已等待的时间，队列为空时为 0
+     * @return true 表示应丢弃该任务
+     */
+    boolean onDequeue(long sojournNanos, long oldestQueuedNanos) {
+        return onDequeue(sojournNanos, oldestQueuedNanos, System.nanoTime());
+    }
+
+    boolean onDequeue(long sojournNanos, long oldestQueuedNanos, long nowNanos) {
+        if (nowNanos - intervalEnd >= 0) {
+            synchronized (this) {
+                if (nowNanos - intervalEnd >= 0) {
+                    long min = minDelay.getAndSet(Long.MAX_VALUE);
+                    overloaded = min != Long.MAX_VALUE && min > targetNanos;
+                    intervalEnd = nowNanos + intervalNanos;
+                }
+            }
+        }
+        minDelay.accumulateAndGet(Math.max(sojournNanos, oldestQueuedNanos), Math::min);
+        return overloaded && sojournNanos > 2 * targetNanos;
+    }
+
+    boolean isOverloaded() {
+        return overloaded;
+    }
+}
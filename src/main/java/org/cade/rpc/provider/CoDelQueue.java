@@ -0,0 +1,38 @@
+package org.cade.rpc.provider;
+
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 配合 {@link CoDelAdmission} 的任务队列：正常时 FIFO，过载时业务线程从队尾取任务（LIFO），
+ * 先处理消费者还在等待的新请求，队头积压的旧请求留给 CoDel 丢弃。
+ * <p>
+ * 只改写业务线程取任务的 {@link #take()} 和 {@link #poll(long, TimeUnit)}，
+ * {@link #poll()} 仍取队头，discard_oldest 拒绝策略依赖它丢弃最旧的任务。
+ */
+class CoDelQueue extends LinkedBlockingDeque<Runnable> {
+    private final CoDelAdmission admission;
+
+    CoDelQueue(int capacity, CoDelAdmission admission) {
+        super(capacity);
+        this.admission = admission;
+    }
+
+    /**
+     * 队头（最旧）任务已经等待的时间，队列为空或任务未记录创建时间时为 0
+     */
+    long oldestAgeNanos(long nowNanos) {
+        Runnable oldest = peekFirst();
+        return oldest instanceof TimedTask task ? Math.max(0, nowNanos - task.getCreateNanos()) : 0;
+    }
+
+    @Override
+    public Runnable take() throws InterruptedException {
+        return admission.isOverloaded() ? takeLast() : takeFirst();
+    }
+
+    @Override
+    public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return admission.isOverloaded() ? pollLast(timeout, unit) : pollFirst(timeout, unit);
+    }
+}
@@ -0,0 +1,46 @@
+package org.cade.rpc.provider;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 进程内服务导出表。
+ * <p>
+ * {@link ProviderServer} 启动时把自己注册的服务导出到这里，同一个 JVM 中的
+ * {@link org.cade.rpc.comsumer.ConsumerProxyFactory} 发现本地导出后直接调用
+ * {@link ProviderRegistry.Invocation}，跳过序列化和回环网络。
+ * <p>
+ * 同一个进程中多个 ProviderServer 导出同一服务时保留先导出的实现，后导出的只对外提供网络端点。
+ */
+@Slf4j(topic = "injvm_registry")
+public final class InJvmRegistry {
+    private static final Map<String, ProviderRegistry.Invocation<?>> EXPORTS = new ConcurrentHashMap<>();
+
+    private InJvmRegistry() {
+    }
+
+    /**
+     * @return 服务已被其他实现导出时返回 false，保留原有导出
+     */
+    public static boolean export(String serviceName, ProviderRegistry.Invocation<?> invocation) {
+        ProviderRegistry.Invocation<?> exported = EXPORTS.putIfAbsent(serviceName, invocation);
+        if (exported != null && exported != invocation) {
+            log.warn("{} already exported in this jvm, keep the first export", serviceName);
+            return false;
+        }
+        return true;
+    }
+
+    public static void unexport(String serviceName, ProviderRegistry.Invocation<?> invocation) {
+        EXPORTS.remove(serviceName, invocation);
+    }
+
+    /**
+     * @return 当前进程中导出的服务，不存在时返回 null
+     */
+    public static ProviderRegistry.Invocation<?> find(String serviceName) {
+        return EXPORTS.get(serviceName);
+    }
+}
@@ -0,0 +1,16 @@
+package org.cade.rpc.provider;
+
+import java.lang.annotation.*;
+
+/**
+ * 标记纯计算、不会阻塞的接口方法：provider 直接在连接的 EventLoop 上执行并写出响应，省去两次线程切换。
+ * <p>
+ * 方法内不能有 IO、锁等待或其他可能阻塞的调用，否则会卡住该 EventLoop 上的所有连接。
+ * 执行时间超过 {@link ProviderProperties#getNonBlockingSlowThresholdMicros()} 会打印告警，
+ * 累计 {@link ProviderProperties#getNonBlockingDemoteCount()} 次后降级回业务线程池执行。
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface NonBlocking {
+}
@@ -0,0 +1,77 @@
+package org.cade.rpc.provider;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 记录标注了 {@link NonBlocking} 的方法，并充当看门狗：
+ * 每次在 EventLoop 上执行完都检查耗时，超过阈值打印告警，累计超限次数达到上限后把方法降级回业务线程池。
+ * <p>
+ * 同名重载方法只要有一个标注即视为可内联。
+ */
+@Slf4j(topic = "non_blocking")
+class NonBlockingMethods {
+    private final long slowThresholdNanos;
+    private final int demoteCount;
+    private final Map<String, Map<String, InlineMethod>> methods = new ConcurrentHashMap<>();
+
+    NonBlockingMethods(long slowThresholdMicros, int demoteCount) {
+        this.slowThresholdNanos = TimeUnit.MICROSECONDS.toNanos(slowThresholdMicros);
+        this.demoteCount = demoteCount;
+    }
+
+    void register(Class<?> interfaceClass) {
+        Map<String, InlineMethod> inline = new ConcurrentHashMap<>();
+        for (Method method : interfaceClass.getMethods()) {
+            if (method.isAnnotationPresent(NonBlocking.class)) {
+                inline.put(method.getName(), new InlineMethod(interfaceClass.getName() + "#" + method.getName()));
+            }
+        }
+        if (!inline.isEmpty()) {
+            methods.put(interfaceClass.getName(), inline);
+        }
+    }
+
+    /**
+     * @return 方法可以在 EventLoop 上执行时返回对应记录，否则返回 null
+     */
+    InlineMethod select(String serviceName, String methodName) {
+        Map<String, InlineMethod> inline = methods.get(serviceName);
+        if (inline == null) {
+            return null;
+        }
+        InlineMethod method = inline.get(methodName);
+        return method == null || method.demoted ? null : method;
+    }
+
+    void record(InlineMethod method, long elapsedNanos) {
+        if (elapsedNanos <= slowThresholdNanos) {
+            return;
+        }
+        int slow = method.slowCount.incrementAndGet();
+        log.warn("non-blocking method {} took {}us on event loop, slow count:{}", method.name, TimeUnit.NANOSECONDS.toMicros(elapsedNanos), slow);
+        if (slow >= demoteCount && !method.demoted) {
+            method.demoted = true;
+            log.warn("non-blocking method {} demoted to worker pool", method.name);
+        }
+    }
+
+    static class InlineMethod {
+        private final String name;
+        private final AtomicInteger slowCount = new AtomicInteger();
+        private volatile boolean demoted;
+
+        InlineMethod(String name) {
+            this.name = name;
+        }
+
+        boolean isDemoted() {
+            return demoted;
+        }
+    }
+}
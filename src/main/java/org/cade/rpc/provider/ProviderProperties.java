@@ -1,8 +1,12 @@
 package org.cade.rpc.provider;
 
 import lombok.Data;
+import org.cade.rpc.limit.RateLimitConfig;
 import org.cade.rpc.register.RegistryConfig;
 
+import java.util.HashMap;
+import java.util.Map;
+
 @Data
 public class ProviderProperties {
     private String host;
@@ -11,6 +15,80 @@ public class ProviderProperties {
     private Integer workerThreadNumber = 4;
     private int globelMaxRequest = 1000000;
     private int preConsumerMax = 1000000;
+    /**
+     * 分层令牌桶限流，key 为 *（全局）、服务名 或 服务名#方法名，每项单独配置速率和突发量；单个消费者这一级使用 preConsumerMax
+     */
+    private Map<String, RateLimitConfig> rateLimits = new HashMap<>();
     private String serializer = "json";
     private String compress = "gzip";
+    /**
+     * Unix Domain Socket 文件路径，配置后额外监听并注册一个 unix 端点（需要 epoll 支持）
+     */
+    private String unixSocketPath;
+    /**
+     * 共享内存端点名称，配置后在 /dev/shm/cade_rpc/{shmName} 下监听并注册一个 shm 端点（实验特性）
+     */
+    private String shmName;
+    /**
+     * 业务方法执行方式：pool 使用固定线程池；virtual 每个请求一个虚拟线程（JDK 21+，低版本自动回退到 pool）
+     */
+    private String executorMode = "pool";
+    /**
+     * virtual 模式下同时执行的最大请求数
+     */
+    private int virtualMaxConcurrency = 10000;
+    /**
+     * {@link NonBlocking} 方法在 EventLoop 上单次执行超过该时长（微秒）视为慢执行
+     */
+    private long nonBlockingSlowThresholdMicros = 1000;
+    /**
+     * {@link NonBlocking} 方法慢执行累计达到该次数后降级回业务线程池
+     */
+    private int nonBlockingDemoteCount = 3;
+    /**
+     * 业务线程池是否开启基于排队时延的准入控制（CoDel）：过载时丢弃排队过久的请求并改为 LIFO 出队
+     */
+    private boolean codelEnabled = false;
+    /**
+     * CoDel 目标排队时延（毫秒），一个统计窗口内最小排队时延都超过它即判定过载
+     */
+    private long codelTargetMS = 5;
+    /**
+     * CoDel 统计窗口（毫秒）
+     */
+    private long codelIntervalMS = 100;
+    /**
+     * 舱壁隔离配置，key 为服务名（整个服务）或 服务名#方法名（单个方法），优先于 {@link Bulkhead} 注解；
+     * 未配置的方法使用默认业务线程池
+     */
+    private Map<String, BulkheadConfig> bulkheads = new HashMap<>();
+    /**
+     * 全局限流改用自适应并发限流（TCP Vegas），根据请求从接收到写出响应的耗时调整上限，开启后不再使用 globelMaxRequest。
+     * 所有服务、方法共用一个上限，耗时差别很大的方法混在一起时无负载耗时会偏小，默认关闭
+     */
+    private boolean adaptiveLimit = false;
+    /**
+     * 自适应并发限流的初始上限
+     */
+    private int adaptiveInitialLimit = 200;
+    /**
+     * 自适应并发限流的上限最大值
+     */
+    private int adaptiveMaxLimit = 10000;
+    /**
+     * 全局在途字节数上限：正在接收的请求帧和等待写出的响应帧，超过后所有连接暂停读取，0 表示不限制
+     */
+    private long maxInflightBytes = 256L * 1024 * 1024;
+    /**
+     * 单个连接的在途字节数上限，超过后该连接暂停读取，0 表示不限制
+     */
+    private long maxConnectionInflightBytes = 64L * 1024 * 1024;
+    /**
+     * 连接写缓冲的低水位（字节），回落到低水位以下后恢复读取
+     */
+    private int writeBufferLowWaterMark = 32 * 1024;
+    /**
+     * 连接写缓冲的高水位（字节），待写出的响应超过高水位后暂停读取该连接
+     */
+    private int writeBufferHighWaterMark = 64 * 1024;
 }
@@ -7,6 +7,7 @@ import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 
@@ -127,7 +128,10 @@ public class ProviderRegistry {
                     .traceID(TraceContext.getOrCreate())
                     .build();
 
-            // 执行拦截器链
+            // 执行拦截器链，异步方法在 future 完成后才执行 AFTER 拦截器
+            if (CompletionStage.class.isAssignableFrom(invokeMethod.getReturnType())) {
+                return chain.executeAsync(context, () -> invokeMethod.invoke(serviceInstance, args));
+            }
             return chain.execute(context, () -> invokeMethod.invoke(serviceInstance, args));
         }
     }
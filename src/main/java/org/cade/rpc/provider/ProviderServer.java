@@ -2,30 +2,57 @@ package org.cade.rpc.provider;
 
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.*;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerDomainSocketChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.channel.unix.DomainSocketAddress;
+import io.netty.handler.flush.FlushConsolidationHandler;
 import io.netty.handler.timeout.IdleStateHandler;
 import io.netty.util.AttributeKey;
 import lombok.extern.slf4j.Slf4j;
 import org.cade.rpc.codec.MsgEncoder;
 import org.cade.rpc.codec.MsgDecoder;
 import org.cade.rpc.compress.CompressionManager;
+import org.cade.rpc.context.RpcContext;
+import org.cade.rpc.handler.AutoReadController;
+import org.cade.rpc.handler.ByteBudgetHandler;
 import org.cade.rpc.handler.HeartbeatHandler;
 import org.cade.rpc.handler.ParamConvertHandler;
 import org.cade.rpc.handler.ResultConvertHandler;
 import org.cade.rpc.handler.TrafficRecordHandler;
+import org.cade.rpc.handler.WritabilityHandler;
+import org.cade.rpc.handler.WriteCoalescer;
+import org.cade.rpc.limit.ByteBudget;
 import org.cade.rpc.limit.ConcurrencyLimiter;
+import org.cade.rpc.limit.HierarchicalLimiter;
 import org.cade.rpc.limit.Limiter;
 import org.cade.rpc.limit.RateLimiter;
+import org.cade.rpc.limit.VegasLimiter;
+import org.cade.rpc.message.CancelRequest;
 import org.cade.rpc.message.Request;
 import org.cade.rpc.message.Response;
 import org.cade.rpc.register.DefaultServiceRegister;
 import org.cade.rpc.register.Metadata;
 import org.cade.rpc.register.ServiceRegister;
 import org.cade.rpc.serialize.SerializerManager;
+import org.cade.rpc.metrics.BulkheadMetrics;
+import org.cade.rpc.metrics.WorkerMetrics;
 import org.cade.rpc.trace.TraceContext;
-import java.util.concurrent.ArrayBlockingQueue;
+import org.cade.rpc.trace.TraceExecutors;
+import org.cade.rpc.transport.shm.ShmAddress;
+import org.cade.rpc.transport.shm.ShmServerChannel;
+import org.cade.rpc.utils.VirtualThreads;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -36,20 +63,35 @@ public class ProviderServer {
 
     private final NioEventLoopGroup connNioEventLoopGroup = new NioEventLoopGroup();
     private final NioEventLoopGroup workerNioEventLoopGroup = new NioEventLoopGroup(4);
+    private EventLoopGroup unixBossEventLoopGroup;
+    private EventLoopGroup unixWorkerEventLoopGroup;
     private final ServiceRegister serviceRegister;
     private final ProviderRegistry registry;
     private final ProviderProperties properties;
     private final Limiter globelLimter;
+    // 全局限流是自适应限流时才记录每个请求获取许可的时间，固定上限时调用路径上不做任何记录
+    private final boolean sampleLatency;
+    private final HierarchicalLimiter rateLimiter;
     private final SerializerManager serializerManger;
     private final CompressionManager compressionManager;
-    private final ThreadPoolExecutor invokeExcutor;
+    private final BulkheadManager bulkheadManager;
+    private final NonBlockingMethods nonBlockingMethods;
+    private final Executor invokeExcutor;
+    private final WorkerMetrics workerMetrics = new WorkerMetrics();
+    private final ByteBudget byteBudget;
+    private final AutoReadController autoReadController = new AutoReadController();
+    private final WritabilityHandler writabilityHandler = new WritabilityHandler(autoReadController);
 
     public <I> void register(Class<I> interfaceClass, I serviceInstance) {
         registry.register(interfaceClass, serviceInstance);
+        bulkheadManager.register(interfaceClass);
+        nonBlockingMethods.register(interfaceClass);
     }
 
     public <I> void register(Class<I> interfaceClass, I serviceInstance, org.cade.rpc.interceptor.InterceptorConfig config) {
         registry.register(interfaceClass, serviceInstance, config);
+        bulkheadManager.register(interfaceClass);
+        nonBlockingMethods.register(interfaceClass);
     }
 
     /**
@@ -63,13 +105,82 @@ public class ProviderServer {
 
 
     public ProviderServer(ProviderProperties properties) throws Exception {
+        this(properties, new DefaultServiceRegister(properties.getRegistryConfig()));
+    }
+
+    /**
+     * @param serviceRegister 服务注册的实现，用于接入自定义注册中心
+     */
+    public ProviderServer(ProviderProperties properties, ServiceRegister serviceRegister) {
         this.properties = properties;
         registry = new ProviderRegistry();
-        this.serviceRegister = new DefaultServiceRegister(properties.getRegistryConfig());
-        globelLimter = new ConcurrencyLimiter(properties.getGlobelMaxRequest());
+        this.serviceRegister = serviceRegister;
+        globelLimter = properties.isAdaptiveLimit()
+                ? new VegasLimiter(properties.getAdaptiveInitialLimit(), 1, properties.getAdaptiveMaxLimit())
+                : new ConcurrencyLimiter(properties.getGlobelMaxRequest());
+        this.sampleLatency = globelLimter instanceof VegasLimiter;
+        this.rateLimiter = new HierarchicalLimiter(properties.getRateLimits());
+        this.byteBudget = new ByteBudget(properties.getMaxInflightBytes());
         this.serializerManger = new SerializerManager();
         this.compressionManager = new CompressionManager();
-        this.invokeExcutor = new ThreadPoolExecutor(4, 4, 10, TimeUnit.SECONDS, new ArrayBlockingQueue<>(1024));
+        this.bulkheadManager = new BulkheadManager(properties, new FastFailResponseHandler());
+        this.nonBlockingMethods = new NonBlockingMethods(properties.getNonBlockingSlowThresholdMicros(), properties.getNonBlockingDemoteCount());
+        this.invokeExcutor = createInvokeExecutor(properties);
+    }
+
+    private Executor createInvokeExecutor(ProviderProperties properties) {
+        if ("virtual".equalsIgnoreCase(properties.getExecutorMode())) {
+            Executor executor = VirtualThreads.newBoundedExecutor("provider-invoke-", properties.getVirtualMaxConcurrency());
+            if (executor != null) {
+                log.info("invoke service on virtual threads, max concurrency:{}", properties.getVirtualMaxConcurrency());
+                return executor;
+            }
+            log.warn("virtual threads require JDK 21+, fallback to thread pool");
+        }
+        BulkheadConfig config = new BulkheadConfig();
+        config.setCoreSize(4);
+        config.setQueueSize(1024);
+        return bulkheadManager.newExecutor("default", config);
+    }
+
+    /**
+     * 业务线程占用统计
+     */
+    public WorkerMetrics getWorkerMetrics() {
+        return workerMetrics;
+    }
+
+    /**
+     * 全局字节预算：正在接收的请求帧和等待写出的响应帧占用的字节数
+     */
+    public ByteBudget getByteBudget() {
+        return byteBudget;
+    }
+
+    /**
+     * 因字节预算耗尽或写缓冲超过高水位而暂停读取的连接数
+     */
+    public int getPausedReadChannels() {
+        return autoReadController.getPausedCount();
+    }
+
+    /**
+     * 业务线程池当前排队的任务数，virtual 模式下没有排队，恒为 0
+     */
+    public int getInvokeQueueSize() {
+        return invokeExcutor instanceof ThreadPoolExecutor pool ? pool.getQueue().size() : 0;
+    }
+
+    /**
+     * 各舱壁线程池的统计，key 为舱壁名；pool 模式下默认线程池以 default 为名一并返回
+     */
+    public Map<String, BulkheadMetrics> getBulkheadMetrics() {
+        Map<String, BulkheadMetrics> metrics = new LinkedHashMap<>();
+        if (invokeExcutor instanceof BulkheadExecutor executor) {
+            metrics.put("default", executor.getMetrics());
+        }
+        metrics.putAll(bulkheadManager.metrics());
+        return metrics;
     }
 
     public void start() {
@@ -77,36 +188,92 @@ public class ProviderServer {
         ServerBootstrap serverBootstrap = new ServerBootstrap();
         serverBootstrap.group(connNioEventLoopGroup, workerNioEventLoopGroup)
                 .channel(NioServerSocketChannel.class)
-                .childHandler(new ChannelInitializer<NioSocketChannel>() { // Change here
-                    @Override
-                    protected void initChannel(NioSocketChannel nioSocketChannel) throws Exception {
-                        nioSocketChannel.pipeline()
-                                .addLast(new TrafficRecordHandler())
-                                .addLast(new MsgDecoder())
-                                .addLast(new MsgEncoder())
-                                .addLast(new IdleStateHandler(30, 5, 0, TimeUnit.SECONDS))
-                                .addLast(new HeartbeatHandler())
-                                .addLast(new LimitHandler())
-                                .addLast(new ParamConvertHandler())
-                                .addLast(new ResultConvertHandler())
-                                .addLast(new ProviderHandler());
-                    }
-                });
+                .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, writeBufferWaterMark())
+                .childHandler(new ProviderChannelInitializer());
         try {
             serverBootstrap.bind(this.properties.getPort()).sync();
+            // 先导出到进程内再注册到注册中心，注册之后 start 不会再失败
+            registry.allServiceNames().forEach(name -> InJvmRegistry.export(name, registry.getService(name)));
             registry.allServiceNames().stream().map(this::buildMetadata).forEach(serviceRegister::register);
+            if (properties.getUnixSocketPath() != null && startUnixServer()) {
+                registry.allServiceNames().stream().map(this::buildUnixMetadata).forEach(serviceRegister::register);
+            }
+            if (properties.getShmName() != null && startShmServer()) {
+                registry.allServiceNames().stream().map(this::buildShmMetadata).forEach(serviceRegister::register);
+            }
         } catch (InterruptedException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * 在 Unix Domain Socket 上额外监听一次，同机消费者可绕过回环 TCP 协议栈。
+     * pipeline 与 TCP 端点完全一致。
+     *
+     * @return epoll 不可用时返回 false，此时只提供 TCP 端点
+     */
+    private boolean startUnixServer() throws InterruptedException {
+        if (!Epoll.isAvailable()) {
+            log.warn("epoll not available, skip unix socket {}", properties.getUnixSocketPath(), Epoll.unavailabilityCause());
+            return false;
+        }
+        // 上次进程异常退出时残留的 socket 文件会导致 bind 失败
+        File socketFile = new File(properties.getUnixSocketPath());
+        if (socketFile.exists() && !socketFile.delete()) {
+            log.warn("can not delete stale unix socket {}", socketFile);
+        }
+        unixBossEventLoopGroup = new EpollEventLoopGroup(1);
+        unixWorkerEventLoopGroup = new EpollEventLoopGroup(properties.getWorkerThreadNumber());
+        ServerBootstrap unixBootstrap = new ServerBootstrap();
+        unixBootstrap.group(unixBossEventLoopGroup, unixWorkerEventLoopGroup)
+                .channel(EpollServerDomainSocketChannel.class)
+                .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, writeBufferWaterMark())
+                .childHandler(new ProviderChannelInitializer());
+        unixBootstrap.bind(new DomainSocketAddress(socketFile)).sync();
+        log.info("Listen unix socket {}", socketFile);
+        return true;
+    }
+
+    /**
+     * 在共享内存上额外监听一次，连接的轮询线程把收到的数据交给 NIO worker 处理，pipeline 与 TCP 端点一致。
+     *
+     * @return 系统没有 /dev/shm 时返回 false，此时不注册 shm 端点
+     */
+    private boolean startShmServer() throws InterruptedException {
+        if (!ShmAddress.isSupported()) {
+            log.warn("/dev/shm not available, skip shm endpoint {}", properties.getShmName());
+            return false;
+        }
+        ServerBootstrap shmBootstrap = new ServerBootstrap();
+        shmBootstrap.group(connNioEventLoopGroup, workerNioEventLoopGroup)
+                .channel(ShmServerChannel.class)
+                .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, writeBufferWaterMark())
+                .childHandler(new ProviderChannelInitializer());
+        ShmAddress address = ShmAddress.of(properties.getShmName());
+        shmBootstrap.bind(address).sync();
+        log.info("Listen shared memory {}", address);
+        return true;
+    }
+
+    private WriteBufferWaterMark writeBufferWaterMark() {
+        return new WriteBufferWaterMark(properties.getWriteBufferLowWaterMark(), properties.getWriteBufferHighWaterMark());
+    }
+
     public void stop() {
+        registry.allServiceNames().forEach(name -> InJvmRegistry.unexport(name, registry.getService(name)));
+        bulkheadManager.shutdown();
         if (this.connNioEventLoopGroup != null) {
             this.connNioEventLoopGroup.shutdownGracefully();
         }
         if (this.workerNioEventLoopGroup != null) {
             this.workerNioEventLoopGroup.shutdownGracefully();
         }
+        if (this.unixBossEventLoopGroup != null) {
+            this.unixBossEventLoopGroup.shutdownGracefully();
+        }
+        if (this.unixWorkerEventLoopGroup != null) {
+            this.unixWorkerEventLoopGroup.shutdownGracefully();
+        }
     }
 
     private Metadata buildMetadata(String serviceName) {
@@ -117,25 +284,72 @@ public class ProviderServer {
         return metadata;
     }
 
+    private Metadata buildUnixMetadata(String serviceName) {
+        Metadata metadata = buildMetadata(serviceName);
+        metadata.setProtocol(Metadata.UNIX);
+        metadata.setPath(properties.getUnixSocketPath());
+        return metadata;
+    }
+
+    private Metadata buildShmMetadata(String serviceName) {
+        Metadata metadata = buildMetadata(serviceName);
+        metadata.setProtocol(Metadata.SHM);
+        metadata.setPath(ShmAddress.of(properties.getShmName()).dir().toString());
+        return metadata;
+    }
+
+    private class ProviderChannelInitializer extends ChannelInitializer<Channel> {
+        @Override
+        protected void initChannel(Channel channel) throws Exception {
+            channel.pipeline()
+                    // 读取过程中内联执行的方法写出的响应，到 channelReadComplete 时合并为一次 flush
+                    .addLast(new FlushConsolidationHandler())
+                    .addLast(new TrafficRecordHandler())
+                    .addLast(new ByteBudgetHandler(byteBudget, properties.getMaxConnectionInflightBytes(), autoReadController))
+                    .addLast(writabilityHandler)
+                    .addLast(new MsgDecoder())
+                    .addLast(new MsgEncoder())
+                    .addLast(new IdleStateHandler(30, 5, 0, TimeUnit.SECONDS))
+                    .addLast(new HeartbeatHandler())
+                    .addLast(new LimitHandler())
+                    .addLast(new ParamConvertHandler())
+                    .addLast(new ResultConvertHandler())
+                    .addLast(new ProviderHandler());
+        }
+    }
+
     private class LimitHandler extends ChannelDuplexHandler {
         private static final AttributeKey<Limiter> CHANNEL_LIMITER_KEY = AttributeKey.valueOf("channel_limiter_key");
         private static final AttributeKey<AtomicInteger> GLOBEL_PERMITS = AttributeKey.valueOf("globel_permits");
+        // 请求 ID -> 获取全局许可的时间，只在 EventLoop 上访问，用于自适应限流采样；未开启自适应限流时不创建
+        private static final AttributeKey<Map<Integer, Long>> ADMITTED = AttributeKey.valueOf("admitted");
 
 
         @Override
         public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
-            Request request = (Request) msg;
+            if (!(msg instanceof Request request)) {
+                ctx.fireChannelRead(msg);
+                return;
+            }
             if (!globelLimter.tryAcquire()) {
                 ctx.writeAndFlush(Response.error("globel provider limiter", request.getRequestID()));
                 return;
             } else {
                 ctx.channel().attr(GLOBEL_PERMITS).get().incrementAndGet();
+                if (sampleLatency) {
+                    ctx.channel().attr(ADMITTED).get().put(request.getRequestID(), System.nanoTime());
+                }
             }
 
+            // 连接的令牌桶只在 EventLoop 上访问，作为消费者这一级
             Limiter limiter = ctx.channel().attr(CHANNEL_LIMITER_KEY).get();
-            if (!limiter.tryAcquire()) {
+            if (!rateLimiter.tryAcquire(request.getServiceName(), request.getMethodName(), limiter)) {
+                ctx.channel().attr(GLOBEL_PERMITS).get().decrementAndGet();
+                if (sampleLatency) {
+                    ctx.channel().attr(ADMITTED).get().remove(request.getRequestID());
+                }
                 globelLimter.release();
-                ctx.writeAndFlush(Response.error("channel provider limiter", request.getRequestID()));
+                ctx.writeAndFlush(Response.error("provider rate limiter", request.getRequestID()));
                 return;
             }
             ctx.fireChannelRead(msg);
@@ -144,18 +358,22 @@ public class ProviderServer {
         @Override
         public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
 
-            promise.addListener(f -> {
-                ctx.channel().attr(CHANNEL_LIMITER_KEY).get().release();
-                if (ctx.channel().attr(GLOBEL_PERMITS).get().getAndDecrement() > 0) {
-                    globelLimter.release();
-                }
-            });
+            if (msg instanceof Response response) {
+                // 成功的响应写出后采样耗时；错误响应（执行失败、快速失败）与耗时无关，只归还许可
+                boolean sample = response.getCode() != null && response.getCode() == 0;
+                promise.addListener(f -> releasePermits(ctx.channel(), response.getRequestId(), sample && f.isSuccess()));
+            } else {
+                promise.addListener(f -> releasePermits(ctx.channel(), -1, false));
+            }
             ctx.write(msg, promise);
         }
 
         @Override
         public void channelInactive(ChannelHandlerContext ctx) throws Exception {
             int remain = ctx.channel().attr(GLOBEL_PERMITS).get().getAndSet(0);
+            if (sampleLatency) {
+                ctx.channel().attr(ADMITTED).get().clear();
+            }
             globelLimter.release(remain);
             ctx.fireChannelInactive();
         }
@@ -164,11 +382,34 @@ public class ProviderServer {
         public void channelActive(ChannelHandlerContext ctx) throws Exception {
             ctx.channel().attr(CHANNEL_LIMITER_KEY).set(new RateLimiter(properties.getPreConsumerMax()));
             ctx.channel().attr(GLOBEL_PERMITS).set(new AtomicInteger(0));
+            if (sampleLatency) {
+                ctx.channel().attr(ADMITTED).set(new HashMap<>());
+            }
             ctx.fireChannelActive();
         }
     }
 
+    /**
+     * 归还一个请求占用的全局和连接限流许可；请求的响应写出时，或者请求被取消、不再写出响应时调用
+     *
+     * @param sample 是否把请求耗时报告给全局限流器（自适应限流据此调整上限）
+     */
+    private void releasePermits(Channel channel, int requestID, boolean sample) {
+        channel.attr(LimitHandler.CHANNEL_LIMITER_KEY).get().release();
+        Long admittedNanos = sampleLatency ? channel.attr(LimitHandler.ADMITTED).get().remove(requestID) : null;
+        if (channel.attr(LimitHandler.GLOBEL_PERMITS).get().getAndDecrement() > 0) {
+            if (sample && admittedNanos != null) {
+                globelLimter.release(System.nanoTime() - admittedNanos, false);
+            } else {
+                globelLimter.release();
+            }
+        }
+    }
+
     private class ProviderHandler extends SimpleChannelInboundHandler<Request> {
+        // 已接收、尚未写出响应的请求，只在 EventLoop 上访问
+        private final Map<Integer, InvokeTask> running = new HashMap<>();
+
         @Override
         public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
             log.error("Exception", cause);
@@ -178,6 +419,9 @@ public class ProviderServer {
         @Override
         public void channelInactive(ChannelHandlerContext ctx) throws Exception {
             log.info("Client:{} close", ctx.channel().remoteAddress());
+            // 连接已断开，还在排队的请求不必再执行
+            running.values().forEach(InvokeTask::cancel);
+            running.clear();
             ctx.channel().attr(MsgEncoder.SERIALIZE_KEY).set(null);
             ctx.channel().attr(MsgEncoder.SERIALIZER_MANGER_ATTRIBUTE_KEY).set(null);
             ctx.channel().attr(MsgEncoder.COMPRESSION_KEY).set(null);
@@ -197,6 +441,29 @@ public class ProviderServer {
             ctx.fireChannelActive();
         }
 
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            if (msg instanceof CancelRequest cancel) {
+                cancel(ctx, cancel.getRequestID());
+                return;
+            }
+            super.channelRead(ctx, msg);
+        }
+
+        /**
+         * 消费者已放弃该请求：排队中的不再执行，执行中的可以通过 {@link RpcContext#isCancelled()} 提前结束，
+         * 两种情况都不再写出响应，许可在这里直接归还
+         */
+        private void cancel(ChannelHandlerContext ctx, int requestID) {
+            InvokeTask task = running.remove(requestID);
+            if (task == null) {
+                return;
+            }
+            task.cancel();
+            workerMetrics.cancelled();
+            releasePermits(ctx.channel(), requestID, false);
+        }
+
         @Override
         protected void channelRead0(ChannelHandlerContext ctx, Request request) throws Exception {
             ProviderRegistry.Invocation service = registry.getService(request.getServiceName());
@@ -204,77 +471,184 @@ public class ProviderServer {
                 ctx.writeAndFlush(Response.error(String.format("No such service %s", request.getServiceName()), request.getRequestID()));
                 return;
             }
-            invokeExcutor.execute(new InvokeTask(request, ctx, service));
+            InvokeTask task = new InvokeTask(request, ctx, service, running);
+            running.put(request.getRequestID(), task);
+            NonBlockingMethods.InlineMethod inline = nonBlockingMethods.select(request.getServiceName(), request.getMethodName());
+            if (inline != null) {
+                // 非阻塞方法直接在 EventLoop 上执行，响应也直接写出
+                long startNanos = System.nanoTime();
+                task.invoke();
+                workerMetrics.inlineInvoked();
+                nonBlockingMethods.record(inline, System.nanoTime() - startNanos);
+                return;
+            }
+            Executor executor = bulkheadManager.select(request.getServiceName(), request.getMethodName());
+            try {
+                (executor == null ? invokeExcutor : executor).execute(task);
+            } catch (RejectedExecutionException e) {
+                // virtual 模式的并发上限以异常形式拒绝，与线程池队列满一样快速失败
+                task.fastFail("service busy");
+            }
+        }
+    }
 
+    private class InvokeTask implements TimedTask {
+        private final Request request;
+        private final ChannelHandlerContext ctx;
+        private final ProviderRegistry.Invocation invocation;
+        private final Map<Integer, InvokeTask> running;
+        private final long createNanos = System.nanoTime();
+        // 消费者的剩余时间预算换算成本地截止时间，0 表示不限制
+        private final long deadlineNanos;
+        private volatile boolean shed;
+        private volatile boolean cancelled;
+
+        InvokeTask(Request request, ChannelHandlerContext ctx, ProviderRegistry.Invocation service, Map<Integer, InvokeTask> running) {
+            this.request = request;
+            this.ctx = ctx;
+            this.invocation = service;
+            this.running = running;
+            this.deadlineNanos = request.getTimeoutMS() > 0 ? createNanos + TimeUnit.MILLISECONDS.toNanos(request.getTimeoutMS()) : 0;
+        }
 
+        @Override
+        public long getCreateNanos() {
+            return createNanos;
         }
 
-        private class InvokeTask implements Runnable {
-            private final Request request;
-            private final ChannelHandlerContext ctx;
-            private final ProviderRegistry.Invocation invocation;
+        @Override
+        public void shed() {
+            this.shed = true;
+        }
 
-            InvokeTask(Request request, ChannelHandlerContext ctx, ProviderRegistry.Invocation service) {
-                this.request = request;
-                this.ctx = ctx;
-                this.invocation = service;
-            }
+        void cancel() {
+            this.cancelled = true;
+        }
 
-            @Override
-            public void run() {
-                EventLoop eventLoop = ctx.channel().eventLoop();
-
-                // 初始化 TraceContext
-                String traceId = request.getTraceId();
-                if (traceId == null || traceId.isEmpty()) {
-                    // 如果请求中没有 traceId，生成一个新的
-                    traceId = TraceContext.start();
-                    log.debug("Generated new traceId: {}", traceId);
-                } else {
-                    // 使用请求中的 traceId
-                    TraceContext.setTraceId(traceId);
-                    log.debug("Inherited traceId: {}", traceId);
-                }
+        boolean isCancelled() {
+            return cancelled;
+        }
 
-                try {
-                    // 参数已经在 ParamConvertHandler 中转换完成，直接使用
-                    Object result = invocation.invoke(
-                            request.getMethodName(),
-                            request.getParamsType(),
-                            request.getParams()
-                    );
-                    log.info("Request:{} result:{}", request, result);
-
-                    // 创建响应并设置 traceId
-                    // 结果将在 ResultConvertHandler 中转换
-                    Response response = Response.ok(result, request.getRequestID());
-                    response.setTraceId(traceId);
-                    eventLoop.execute(() -> ctx.writeAndFlush(response));
-                } catch (Exception e) {
-                    log.error("Request processing failed", e);
-                    // 创建错误响应并设置 traceId
-                    Response errorResponse = Response.error(String.format("Call Function Fail err:%s", e), request.getRequestID());
-                    errorResponse.setTraceId(traceId);
-                    eventLoop.execute(() -> ctx.writeAndFlush(errorResponse));
-                } finally {
-                    // 清理 TraceContext，防止 ThreadLocal 内存泄漏
-                    TraceContext.clear();
-                }
+        @Override
+        public void run() {
+            if (cancelled) {
+                return;
+            }
+            if (shed) {
+                // 排队过久，消费者大概率已经超时，不再执行服务方法
+                fastFail("service overloaded");
+                return;
+            }
+            if (deadlineNanos != 0 && System.nanoTime() - deadlineNanos >= 0) {
+                // 消费者已经超时放弃，不再执行；仍然响应错误，写出后归还限流许可
+                workerMetrics.expiredDropped();
+                fastFail("deadline exceeded");
+                return;
+            }
+            long startNanos = workerMetrics.taskStart();
+            try {
+                invoke();
+            } finally {
+                workerMetrics.taskEnd(startNanos);
             }
         }
 
-        private class FastFailResponseHandler implements RejectedExecutionHandler {
+        private void invoke() {
+            // 初始化 TraceContext
+            String traceId = request.getTraceId();
+            if (traceId == null || traceId.isEmpty()) {
+                // 如果请求中没有 traceId，生成一个新的
+                traceId = TraceContext.start();
+                log.debug("Generated new traceId: {}", traceId);
+            } else {
+                // 使用请求中的 traceId
+                TraceContext.setTraceId(traceId);
+                log.debug("Inherited traceId: {}", traceId);
+            }
 
-            @Override
-            public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
-                if (task instanceof InvokeTask invokeTask) {
-                    Response fastFail = Response.error("service busy", invokeTask.request.getRequestID());
-                    invokeTask.ctx.channel().eventLoop().execute(() -> invokeTask.ctx.writeAndFlush(fastFail));
+            if (deadlineNanos != 0) {
+                RpcContext.setDeadline(deadlineNanos);
+            }
+            RpcContext.setCancelSignal(this::isCancelled);
+            try {
+                // 参数已经在 ParamConvertHandler 中转换完成，直接使用
+                Object result = invocation.invoke(
+                        request.getMethodName(),
+                        request.getParamsType(),
+                        request.getParams()
+                );
+                // 服务方法返回 CompletionStage 时立即释放业务线程，future 完成后再响应
+                if (result instanceof CompletionStage<?> stage) {
+                    workerMetrics.asyncStart();
+                    String asyncTraceId = traceId;
+                    stage.whenComplete((value, error) -> TraceExecutors.runWithTraceId(asyncTraceId, () -> {
+                        workerMetrics.asyncEnd();
+                        if (error != null) {
+                            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                            writeError(cause, asyncTraceId);
+                        } else {
+                            writeResult(value, asyncTraceId);
+                        }
+                    }));
                     return;
                 }
-                throw new RuntimeException("unexpected task");
+                writeResult(result, traceId);
+            } catch (Exception e) {
+                writeError(e, traceId);
+            } finally {
+                // 清理 TraceContext，防止 ThreadLocal 内存泄漏
+                TraceContext.clear();
+                RpcContext.clear();
+            }
+        }
+
+        private void writeResult(Object result, String traceId) {
+            log.info("Request:{} result:{}", request, result);
+
+            // 创建响应并设置 traceId
+            // 结果将在 ResultConvertHandler 中转换
+            Response response = Response.ok(result, request.getRequestID());
+            response.setTraceId(traceId);
+            write(response);
+        }
+
+        private void writeError(Throwable e, String traceId) {
+            log.error("Request processing failed", e);
+            // 创建错误响应并设置 traceId
+            Response errorResponse = Response.bizError(String.format("Call Function Fail err:%s", e), request.getRequestID());
+            errorResponse.setTraceId(traceId);
+            write(errorResponse);
+        }
+
+        /**
+         * 不执行服务方法，直接响应错误（线程池拒绝、排队过久等），写出后 LimitHandler 照常归还许可
+         */
+        private void fastFail(String message) {
+            Response fastFail = Response.error(message, request.getRequestID());
+            fastFail.setTraceId(request.getTraceId());
+            write(fastFail);
+        }
+
+        /**
+         * 已经在 EventLoop 上（内联执行或异步结果在 IO 线程完成）时直接写出，否则放进连接的写合并队列，
+         * 多个业务线程的响应由 EventLoop 一批写出、只 flush 一次
+         */
+        private void write(Response response) {
+            // 已被取消的请求不再响应，许可在取消时已经归还；running 只在 EventLoop 上访问，写出前再检查
+            WriteCoalescer.of(ctx.channel()).write(response, () -> running.remove(request.getRequestID(), this));
+        }
+    }
+
+    private class FastFailResponseHandler implements RejectedExecutionHandler {
+
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+            if (task instanceof InvokeTask invokeTask) {
+                invokeTask.fastFail("service busy");
+                return;
             }
+            throw new RejectedExecutionException("unexpected task");
         }
     }
+}
 
-}
\ No newline at end of file
@@ -0,0 +1,16 @@
+package org.cade.rpc.provider;
+
+/**
+ * 记录了创建时间的业务任务，用于统计排队耗时
+ */
+interface TimedTask extends Runnable {
+    /**
+     * 任务创建（请求进入 provider 处理流程）时的 {@link System#nanoTime()}
+     */
+    long getCreateNanos();
+
+    /**
+     * 出队时判定为应丢弃（如 CoDel 过载），任务执行时不再调用服务方法而是直接快速失败
+     */
+    void shed();
+}
@@ -4,18 +4,28 @@ import lombok.extern.slf4j.Slf4j;
 import org.cade.rpc.register.impl.EtcdServiceRegister;
 import org.cade.rpc.register.impl.ZookeeperServiceRegister;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * 缓存服务列表：refreshIntervalMS 内直接返回缓存，过期后由一个调用线程重新查询，其他线程继续使用旧列表。
+ * 查询结果与缓存相同时仍返回原来的列表实例，调用方可以按引用判断列表是否变化，不必逐个比较 Metadata。
+ */
 @Slf4j(topic = "default_service_register")
 public class DefaultServiceRegister implements ServiceRegister{
-    private final Map<String,List<Metadata>> cache;
+    private final Map<String,CachedList> cache;
     private final ServiceRegister delegate;
+    private final long refreshIntervalMS;
     public DefaultServiceRegister(RegistryConfig config) throws Exception {
+        this(getServiceRegistery(config), config.getRefreshIntervalMS());
+    }
+
+    DefaultServiceRegister(ServiceRegister delegate, long refreshIntervalMS) {
         this.cache = new ConcurrentHashMap<>();
-        this.delegate = getServiceRegistery(config);
+        this.delegate = delegate;
+        this.refreshIntervalMS = refreshIntervalMS;
     }
     public static ServiceRegister getServiceRegistery(RegistryConfig config) throws Exception {
         switch (config.getRegistryType()){
@@ -40,13 +50,42 @@ public class DefaultServiceRegister implements ServiceRegister{
 
     @Override
     public List<Metadata> fetchServicelist(String serviceName) throws Exception {
+        CachedList cached = cache.get(serviceName);
+        long now = System.currentTimeMillis();
+        if (cached != null && (now < cached.nextRefreshMS || !cached.refreshing.compareAndSet(false, true))) {
+            return cached.list;
+        }
         try {
             List<Metadata> list = this.delegate.fetchServicelist(serviceName);
-            cache.put(serviceName,list);
-            return list;
+            if (cached != null && cached.list.equals(list)) {
+                cached.nextRefreshMS = now + refreshIntervalMS;
+                return cached.list;
+            }
+            CachedList refreshed = new CachedList(List.copyOf(list), now + refreshIntervalMS);
+            cache.put(serviceName, refreshed);
+            return refreshed.list;
         }catch (Exception e){
             log.error("{} register search {} error:{}",delegate.getClass().getSimpleName(),serviceName,e);
-            return cache.getOrDefault(serviceName,new ArrayList<>());
+            if (cached == null) {
+                return List.of();
+            }
+            cached.nextRefreshMS = now + refreshIntervalMS;
+            return cached.list;
+        } finally {
+            if (cached != null) {
+                cached.refreshing.set(false);
+            }
+        }
+    }
+
+    private static class CachedList {
+        private final List<Metadata> list;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private volatile long nextRefreshMS;
+
+        CachedList(List<Metadata> list, long nextRefreshMS) {
+            this.list = list;
+            this.nextRefreshMS = nextRefreshMS;
         }
     }
 }
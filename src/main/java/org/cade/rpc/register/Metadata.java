@@ -4,7 +4,21 @@ import lombok.Data;
 
 @Data
 public class Metadata {
+    public static final String TCP = "tcp";
+    public static final String UNIX = "unix";
+    public static final String SHM = "shm";
+
     private String serviceName;
     private String host;
     private int port;
+
+    /**
+     * 端点类型：tcp、unix（Unix Domain Socket）或 shm（共享内存），后两者仅同机消费者可用
+     */
+    private String protocol = TCP;
+
+    /**
+     * unix 端点为 socket 文件路径，shm 端点为服务目录，tcp 端点为 null
+     */
+    private String path;
 }
@@ -6,4 +6,8 @@ import lombok.Data;
 public class RegistryConfig {
     private String ConnectString;
     private String RegistryType;
+    /**
+     * 消费者缓存服务列表的时长，超过后下一次调用时重新查询注册中心；0 表示每次调用都查询
+     */
+    private long refreshIntervalMS = 1000;
 }
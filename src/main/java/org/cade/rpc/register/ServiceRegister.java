@@ -5,5 +5,8 @@ import java.util.List;
 public interface ServiceRegister {
     void register(Metadata metadata);
     void unregister(Metadata metadata);
+    /**
+     * 服务列表没有变化时应返回同一个列表实例，调用方按引用判断列表是否变化
+     */
     List<Metadata> fetchServicelist(String serviceName)throws Exception;
 }
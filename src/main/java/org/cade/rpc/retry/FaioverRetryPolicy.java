@@ -1,26 +1,26 @@
 package org.cade.rpc.retry;
 
 import org.cade.rpc.excpetion.RPCException;
-import org.cade.rpc.register.Metadata;
+import org.cade.rpc.comsumer.Endpoint;
 import org.cade.rpc.spi.SPI;
 
 import java.util.ArrayList;
-import java.util.List;
-
 
 
+/**
+ * 与 {@link RetrySame} 相同的退避节奏，但每次重试换一个还没失败过的 provider
+ */
 @SPI("faiover")
 public class FaioverRetryPolicy extends RetrySame {
-    private List<Metadata> metadataList = null;
     @Override
-    protected Metadata getService(RetryContext retryContext,Metadata failService) {
-        if (metadataList==null){
-            metadataList = new ArrayList<>(retryContext.getAllService());
+    protected Endpoint getService(RetryState state) {
+        if (state.candidates == null) {
+            state.candidates = new ArrayList<>(state.context.getAllService());
         }
-        metadataList.remove(failService);
-        if (metadataList.isEmpty()){
+        state.candidates.remove(state.lastService);
+        if (state.candidates.isEmpty()){
             throw new RPCException("no service");
         }
-        return retryContext.getLoadBalancer().select(metadataList);
+        return state.context.getLoadBalancer().select(state.candidates);
     }
 }
@@ -2,7 +2,7 @@ package org.cade.rpc.retry;
 
 import org.cade.rpc.excpetion.RPCException;
 import org.cade.rpc.message.Response;
-import org.cade.rpc.register.Metadata;
+import org.cade.rpc.comsumer.Endpoint;
 import org.cade.rpc.spi.SPI;
 
 import java.util.ArrayList;
@@ -13,14 +13,13 @@ import java.util.concurrent.TimeUnit;
 @SPI("foiover_once")
 public class FoioverOnceRetryPolicy implements RetryPolicy {
     @Override
-    public Response retry(RetryContext context) throws Exception {
-        List<Metadata> metadataList = new ArrayList<>(context.getAllService());
-        metadataList.remove(context.getFailService());
-        if(metadataList.isEmpty()){
-            throw new RPCException("no service");
+    public CompletableFuture<Response> retry(RetryContext context) {
+        List<Endpoint> endpoints = new ArrayList<>(context.getAllService());
+        endpoints.remove(context.getFailService());
+        if(endpoints.isEmpty()){
+            return CompletableFuture.failedFuture(new RPCException("no service"));
         }
-        Metadata metadata = context.getLoadBalancer().select(metadataList);
-        CompletableFuture<Response> future = context.doRPC(metadata);
-        return future.get(Math.min(context.getRequestTimeout(),context.getFunctionTimeoutMS()), TimeUnit.MILLISECONDS);
+        Endpoint endpoint = context.getLoadBalancer().select(endpoints);
+        return context.doRPC(endpoint).orTimeout(Math.min(context.getRequestTimeout(),context.getFunctionTimeoutMS()), TimeUnit.MILLISECONDS);
     }
 }
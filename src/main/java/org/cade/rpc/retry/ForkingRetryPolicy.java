@@ -1,29 +1,73 @@
 package org.cade.rpc.retry;
 
+import org.cade.rpc.excpetion.LimitException;
 import org.cade.rpc.excpetion.RPCException;
 import org.cade.rpc.message.Response;
-import org.cade.rpc.register.Metadata;
+import org.cade.rpc.comsumer.Endpoint;
 import org.cade.rpc.spi.SPI;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * 并行调用其余所有 provider，取最先成功的结果并取消其余请求；全部失败或超时才失败
+ */
 @SPI("forking")
 public class ForkingRetryPolicy implements RetryPolicy{
     @Override
-    public Response retry(RetryContext context) throws Exception {
-        List<Metadata> metadataList = new ArrayList<>(context.getAllService());
-        metadataList.remove(context.getFailService());
-        if(metadataList.isEmpty()){
-            throw new RPCException("no service");
+    public CompletableFuture<Response> retry(RetryContext context) {
+        List<Endpoint> endpoints = new ArrayList<>(context.getAllService());
+        endpoints.remove(context.getFailService());
+        if(endpoints.isEmpty()){
+            return CompletableFuture.failedFuture(new RPCException("no service"));
         }
-        CompletableFuture[] allFuture = new CompletableFuture[metadataList.size()];
-        for(int i=0;i<metadataList.size();i++){
-            allFuture[i] = context.doRPC(metadataList.get(i));
+        List<CompletableFuture<Response>> futures = new ArrayList<>(endpoints.size());
+        for (Endpoint endpoint : endpoints) {
+            try {
+                futures.add(context.doRPC(endpoint));
+            } catch (LimitException e) {
+                // 重试预算不够分给所有节点时，只向已经发出的节点分叉
+                if (futures.isEmpty()) {
+                    return CompletableFuture.failedFuture(e);
+                }
+                break;
+            }
+        }
+        CompletableFuture[] allFuture = futures.toArray(new CompletableFuture[0]);
+        CompletableFuture<Response> result = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(futures.size());
+        for (CompletableFuture<Response> future : futures) {
+            future.whenComplete((response, e) -> {
+                // 只有成功响应才结束调用，错误响应和异常不能抢先取消其他仍可能成功的分支
+                if (e == null && response.getCode() == 0) {
+                    result.complete(response);
+                    return;
+                }
+                if (pending.decrementAndGet() != 0) {
+                    return;
+                }
+                // 全部失败时以最后一个结果结束，错误响应交给调用方按原来的方式处理
+                if (e != null) {
+                    result.completeExceptionally(e);
+                } else {
+                    result.complete(response);
+                }
+            });
+        }
+        return result
+                .orTimeout(Math.min(context.getRequestTimeout(),context.getFunctionTimeoutMS()), TimeUnit.MILLISECONDS)
+                .whenComplete((r, e) -> cancelAll(allFuture));
+    }
+
+    /**
+     * 已经拿到结果（或超时），其余仍在途的请求通知 provider 取消
+     */
+    private static void cancelAll(CompletableFuture[] futures) {
+        for (CompletableFuture future : futures) {
+            future.cancel(false);
         }
-        CompletableFuture<Object> mainFuture = CompletableFuture.anyOf(allFuture);
-        return  (Response)mainFuture.get(Math.min(context.getRequestTimeout(),context.getFunctionTimeoutMS()), TimeUnit.MILLISECONDS);
     }
 }
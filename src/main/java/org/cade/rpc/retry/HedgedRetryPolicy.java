@@ -0,0 +1,166 @@
+package org.cade.rpc.retry;
+
+import lombok.extern.slf4j.Slf4j;
+import org.cade.rpc.message.Response;
+import org.cade.rpc.metrics.LatencySketch;
+import org.cade.rpc.comsumer.Endpoint;
+import org.cade.rpc.spi.SPI;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 对冲请求：第一次请求超过该方法最近的 p95 延迟仍未返回时，向另一个 provider 再发一次，取最先成功的结果并取消其余请求。
+ * <p>
+ * 只对标注了 {@link Idempotent} 的方法生效；样本不足时不对冲。每次调用最多对冲 {@link RetryContext#getMaxHedges()} 次。
+ * provider 返回的错误响应不算成功，不会取消其他仍在途的请求，其延迟也不计入 p95。
+ * 对冲请求受预算限制：每个请求积累 5% 个令牌，每次对冲消耗一个，额外负载不超过 5%。
+ * 所有请求都失败后按 {@link FoioverOnceRetryPolicy} 换一个 provider 重试一次。
+ */
+@Slf4j(topic = "retry_hedged")
+@SPI("hedged")
+public class HedgedRetryPolicy extends FoioverOnceRetryPolicy {
+    final double percentile = 0.95;
+    final int minSamples = 100;
+    final long sketchWindowMS = 10_000;
+    // 令牌以千分之一为单位
+    final long tokenPerRequest = 50;
+    final long tokenPerHedge = 1000;
+    final long maxTokens = 10 * tokenPerHedge;
+
+    private final Map<String, LatencySketch> sketches = new ConcurrentHashMap<>();
+    private final AtomicLong tokens = new AtomicLong();
+
+    @Override
+    public CompletableFuture<Response> hedge(RetryContext context, CompletableFuture<Response> first) {
+        LatencySketch sketch = sketches.computeIfAbsent(context.getMethodKey(), k -> new LatencySketch(sketchWindowMS));
+        deposit();
+        long delayMicros = sketch.quantileMicros(percentile, minSamples);
+        record(first, sketch, System.nanoTime());
+        if (delayMicros < 0) {
+            return first;
+        }
+        return new HedgedCall(context, sketch, first, delayMicros).result;
+    }
+
+    private void deposit() {
+        tokens.getAndUpdate(t -> Math.min(maxTokens, t + tokenPerRequest));
+    }
+
+    private boolean tryConsume() {
+        long t;
+        do {
+            t = tokens.get();
+            if (t < tokenPerHedge) {
+                return false;
+            }
+        } while (!tokens.compareAndSet(t, t - tokenPerHedge));
+        return true;
+    }
+
+    private static void record(CompletableFuture<Response> future, LatencySketch sketch, long startNanos) {
+        future.whenComplete((r, e) -> {
+            if (e == null && r.getCode() == 0) {
+                sketch.record(System.nanoTime() - startNanos);
+            }
+        });
+    }
+
+    /**
+     * 单次调用的对冲状态，每次调用独立
+     */
+    private class HedgedCall {
+        private final RetryContext context;
+        private final LatencySketch sketch;
+        private final long delayMicros;
+        private final CompletableFuture<Response> result = new CompletableFuture<>();
+        private final List<CompletableFuture<Response>> attempts = new ArrayList<>();
+        private final List<Endpoint> candidates;
+        private int hedges;
+        private int pending;
+
+        HedgedCall(RetryContext context, LatencySketch sketch, CompletableFuture<Response> first, long delayMicros) {
+            this.context = context;
+            this.sketch = sketch;
+            this.delayMicros = delayMicros;
+            this.candidates = new ArrayList<>(context.getAllService());
+            candidates.remove(context.getFailService());
+            // 结束（包括调用方取消）时取消其余仍在途的请求
+            result.whenComplete((r, e) -> cancelAttempts());
+            add(first);
+            if (!candidates.isEmpty()) {
+                RetryTimer.schedule(this::fire, delayMicros, TimeUnit.MICROSECONDS);
+            }
+        }
+
+        private void add(CompletableFuture<Response> attempt) {
+            synchronized (this) {
+                attempts.add(attempt);
+                pending++;
+            }
+            attempt.whenComplete((response, e) -> {
+                if (e == null && response.getCode() == 0) {
+                    result.complete(response);
+                    return;
+                }
+                boolean allFailed;
+                synchronized (this) {
+                    allFailed = --pending == 0;
+                }
+                // 全部失败时以最后一个结果结束，错误响应交给调用方按原来的方式处理
+                if (!allFailed) {
+                    return;
+                }
+                if (e != null) {
+                    result.completeExceptionally(e);
+                } else {
+                    result.complete(response);
+                }
+            });
+        }
+
+        private void fire() {
+            if (result.isDone()) {
+                return;
+            }
+            Endpoint provider;
+            synchronized (this) {
+                if (hedges >= context.getMaxHedges() || candidates.isEmpty()) {
+                    return;
+                }
+                if (!tryConsume()) {
+                    log.debug("hedge budget exhausted, method:{}", context.getMethodKey());
+                    return;
+                }
+                hedges++;
+                provider = context.getLoadBalancer().select(candidates);
+                candidates.remove(provider);
+            }
+            CompletableFuture<Response> attempt;
+            try {
+                attempt = context.doRPC(provider);
+            } catch (Exception e) {
+                log.warn("hedge request fail, method:{} provider:{}", context.getMethodKey(), provider, e);
+                return;
+            }
+            record(attempt, sketch, System.nanoTime());
+            add(attempt);
+            if (hedges < context.getMaxHedges()) {
+                RetryTimer.schedule(this::fire, delayMicros, TimeUnit.MICROSECONDS);
+            }
+        }
+
+        private void cancelAttempts() {
+            List<CompletableFuture<Response>> snapshot;
+            synchronized (this) {
+                snapshot = new ArrayList<>(attempts);
+            }
+            snapshot.forEach(attempt -> attempt.cancel(false));
+        }
+    }
+}
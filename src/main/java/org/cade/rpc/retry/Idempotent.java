@@ -0,0 +1,14 @@
+package org.cade.rpc.retry;
+
+import java.lang.annotation.*;
+
+/**
+ * 标记幂等的接口方法：同一请求重复执行不会产生副作用。
+ * <p>
+ * 对冲请求（{@link HedgedRetryPolicy}）会让同一请求同时在多个 provider 上执行，只对标注了该注解的方法生效。
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Idempotent {
+}
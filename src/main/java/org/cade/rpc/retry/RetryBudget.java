@@ -0,0 +1,110 @@
+package org.cade.rpc.retry;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个服务的重试预算，对所有重试策略生效。
+ * <p>
+ * 每次首次请求成功存入 ratio 个令牌，每次重试请求（包括 forking 的每一路）消耗一个，
+ * 重试量因此不超过成功请求量的 ratio 倍；provider 集群整体故障时没有成功请求，重试会很快停下来，不会在容量最低时放大负载。
+ * 另外每秒按 minRetriesPerSecond 补充令牌，保证低流量服务也能重试。余额上限为 maxTokens。
+ */
+public class RetryBudget {
+    // 令牌以千分之一为单位
+    private static final long UNIT = 1000;
+
+    private final long depositPerSuccess;
+    private final long refillPerMS;
+    private final long maxTokens;
+    private final AtomicLong tokens;
+    private final AtomicLong lastRefillMS;
+
+    private final LongAdder deposits = new LongAdder();
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public RetryBudget(double ratio, int minRetriesPerSecond, int maxTokens) {
+        this.depositPerSuccess = (long) (ratio * UNIT);
+        // minRetriesPerSecond * UNIT / 1000
+        this.refillPerMS = minRetriesPerSecond;
+        this.maxTokens = maxTokens * UNIT;
+        // 启动时预留一秒的保底重试
+        this.tokens = new AtomicLong(Math.min(this.maxTokens, minRetriesPerSecond * UNIT));
+        this.lastRefillMS = new AtomicLong(System.currentTimeMillis());
+    }
+
+    /**
+     * 首次请求成功
+     */
+    public void deposit() {
+        deposits.increment();
+        tokens.getAndUpdate(t -> Math.min(maxTokens, t + depositPerSuccess));
+    }
+
+    /**
+     * 发起一次重试前调用
+     *
+     * @return false 表示预算耗尽，不应再重试
+     */
+    public boolean tryAcquire() {
+        refill(System.currentTimeMillis());
+        long t;
+        do {
+            t = tokens.get();
+            if (t < UNIT) {
+                rejected.increment();
+                return false;
+            }
+        } while (!tokens.compareAndSet(t, t - UNIT));
+        acquired.increment();
+        return true;
+    }
+
+    void refill(long now) {
+        long last = lastRefillMS.get();
+        if (now <= last || refillPerMS == 0 || !lastRefillMS.compareAndSet(last, now)) {
+            return;
+        }
+        long add = (now - last) * refillPerMS;
+        tokens.getAndUpdate(t -> Math.min(maxTokens, t + add));
+    }
+
+    /**
+     * @return 首次成功的请求数
+     */
+    public long getDeposits() {
+        return deposits.sum();
+    }
+
+    /**
+     * @return 预算放行的重试请求数
+     */
+    public long getAcquired() {
+        return acquired.sum();
+    }
+
+    /**
+     * @return 因预算耗尽直接降级的重试数
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return 当前可用的重试次数
+     */
+    public double getBalance() {
+        return (double) tokens.get() / UNIT;
+    }
+
+    @Override
+    public String toString() {
+        return "RetryBudget{" +
+                "deposits=" + getDeposits() +
+                ", acquired=" + getAcquired() +
+                ", rejected=" + getRejected() +
+                ", balance=" + getBalance() +
+                '}';
+    }
+}
@@ -3,7 +3,7 @@ package org.cade.rpc.retry;
 import lombok.Data;
 import org.cade.rpc.loadbalance.LoadBalancer;
 import org.cade.rpc.message.Response;
-import org.cade.rpc.register.Metadata;
+import org.cade.rpc.comsumer.Endpoint;
 
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
@@ -11,14 +11,22 @@ import java.util.function.Function;
 
 @Data
 public class RetryContext {
-    private Metadata failService;
-    private List<Metadata> allService;
+    /**
+     * 接口名#方法名，用于按方法区分统计
+     */
+    private String methodKey;
+    private Endpoint failService;
+    private List<Endpoint> allService;
     private long functionTimeoutMS;
     private long requestTimeout;
     private LoadBalancer loadBalancer;
-    private Function<Metadata,CompletableFuture<Response>> retry;
+    /**
+     * 对冲策略每次调用最多追加的请求数
+     */
+    private int maxHedges = 1;
+    private Function<Endpoint,CompletableFuture<Response>> retry;
 
-    public CompletableFuture<Response> doRPC(Metadata service){
+    public CompletableFuture<Response> doRPC(Endpoint service){
         return retry.apply(service);
     }
 }
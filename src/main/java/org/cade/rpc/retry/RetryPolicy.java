@@ -2,6 +2,30 @@ package org.cade.rpc.retry;
 
 import org.cade.rpc.message.Response;
 
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 重试策略，同步和异步调用共用同一个异步契约。
+ * <p>
+ * 实现不能阻塞调用线程：退避等延迟通过 {@link RetryTimer} 调度，请求通过 {@link RetryContext#doRPC} 异步发出。
+ * 策略实例在所有调用间共享，单次调用的重试状态必须保存在调用自己的对象中，不能放在实例字段里。
+ */
 public interface RetryPolicy {
-    Response retry(RetryContext context) throws Exception;
+    /**
+     * 第一次请求失败后调用
+     *
+     * @return 重试的最终结果，所有重试都失败时异常完成
+     */
+    CompletableFuture<Response> retry(RetryContext context);
+
+    /**
+     * 第一次请求发出后调用，默认直接返回；对冲策略在这里按延迟分位数向其他 provider 追加请求。
+     * 只对标注了 {@link Idempotent} 的方法调用，{@code context} 中的 failService 是第一次请求的 provider。
+     *
+     * @param first 第一次请求
+     * @return 调用方等待的 future
+     */
+    default CompletableFuture<Response> hedge(RetryContext context, CompletableFuture<Response> first) {
+        return first;
+    }
 }
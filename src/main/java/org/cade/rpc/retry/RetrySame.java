@@ -3,50 +3,109 @@ package org.cade.rpc.retry;
 import lombok.extern.slf4j.Slf4j;
 import org.cade.rpc.excpetion.RPCException;
 import org.cade.rpc.message.Response;
-import org.cade.rpc.register.Metadata;
+import org.cade.rpc.comsumer.Endpoint;
 import org.cade.rpc.spi.SPI;
 
-import java.util.Random;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 
+/**
+ * 重试同一个 provider，指数退避（100ms → 200ms → 400ms，另加 0~50ms 随机抖动）。
+ * <p>
+ * 退避期间不占用任何线程：下一次重试挂在共享的时间轮上，请求完成的回调里再决定是否继续。
+ */
 @Slf4j(topic = "retry_same")
 @SPI("same")
 public class RetrySame implements RetryPolicy{
     final int retryTimes = 3;
     final long retryInterval = 100;
-    private Random random=new Random();
 
     @Override
-    public Response retry(RetryContext retryContext)throws Exception {
-        long startTime = System.currentTimeMillis();
-        int retryCount = 0;
-        while (retryCount++ < retryTimes){
-            long nextDelay = nextDelay(retryCount);
-            long methodTimeout = retryContext.getFunctionTimeoutMS()-(System.currentTimeMillis() - startTime);
-            if(methodTimeout<=0||nextDelay>=methodTimeout){
-                throw new TimeoutException();
-            }
-            Thread.sleep(nextDelay);
-            try{
-                CompletableFuture<Response> future = retryContext.doRPC(getService(retryContext,retryContext.getFailService()));
-                return  future.get(retryContext.getFunctionTimeoutMS(), TimeUnit.MILLISECONDS);
-            }catch (Exception e){
-                log.error("retry fail, retryCount:{} e:{}", retryCount,e);
-            }
-        }
-        throw new RPCException("retry fail");
+    public CompletableFuture<Response> retry(RetryContext retryContext) {
+        RetryState state = new RetryState(retryContext);
+        schedule(state);
+        return state.result;
+    }
 
+    private void schedule(RetryState state) {
+        if (state.retryCount >= retryTimes) {
+            state.result.completeExceptionally(new RPCException("retry fail"));
+            return;
+        }
+        state.retryCount++;
+        long nextDelay = nextDelay(state.retryCount);
+        long methodTimeout = state.context.getFunctionTimeoutMS() - (System.currentTimeMillis() - state.startTime);
+        if (methodTimeout <= 0 || nextDelay >= methodTimeout) {
+            state.result.completeExceptionally(new TimeoutException());
+            return;
+        }
+        RetryTimer.schedule(() -> attempt(state), nextDelay, TimeUnit.MILLISECONDS);
+    }
 
+    private void attempt(RetryState state) {
+        if (state.result.isDone()) {
+            // 调用方已经放弃（超时或取消）
+            return;
+        }
+        CompletableFuture<Response> future;
+        try {
+            Endpoint service = getService(state);
+            state.lastService = service;
+            future = state.context.doRPC(service);
+        } catch (RPCException e) {
+            // 没有可用的 provider，继续重试也没有意义
+            state.result.completeExceptionally(e);
+            return;
+        } catch (Exception e) {
+            log.error("retry fail, retryCount:{} e:{}", state.retryCount, e);
+            schedule(state);
+            return;
+        }
+        future.whenComplete((response, e) -> {
+            if (e == null) {
+                state.result.complete(response);
+                return;
+            }
+            log.error("retry fail, retryCount:{} e:{}", state.retryCount, e);
+            schedule(state);
+        });
     }
 
-    protected Metadata getService(RetryContext retryContext,Metadata failService) {
-        return failService;
+    /**
+     * @return 本次重试使用的 provider，默认总是第一次失败的那个
+     */
+    protected Endpoint getService(RetryState state) {
+        return state.context.getFailService();
     }
 
     private long nextDelay(int retryCount) {
-        return retryInterval*(1L<<(retryCount-1))+random.nextInt(0,50);
+        return retryInterval*(1L<<(retryCount-1))+ThreadLocalRandom.current().nextInt(0,50);
+    }
+
+    /**
+     * 单次调用的重试状态，同一时刻只有一个重试在进行，不需要同步
+     */
+    protected static class RetryState {
+        final RetryContext context;
+        final CompletableFuture<Response> result = new CompletableFuture<>();
+        final long startTime = System.currentTimeMillis();
+        int retryCount;
+        /**
+         * 上一次请求（失败）的 provider
+         */
+        Endpoint lastService;
+        /**
+         * 尚未失败过的 provider，由需要换节点的子类使用
+         */
+        List<Endpoint> candidates;
+
+        RetryState(RetryContext context) {
+            this.context = context;
+            this.lastService = context.getFailService();
+        }
     }
 }
@@ -0,0 +1,24 @@
+package org.cade.rpc.retry;
+
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 重试策略共用的时间轮：退避、对冲等延迟动作都挂在这一个线程上，不占用调用线程。
+ * <p>
+ * 到期任务在时间轮线程上执行，只能做发起请求这类轻量操作。
+ */
+public class RetryTimer {
+    private static final Timer TIMER = new HashedWheelTimer(new DefaultThreadFactory("rpc-retry-timer", true), 1, TimeUnit.MILLISECONDS);
+
+    private RetryTimer() {
+    }
+
+    public static Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        return TIMER.newTimeout(timeout -> task.run(), delay, unit);
+    }
+}
@@ -3,6 +3,7 @@ package org.cade.rpc.serialize;
 import com.alibaba.fastjson2.JSONObject;
 import com.alibaba.fastjson2.JSONReader;
 
+import java.lang.reflect.Type;
 import java.nio.charset.StandardCharsets;
 
 public class JSONSerializer implements Serializer{
@@ -17,6 +18,12 @@ public class JSONSerializer implements Serializer{
         return JSONObject.parseObject(jsonStr, clazz, JSONReader.Feature.SupportClassForName);
     }
 
+    @Override
+    public Object deserialize(byte[] bytes, Type type) {
+        String jsonStr = new String(bytes, StandardCharsets.UTF_8);
+        return JSONObject.parseObject(jsonStr, type, JSONReader.Feature.SupportClassForName);
+    }
+
     @Override
     public String getName() {
         return "json";
@@ -2,8 +2,24 @@ package org.cade.rpc.serialize;
 
 import org.cade.rpc.spi.Extension;
 
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+
 public interface Serializer extends Extension {
     byte[] serialize(Object obj);
 
     <T> T deserialize(byte[] bytes, Class<T> clazz);
+
+    /**
+     * 按泛型类型反序列化，例如 {@code List<User>}。默认只按原始类型处理，支持泛型的实现应覆盖
+     */
+    default Object deserialize(byte[] bytes, Type type) {
+        if (type instanceof Class<?> clazz) {
+            return deserialize(bytes, clazz);
+        }
+        if (type instanceof ParameterizedType parameterizedType) {
+            return deserialize(bytes, (Class<?>) parameterizedType.getRawType());
+        }
+        return deserialize(bytes, Object.class);
+    }
 }
@@ -42,21 +42,27 @@ public class TraceExecutors {
      */
     public static Runnable wrap(Runnable runnable) {
         String parentTraceId = TraceContext.getTraceId();
-        return () -> {
-            String oldTraceId = TraceContext.getTraceId();
-            try {
-                if (parentTraceId != null) {
-                    TraceContext.setTraceId(parentTraceId);
-                }
-                runnable.run();
-            } finally {
-                if (oldTraceId != null) {
-                    TraceContext.setTraceId(oldTraceId);
-                } else {
-                    TraceContext.clear();
-                }
+        return () -> runWithTraceId(parentTraceId, runnable);
+    }
+
+    /**
+     * 在当前线程上以指定的 traceId 执行，结束后恢复线程原有的 traceId。
+     * 用于 future 回调这类无法提前包装、执行线程也不确定的场景。
+     */
+    public static void runWithTraceId(String traceId, Runnable runnable) {
+        String oldTraceId = TraceContext.getTraceId();
+        try {
+            if (traceId != null) {
+                TraceContext.setTraceId(traceId);
             }
-        };
+            runnable.run();
+        } finally {
+            if (oldTraceId != null) {
+                TraceContext.setTraceId(oldTraceId);
+            } else {
+                TraceContext.clear();
+            }
+        }
     }
 
     /**
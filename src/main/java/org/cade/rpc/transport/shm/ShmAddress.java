@@ -0,0 +1,49 @@
+package org.cade.rpc.transport.shm;
+
+import java.net.SocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * 共享内存端点地址，对应 provider 在 {@code /dev/shm} 下的服务目录。
+ */
+public final class ShmAddress extends SocketAddress {
+    public static final Path ROOT = Path.of("/dev/shm", "cade_rpc");
+
+    private final Path dir;
+
+    public ShmAddress(Path dir) {
+        this.dir = Objects.requireNonNull(dir, "dir");
+    }
+
+    public static ShmAddress of(String name) {
+        return new ShmAddress(ROOT.resolve(name));
+    }
+
+    /**
+     * 当前系统是否提供 {@code /dev/shm}（tmpfs）。
+     */
+    public static boolean isSupported() {
+        return Files.isDirectory(ROOT.getParent());
+    }
+
+    public Path dir() {
+        return dir;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ShmAddress other && dir.equals(other.dir);
+    }
+
+    @Override
+    public int hashCode() {
+        return dir.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "shm:" + dir;
+    }
+}
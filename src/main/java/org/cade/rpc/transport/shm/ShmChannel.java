@@ -0,0 +1,305 @@
+package org.cade.rpc.transport.shm;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.*;
+import io.netty.util.ReferenceCountUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.ConnectException;
+import java.net.SocketAddress;
+import java.nio.channels.AlreadyConnectedException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 基于共享内存环形缓冲区的实验性 Netty Channel，用于同机进程间通信。
+ * <p>
+ * 出站：{@link #doWrite} 在 EventLoop 线程上把编码后的 ByteBuf 直接拷贝进对端的环形缓冲区，
+ * 不产生系统调用。缓冲区满时稍后在 EventLoop 上重试 flush。
+ * <p>
+ * 入站：每个 Channel 一个轮询线程，按 {@link ShmIdleStrategy} 忙等/挂起，读到数据后批量
+ * 投递到 EventLoop 执行 {@code fireChannelRead}。只有在 pipeline 请求读（autoRead 或显式 read）
+ * 时才会读取，保留 Netty 原有的背压语义。
+ * <p>
+ * 帧格式与 TCP 完全一致，pipeline 中的 MsgEncoder/MsgDecoder 无需改动。
+ */
+@Slf4j(topic = "shm_channel")
+public class ShmChannel extends AbstractChannel {
+    public static final int DEFAULT_RING_CAPACITY = 1 << 22;
+    private static final int MAX_READ_BYTES = 64 * 1024;
+    private static final int MAX_READ_BATCH = 16;
+    private static final long WRITE_RETRY_MICROS = 20;
+    private static final ChannelMetadata METADATA = new ChannelMetadata(false);
+
+    private enum State { OPEN, ACTIVE, CLOSED }
+
+    private final ChannelConfig config = new DefaultChannelConfig(this);
+    private final int ringCapacity;
+    private volatile State state;
+    private volatile ShmAddress localAddress;
+    private volatile ShmAddress remoteAddress;
+    private volatile ShmChannelFile file;
+    private volatile ShmRingBuffer inbound;
+    private volatile ShmRingBuffer outbound;
+    private volatile boolean readRequested;
+    private volatile Thread poller;
+    private boolean writeRetryScheduled;
+
+    public ShmChannel() {
+        this(DEFAULT_RING_CAPACITY);
+    }
+
+    public ShmChannel(int ringCapacity) {
+        super(null);
+        this.ringCapacity = ringCapacity;
+        this.state = State.OPEN;
+    }
+
+    /**
+     * provider 端接受连接时创建的子 Channel。
+     */
+    ShmChannel(ShmServerChannel parent, ShmChannelFile file) {
+        super(parent);
+        this.ringCapacity = 0;
+        this.file = file;
+        this.inbound = file.clientToServer();
+        this.outbound = file.serverToClient();
+        this.localAddress = parent.localAddress();
+        this.remoteAddress = new ShmAddress(parent.localAddress().dir().resolve(file.id()));
+        this.state = State.ACTIVE;
+    }
+
+    @Override
+    protected AbstractUnsafe newUnsafe() {
+        return new ShmUnsafe();
+    }
+
+    @Override
+    protected boolean isCompatible(EventLoop loop) {
+        return loop instanceof SingleThreadEventLoop;
+    }
+
+    @Override
+    protected SocketAddress localAddress0() {
+        return localAddress;
+    }
+
+    @Override
+    protected SocketAddress remoteAddress0() {
+        return remoteAddress;
+    }
+
+    @Override
+    public ShmAddress localAddress() {
+        return (ShmAddress) super.localAddress();
+    }
+
+    @Override
+    public ShmAddress remoteAddress() {
+        return (ShmAddress) super.remoteAddress();
+    }
+
+    @Override
+    protected void doRegister() throws Exception {
+        if (state == State.ACTIVE) {
+            startPoller();
+        }
+    }
+
+    @Override
+    protected void doBind(SocketAddress localAddress) throws Exception {
+        this.localAddress = (ShmAddress) localAddress;
+    }
+
+    @Override
+    protected void doDisconnect() throws Exception {
+        doClose();
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        State old = state;
+        state = State.CLOSED;
+        if (old == State.CLOSED) {
+            return;
+        }
+        Thread t = poller;
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+        ShmRingBuffer out = outbound;
+        if (out != null) {
+            out.close();
+        }
+        ShmChannelFile f = file;
+        if (f != null) {
+            f.delete();
+        }
+    }
+
+    @Override
+    protected void doBeginRead() throws Exception {
+        readRequested = true;
+    }
+
+    @Override
+    protected Object filterOutboundMessage(Object msg) {
+        if (msg instanceof ByteBuf) {
+            return msg;
+        }
+        throw new UnsupportedOperationException("unsupported message type: " + msg.getClass().getName());
+    }
+
+    @Override
+    protected void doWrite(ChannelOutboundBuffer in) throws Exception {
+        ShmRingBuffer out = outbound;
+        for (;;) {
+            Object msg = in.current();
+            if (msg == null) {
+                return;
+            }
+            ByteBuf buf = (ByteBuf) msg;
+            if (!buf.isReadable()) {
+                in.remove();
+                continue;
+            }
+            int written = out.write(buf);
+            if (written > 0) {
+                in.progress(written);
+            }
+            if (buf.isReadable()) {
+                // 对端缓冲区已满，稍后重试剩余部分
+                scheduleWriteRetry();
+                return;
+            }
+            in.remove();
+        }
+    }
+
+    private void scheduleWriteRetry() {
+        if (writeRetryScheduled) {
+            return;
+        }
+        writeRetryScheduled = true;
+        eventLoop().schedule(() -> {
+            writeRetryScheduled = false;
+            if (isActive()) {
+                unsafe().flush();
+            }
+        }, WRITE_RETRY_MICROS, TimeUnit.MICROSECONDS);
+    }
+
+    private void startPoller() {
+        if (poller != null) {
+            return;
+        }
+        Thread t = new Thread(this::pollLoop, "shm-poller-" + remoteAddress.dir().getFileName());
+        t.setDaemon(true);
+        poller = t;
+        t.start();
+    }
+
+    private void pollLoop() {
+        ShmIdleStrategy idle = new ShmIdleStrategy();
+        ShmRingBuffer in = inbound;
+        while (state == State.ACTIVE) {
+            if (!readRequested) {
+                if (in.isClosed() && in.isEmpty()) {
+                    break;
+                }
+                idle.idle();
+                continue;
+            }
+            List<ByteBuf> batch = null;
+            ByteBuf buf;
+            while ((batch == null || batch.size() < MAX_READ_BATCH) && (buf = in.read(config.getAllocator(), MAX_READ_BYTES)) != null) {
+                if (batch == null) {
+                    batch = new ArrayList<>(4);
+                }
+                batch.add(buf);
+            }
+            if (batch == null) {
+                if (in.isClosed() && in.isEmpty()) {
+                    break;
+                }
+                idle.idle();
+                continue;
+            }
+            idle.reset();
+            readRequested = false;
+            deliver(batch);
+        }
+        if (state == State.ACTIVE) {
+            // 对端关闭了写端
+            eventLoop().execute(() -> unsafe().close(unsafe().voidPromise()));
+        }
+    }
+
+    private void deliver(List<ByteBuf> batch) {
+        eventLoop().execute(() -> {
+            if (!isActive()) {
+                batch.forEach(ReferenceCountUtil::safeRelease);
+                return;
+            }
+            ChannelPipeline pipeline = pipeline();
+            for (ByteBuf buf : batch) {
+                pipeline.fireChannelRead(buf);
+            }
+            pipeline.fireChannelReadComplete();
+        });
+    }
+
+    @Override
+    public ChannelConfig config() {
+        return config;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return state != State.CLOSED;
+    }
+
+    @Override
+    public boolean isActive() {
+        return state == State.ACTIVE;
+    }
+
+    @Override
+    public ChannelMetadata metadata() {
+        return METADATA;
+    }
+
+    private final class ShmUnsafe extends AbstractUnsafe {
+        @Override
+        public void connect(SocketAddress remoteAddress, SocketAddress localAddress, ChannelPromise promise) {
+            if (!promise.setUncancellable() || !ensureOpen(promise)) {
+                return;
+            }
+            if (state == State.ACTIVE) {
+                promise.setFailure(new AlreadyConnectedException());
+                return;
+            }
+            try {
+                ShmAddress remote = (ShmAddress) remoteAddress;
+                ShmChannelFile f = ShmChannelFile.create(remote.dir(), ringCapacity);
+                file = f;
+                inbound = f.serverToClient();
+                outbound = f.clientToServer();
+                ShmChannel.this.remoteAddress = new ShmAddress(remote.dir().resolve(f.id()));
+                ShmChannel.this.localAddress = ShmChannel.this.remoteAddress;
+                state = State.ACTIVE;
+                startPoller();
+            } catch (Throwable t) {
+                ConnectException connectException = new ConnectException("connect " + remoteAddress + " failed: " + t);
+                connectException.initCause(t);
+                safeSetFailure(promise, connectException);
+                closeIfClosed();
+                return;
+            }
+            promise.trySuccess();
+            pipeline().fireChannelActive();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package org.cade.rpc.transport.shm;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+
+/**
+ * 一条共享内存连接对应的映射文件，内含两个方向的 {@link ShmRingBuffer}。
+ * <p>
+ * 文件布局：
+ * <pre>
+ * +0   magic     long
+ * +8   capacity  long，每个环形缓冲区数据区大小
+ * +64  consumer → provider 环形缓冲区
+ * +64 + HEADER + capacity  provider → consumer 环形缓冲区
+ * </pre>
+ * 握手过程：消费者先在服务目录下写好 {@code <id>.tmp}，初始化完成后原子重命名为
+ * {@code <id>.shm}；provider 扫描到 {@code .shm} 文件后重命名为 {@code <id>.open} 再映射，
+ * 保证每个连接只被接受一次。
+ */
+final class ShmChannelFile {
+    static final String PENDING_SUFFIX = ".shm";
+    static final String ACCEPTED_SUFFIX = ".open";
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final long MAGIC = 0x636164655f73686dL;
+    private static final int FILE_HEADER_SIZE = 64;
+
+    private final Path dir;
+    private final String id;
+    private final ShmRingBuffer clientToServer;
+    private final ShmRingBuffer serverToClient;
+
+    private ShmChannelFile(Path dir, String id, MappedByteBuffer buffer, int capacity) {
+        this.dir = dir;
+        this.id = id;
+        this.clientToServer = new ShmRingBuffer(buffer, FILE_HEADER_SIZE, capacity);
+        this.serverToClient = new ShmRingBuffer(buffer, FILE_HEADER_SIZE + ShmRingBuffer.HEADER_SIZE + capacity, capacity);
+    }
+
+    /**
+     * 消费者端：创建并发布一条新连接。
+     */
+    static ShmChannelFile create(Path dir, int capacity) throws IOException {
+        String id = UUID.randomUUID().toString();
+        Path tmp = dir.resolve(id + TMP_SUFFIX);
+        long size = FILE_HEADER_SIZE + 2L * (ShmRingBuffer.HEADER_SIZE + capacity);
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        buffer.putLong(8, capacity);
+        buffer.putLong(0, MAGIC);
+        buffer.force();
+        Files.move(tmp, dir.resolve(id + PENDING_SUFFIX), StandardCopyOption.ATOMIC_MOVE);
+        return new ShmChannelFile(dir, id, buffer, capacity);
+    }
+
+    /**
+     * provider 端：接受一条消费者发布的连接。
+     *
+     * @return 文件已被其他线程接受或者已被删除时返回 null
+     */
+    static ShmChannelFile accept(Path pending) throws IOException {
+        String fileName = pending.getFileName().toString();
+        String id = fileName.substring(0, fileName.length() - PENDING_SUFFIX.length());
+        Path accepted = pending.resolveSibling(id + ACCEPTED_SUFFIX);
+        try {
+            Files.move(pending, accepted, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            return null;
+        }
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(accepted, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        }
+        if (buffer.getLong(0) != MAGIC) {
+            throw new IOException("bad shm channel file " + accepted);
+        }
+        return new ShmChannelFile(pending.getParent(), id, buffer, (int) buffer.getLong(8));
+    }
+
+    ShmRingBuffer clientToServer() {
+        return clientToServer;
+    }
+
+    ShmRingBuffer serverToClient() {
+        return serverToClient;
+    }
+
+    String id() {
+        return id;
+    }
+
+    /**
+     * 删除映射文件。已建立的映射在双方进程中保持有效，直到被 GC 回收。
+     */
+    void delete() {
+        for (String suffix : new String[]{PENDING_SUFFIX, ACCEPTED_SUFFIX}) {
+            try {
+                Files.deleteIfExists(dir.resolve(id + suffix));
+            } catch (IOException ignored) {
+                // 对端可能已经删除
+            }
+        }
+    }
+}
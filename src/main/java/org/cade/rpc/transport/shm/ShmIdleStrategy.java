@@ -0,0 +1,38 @@
+package org.cade.rpc.transport.shm;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 忙等/挂起混合的空闲策略。
+ * <p>
+ * 连续空转时先自旋，再让出 CPU，最后以指数增长的时长 park（上限 {@link #MAX_PARK_NANOS}）。
+ * 有数据时调用 {@link #reset()} 回到自旋阶段，使连续请求的延迟接近纯自旋。
+ */
+final class ShmIdleStrategy {
+    private static final int SPINS = 1000;
+    private static final int YIELDS = 100;
+    private static final long MIN_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(1);
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private int idleCount;
+    private long parkNanos = MIN_PARK_NANOS;
+
+    void idle() {
+        if (idleCount < SPINS) {
+            idleCount++;
+            Thread.onSpinWait();
+        } else if (idleCount < SPINS + YIELDS) {
+            idleCount++;
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(parkNanos);
+            parkNanos = Math.min(parkNanos << 1, MAX_PARK_NANOS);
+        }
+    }
+
+    void reset() {
+        idleCount = 0;
+        parkNanos = MIN_PARK_NANOS;
+    }
+}
@@ -0,0 +1,120 @@
+package org.cade.rpc.transport.shm;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 基于内存映射区域的单生产者/单消费者字节环形缓冲区。
+ * <p>
+ * 内存布局（相对于 {@code base}）：
+ * <pre>
+ * +0    head   读指针，只由消费者推进
+ * +64   tail   写指针，只由生产者推进
+ * +128  closed 生产者关闭标记
+ * +192  data   capacity 字节数据区（capacity 为 2 的幂）
+ * </pre>
+ * head/tail 单调递增，各自独占一个缓存行避免伪共享；通过 acquire/release 语义的
+ * {@link VarHandle} 读写，数据区的写入对跨进程的对端可见。
+ * <p>
+ * 缓冲区承载的是字节流而不是消息：帧边界仍由 {@code MsgDecoder} 按长度字段切分，
+ * 因此一个帧可以被拆成多段写入。
+ */
+final class ShmRingBuffer {
+    static final int HEADER_SIZE = 192;
+    private static final int HEAD_OFFSET = 0;
+    private static final int TAIL_OFFSET = 64;
+    private static final int CLOSED_OFFSET = 128;
+
+    private static final VarHandle LONG_VIEW = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final ByteBuffer buffer;
+    private final int base;
+    private final ByteBuffer data;
+    private final int capacity;
+    private final int mask;
+
+    ShmRingBuffer(ByteBuffer buffer, int base, int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two");
+        }
+        this.buffer = buffer;
+        this.base = base;
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.data = buffer.slice(base + HEADER_SIZE, capacity);
+    }
+
+    /**
+     * 将 {@code src} 中尽可能多的可读字节写入缓冲区，并推进 src 的 readerIndex。
+     * 只允许生产者线程调用。
+     *
+     * @return 实际写入的字节数，缓冲区已满时返回 0
+     */
+    int write(ByteBuf src) {
+        long tail = (long) LONG_VIEW.getOpaque(buffer, base + TAIL_OFFSET);
+        long head = (long) LONG_VIEW.getAcquire(buffer, base + HEAD_OFFSET);
+        int free = capacity - (int) (tail - head);
+        int length = Math.min(free, src.readableBytes());
+        if (length <= 0) {
+            return 0;
+        }
+        int offset = (int) (tail & mask);
+        int first = Math.min(length, capacity - offset);
+        copyIn(src, src.readerIndex(), offset, first);
+        if (first < length) {
+            copyIn(src, src.readerIndex() + first, 0, length - first);
+        }
+        src.skipBytes(length);
+        LONG_VIEW.setRelease(buffer, base + TAIL_OFFSET, tail + length);
+        return length;
+    }
+
+    /**
+     * 读取当前全部可读字节（最多 {@code maxBytes}）。只允许消费者线程调用。
+     *
+     * @return 读取到的数据，没有数据时返回 null
+     */
+    ByteBuf read(ByteBufAllocator allocator, int maxBytes) {
+        long head = (long) LONG_VIEW.getOpaque(buffer, base + HEAD_OFFSET);
+        long tail = (long) LONG_VIEW.getAcquire(buffer, base + TAIL_OFFSET);
+        int length = (int) Math.min(tail - head, maxBytes);
+        if (length <= 0) {
+            return null;
+        }
+        ByteBuf out = allocator.directBuffer(length);
+        int offset = (int) (head & mask);
+        int first = Math.min(length, capacity - offset);
+        out.writeBytes(data.slice(offset, first));
+        if (first < length) {
+            out.writeBytes(data.slice(0, length - first));
+        }
+        LONG_VIEW.setRelease(buffer, base + HEAD_OFFSET, head + length);
+        return out;
+    }
+
+    boolean isEmpty() {
+        long head = (long) LONG_VIEW.getOpaque(buffer, base + HEAD_OFFSET);
+        long tail = (long) LONG_VIEW.getAcquire(buffer, base + TAIL_OFFSET);
+        return head == tail;
+    }
+
+    /**
+     * 生产者关闭写端，消费者读完剩余数据后即可感知连接关闭。
+     */
+    void close() {
+        LONG_VIEW.setRelease(buffer, base + CLOSED_OFFSET, 1L);
+    }
+
+    boolean isClosed() {
+        return (long) LONG_VIEW.getAcquire(buffer, base + CLOSED_OFFSET) != 0;
+    }
+
+    private void copyIn(ByteBuf src, int srcIndex, int offset, int length) {
+        data.put(offset, src.nioBuffer(srcIndex, length), 0, length);
+    }
+}
@@ -0,0 +1,111 @@
+package org.cade.rpc.transport.shm;
+
+import io.netty.channel.*;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 共享内存传输的服务端 Channel。
+ * <p>
+ * bind 时在 {@link ShmAddress#dir()} 创建服务目录，由一个接受线程定期扫描消费者发布的
+ * 连接文件，为每条连接创建一个 {@link ShmChannel} 子 Channel 并交给 ServerBootstrap 注册到
+ * worker EventLoop，与 TCP 的 accept 流程一致。
+ */
+@Slf4j(topic = "shm_server_channel")
+public class ShmServerChannel extends AbstractServerChannel {
+    private static final long ACCEPT_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private final ChannelConfig config = new DefaultChannelConfig(this);
+    private volatile ShmAddress localAddress;
+    private volatile boolean open = true;
+    private volatile Thread acceptor;
+
+    @Override
+    protected boolean isCompatible(EventLoop loop) {
+        return loop instanceof SingleThreadEventLoop;
+    }
+
+    @Override
+    protected SocketAddress localAddress0() {
+        return localAddress;
+    }
+
+    @Override
+    public ShmAddress localAddress() {
+        return (ShmAddress) super.localAddress();
+    }
+
+    @Override
+    protected void doBind(SocketAddress localAddress) throws Exception {
+        ShmAddress address = (ShmAddress) localAddress;
+        Files.createDirectories(address.dir());
+        // 清理上一个进程遗留的连接文件
+        try (DirectoryStream<Path> stale = Files.newDirectoryStream(address.dir())) {
+            for (Path path : stale) {
+                Files.deleteIfExists(path);
+            }
+        }
+        this.localAddress = address;
+        Thread t = new Thread(this::acceptLoop, "shm-acceptor-" + address.dir().getFileName());
+        t.setDaemon(true);
+        acceptor = t;
+        t.start();
+    }
+
+    private void acceptLoop() {
+        Path dir = localAddress.dir();
+        while (open) {
+            try (DirectoryStream<Path> pending = Files.newDirectoryStream(dir, "*" + ShmChannelFile.PENDING_SUFFIX)) {
+                for (Path path : pending) {
+                    ShmChannelFile file = ShmChannelFile.accept(path);
+                    if (file != null) {
+                        ShmChannel child = new ShmChannel(this, file);
+                        eventLoop().execute(() -> {
+                            pipeline().fireChannelRead(child);
+                            pipeline().fireChannelReadComplete();
+                        });
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("accept shm channel error dir:{}", dir, e);
+            }
+            LockSupport.parkNanos(ACCEPT_INTERVAL_NANOS);
+        }
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        open = false;
+        Thread t = acceptor;
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+    }
+
+    @Override
+    protected void doBeginRead() throws Exception {
+        // 接受线程持续运行，无需按读请求驱动
+    }
+
+    @Override
+    public ChannelConfig config() {
+        return config;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public boolean isActive() {
+        return open && localAddress != null;
+    }
+}
@@ -0,0 +1,97 @@
+package org.cade.rpc.utils;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 虚拟线程工具类
+ * <p>
+ * 项目以 Java 17 编译，虚拟线程相关 API 只能通过反射调用；运行在 JDK 21 以下时 {@link #isSupported()} 返回 false。
+ */
+public class VirtualThreads {
+
+    private static final boolean SUPPORTED = createFactory("virtual-") != null;
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * 当前 JVM 是否支持虚拟线程（JDK 21+）
+     */
+    public static boolean isSupported() {
+        return SUPPORTED;
+    }
+
+    /**
+     * 创建每个任务一个虚拟线程的执行器，同时运行的任务数由信号量限制，超过时抛出 {@link RejectedExecutionException}。
+     * <p>
+     * 虚拟线程不继承提交线程（通常是 EventLoop）的 InheritableThreadLocal，
+     * 避免把提交线程上残留的 TraceID 带进业务线程，TraceID 由任务自己设置。
+     *
+     * @param namePrefix     线程名前缀
+     * @param maxConcurrency 最大并发任务数
+     * @return JDK 不支持虚拟线程时返回 null
+     */
+    public static Executor newBoundedExecutor(String namePrefix, int maxConcurrency) {
+        ThreadFactory factory = createFactory(namePrefix);
+        if (factory == null) {
+            return null;
+        }
+        return new BoundedExecutor(newThreadPerTaskExecutor(factory), maxConcurrency);
+    }
+
+    private static ThreadFactory createFactory(String namePrefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            builder = builderClass.getMethod("inheritInheritableThreadLocals", boolean.class).invoke(builder, false);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService newThreadPerTaskExecutor(ThreadFactory factory) {
+        try {
+            Method method = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) method.invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("virtual thread executor not available", e);
+        }
+    }
+
+    private static class BoundedExecutor implements Executor {
+        private final ExecutorService delegate;
+        private final Semaphore permits;
+
+        BoundedExecutor(ExecutorService delegate, int maxConcurrency) {
+            this.delegate = delegate;
+            this.permits = new Semaphore(maxConcurrency);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            if (!permits.tryAcquire()) {
+                throw new RejectedExecutionException("too many running virtual thread tasks");
+            }
+            try {
+                delegate.execute(() -> {
+                    try {
+                        command.run();
+                    } finally {
+                        permits.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package org.cade.rpc.breaker;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 滑动窗口熔断器测试
+ */
+public class SlidingWindowCircuitBreakerTest {
+    private static final int THREADS = 64;
+
+    private static CircuitBreakerConfig config() {
+        CircuitBreakerConfig config = new CircuitBreakerConfig();
+        config.setWindowMS(10_000);
+        config.setBucketCount(10);
+        config.setMinRequests(10);
+        config.setFailRatio(0.5);
+        config.setBreakTimeMS(1_000);
+        config.setHalfOpenProbes(5);
+        config.setHalfOpenSuccessRatio(0.8);
+        return config;
+    }
+
+    @Test
+    public void testTripHalfOpenAndRecover() {
+        SlidingWindowCircuitBreaker breaker = new SlidingWindowCircuitBreaker(config());
+        long now = 1_000_000;
+        for (int i = 0; i < 10; i++) {
+            breaker.record(now, 1, i % 2 == 0);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest(now + 500));
+
+        // 半开：只放行 5 个探测请求
+        int allowed = 0;
+        for (int i = 0; i < 10; i++) {
+            if (breaker.allowRequest(now + 1_000)) {
+                allowed++;
+            }
+        }
+        assertEquals(5, allowed);
+        for (int i = 0; i < 4; i++) {
+            breaker.record(now + 1_000, 1, true);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        // 熔断前的失败已经清空，一次失败不会重新熔断
+        breaker.record(now + 1_000, 1, false);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void testProbeFailureReopens() {
+        SlidingWindowCircuitBreaker breaker = new SlidingWindowCircuitBreaker(config());
+        long now = 1_000_000;
+        for (int i = 0; i < 10; i++) {
+            breaker.record(now, 1, false);
+        }
+        assertTrue(breaker.allowRequest(now + 1_000));
+        breaker.record(now + 1_000, 1, false);
+        breaker.record(now + 1_000, 1, false);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest(now + 1_500));
+    }
+
+    @Test
+    public void testOldBucketsExpire() {
+        SlidingWindowCircuitBreaker breaker = new SlidingWindowCircuitBreaker(config());
+        long now = 1_000_000;
+        for (int i = 0; i < 9; i++) {
+            breaker.record(now, 1, false);
+        }
+        // 窗口滑过之后之前的失败不再计入
+        for (int i = 0; i < 20; i++) {
+            breaker.record(now + 10_000, 1, true);
+        }
+        breaker.record(now + 10_000, 1, false);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void testSlowThresholdFollowsLatencyPercentile() {
+        CircuitBreakerConfig config = config();
+        config.setMinSlowMS(1);
+        config.setLatencyMinSamples(100);
+        SlidingWindowCircuitBreaker breaker = new SlidingWindowCircuitBreaker(config);
+        assertEquals(2000, breaker.getSlowThresholdMS());
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 200; i++) {
+            breaker.record(now, 10, true);
+        }
+        breaker.record(now + 2_000, 10, true);
+        // p90 约 10ms，3 倍
+        assertTrue(breaker.getSlowThresholdMS() >= 30 && breaker.getSlowThresholdMS() <= 40, "threshold " + breaker.getSlowThresholdMS());
+    }
+
+    /**
+     * 64 个线程并发记录：只熔断一次；半开后并发抢探测名额，恰好放行 halfOpenProbes 个
+     */
+    @Test
+    public void testContention() throws Exception {
+        SlidingWindowCircuitBreaker breaker = new SlidingWindowCircuitBreaker(config());
+        long now = 1_000_000;
+        runConcurrently(() -> {
+            for (int i = 0; i < 10_000; i++) {
+                breaker.record(now, 1, i % 2 == 0);
+            }
+        });
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        AtomicInteger allowed = new AtomicInteger();
+        runConcurrently(() -> {
+            for (int i = 0; i < 100; i++) {
+                if (breaker.allowRequest(now + 1_000)) {
+                    allowed.incrementAndGet();
+                }
+            }
+        });
+        assertEquals(5, allowed.get());
+    }
+
+    private static void runConcurrently(Runnable task) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                task.run();
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package org.cade.rpc.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.cade.rpc.compress.CompressionManager;
+import org.cade.rpc.message.Request;
+import org.cade.rpc.serialize.Serializer;
+import org.cade.rpc.serialize.SerializerManager;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 请求体编码一次、多次发送的测试
+ */
+public class EncodedRequestTest {
+
+    private static void setCodecs(Channel channel) {
+        channel.attr(MsgEncoder.SERIALIZE_KEY).set("json");
+        channel.attr(MsgEncoder.SERIALIZER_MANGER_ATTRIBUTE_KEY).set(new SerializerManager());
+        channel.attr(MsgEncoder.COMPRESSION_KEY).set("zstd");
+        channel.attr(MsgEncoder.COMPRESSION_MANAGER_ATTRIBUTE_KEY).set(new CompressionManager());
+    }
+
+    private static Request send(EmbeddedChannel encoder, EmbeddedChannel decoder, RequestFrame frame) {
+        encoder.writeOutbound(frame);
+        ByteBuf bytes = encoder.readOutbound();
+        decoder.writeInbound(bytes);
+        return decoder.readInbound();
+    }
+
+    @Test
+    public void testBodyEncodedOnceWithPerSendHeader() {
+        EmbeddedChannel encoder = new EmbeddedChannel();
+        setCodecs(encoder);
+        encoder.pipeline().addLast(new MsgEncoder());
+        EmbeddedChannel decoder = new EmbeddedChannel();
+        setCodecs(decoder);
+        decoder.pipeline().addLast(new MsgDecoder());
+
+        Request request = new Request();
+        request.setServiceName("svc");
+        request.setMethodName("m");
+        // 足够大，会走压缩
+        request.setParams(new Object[]{"x".repeat(64 * 1024)});
+        EncodedRequest encoded = new EncodedRequest(request);
+
+        Request first = send(encoder, decoder, new RequestFrame(encoded, 1, 300));
+        assertEquals(1, first.getRequestID());
+        assertEquals(300, first.getTimeoutMS());
+        assertEquals("m", first.getMethodName());
+        assertEquals(64 * 1024, first.getParams()[0].toString().length());
+
+        // 已经编码过的请求体不会再序列化
+        request.setMethodName("changed");
+        Request second = send(encoder, decoder, new RequestFrame(encoded, 2, 200));
+        assertEquals(2, second.getRequestID());
+        assertEquals(200, second.getTimeoutMS());
+        assertEquals("m", second.getMethodName());
+
+        // release 之后退化为每次单独编码
+        encoded.release();
+        Request third = send(encoder, decoder, new RequestFrame(encoded, 3, 100));
+        assertEquals(3, third.getRequestID());
+        assertEquals("changed", third.getMethodName());
+    }
+
+    /**
+     * 请求 ID 和时间预算只在帧头中传输，不进入请求体
+     */
+    @Test
+    public void testHeaderFieldsNotInBody() {
+        Request request = new Request();
+        request.setServiceName("svc");
+        request.setRequestID(42);
+        request.setTimeoutMS(300);
+        Serializer serializer = new SerializerManager().getSerializer("json");
+        String body = new String(serializer.serialize(request), StandardCharsets.UTF_8);
+        assertFalse(body.contains("requestID"), body);
+        assertFalse(body.contains("timeoutMS"), body);
+        Request decoded = serializer.deserialize(body.getBytes(StandardCharsets.UTF_8), Request.class);
+        assertEquals("svc", decoded.getServiceName());
+        assertEquals(0, decoded.getRequestID());
+    }
+}
@@ -0,0 +1,83 @@
+package org.cade.rpc.comsumer;
+
+import org.cade.rpc.provider.ProviderProperties;
+import org.cade.rpc.provider.ProviderServer;
+import org.cade.rpc.register.InMemoryServiceRegister;
+import org.cade.rpc.register.Metadata;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 异步调用测试：第一次调用时连接还没建立，调用线程不等待建连
+ */
+public class AsyncInvokeTest {
+
+    public interface AsyncCalculator {
+        CompletableFuture<Integer> add(int a, int b);
+    }
+
+    public static class AsyncCalculatorImpl implements AsyncCalculator {
+        @Override
+        public CompletableFuture<Integer> add(int a, int b) {
+            return CompletableFuture.completedFuture(a + b);
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static AsyncCalculator consumer(InMemoryServiceRegister register, int connectTimeoutMS) {
+        ConsumerProperties properties = new ConsumerProperties();
+        properties.setInjvm(false);
+        properties.setConnectTimeoutMS(connectTimeoutMS);
+        return new ConsumerProxyFactory(properties, register).getConsumerProxy(AsyncCalculator.class);
+    }
+
+    @Test
+    public void testInvokeAsyncOverNetwork() throws Exception {
+        InMemoryServiceRegister register = new InMemoryServiceRegister();
+        ProviderProperties properties = new ProviderProperties();
+        properties.setHost("127.0.0.1");
+        properties.setPort(freePort());
+        ProviderServer server = new ProviderServer(properties, register);
+        server.register(AsyncCalculator.class, new AsyncCalculatorImpl());
+        server.start();
+        try {
+            AsyncCalculator calculator = consumer(register, 3000);
+            // 第一次调用建连，之后复用连接
+            assertEquals(3, calculator.add(1, 2).get(5, TimeUnit.SECONDS));
+            assertEquals(7, calculator.add(3, 4).get(5, TimeUnit.SECONDS));
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testInvokeAsyncDoesNotWaitForConnect() throws Exception {
+        InMemoryServiceRegister register = new InMemoryServiceRegister();
+        // 不可路由的地址，建连要等到超时才失败
+        Metadata metadata = new Metadata();
+        metadata.setServiceName(AsyncCalculator.class.getName());
+        metadata.setHost("10.255.255.1");
+        metadata.setPort(9);
+        register.register(metadata);
+        AsyncCalculator calculator = consumer(register, 2000);
+
+        long start = System.nanoTime();
+        CompletableFuture<Integer> future = calculator.add(1, 2);
+        long elapsedMS = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsedMS < 1000, "invoke blocked " + elapsedMS + " ms");
+
+        // 建连失败后走降级或以异常结束，不会一直挂起
+        assertTrue(future.handle((r, e) -> true).get(10, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,52 @@
+package org.cade.rpc.comsumer;
+
+import org.cade.rpc.excpetion.LimitException;
+import org.cade.rpc.excpetion.RPCException;
+import org.cade.rpc.message.Response;
+import org.cade.rpc.outlier.HostHealth;
+import org.cade.rpc.outlier.OutlierDetector;
+import org.cade.rpc.register.Metadata;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 请求结果计入地址健康状态的测试
+ */
+public class EndpointTest {
+
+    private static Endpoint endpoint() {
+        Metadata metadata = new Metadata();
+        metadata.setHost("127.0.0.1");
+        metadata.setPort(1);
+        metadata.setServiceName("svc");
+        OutlierDetector detector = new OutlierDetector(new ConsumerProperties());
+        return new Endpoint(metadata, null, null, null, null, detector.host(metadata));
+    }
+
+    @Test
+    public void testCancelLocalRejectAndBizErrorNotCounted() {
+        Endpoint endpoint = endpoint();
+        HostHealth health = endpoint.getHealth();
+
+        endpoint.callEnd(endpoint.callStart(), null, new CancellationException());
+        endpoint.callEnd(endpoint.callStart(), null, new LimitException("byte budget exhausted"));
+        assertEquals(0, health.getConsecutiveErrors());
+
+        endpoint.callEnd(endpoint.callStart(), null, new TimeoutException());
+        endpoint.callEnd(endpoint.callStart(), null, new RPCException("provider connection closed"));
+        endpoint.callEnd(endpoint.callStart(), Response.error("service busy", 1), null);
+        assertEquals(3, health.getConsecutiveErrors());
+
+        // 业务异常不影响连续失败计数
+        endpoint.callEnd(endpoint.callStart(), Response.bizError("Call Function Fail", 3), null);
+        assertEquals(3, health.getConsecutiveErrors());
+
+        endpoint.callEnd(endpoint.callStart(), Response.ok("ok", 2), null);
+        assertEquals(0, health.getConsecutiveErrors());
+        assertEquals(0, endpoint.getInflight());
+    }
+}
@@ -0,0 +1,139 @@
+package org.cade.rpc.comsumer;
+
+import org.cade.rpc.codec.EncodedRequest;
+import org.cade.rpc.limit.ConcurrencyLimiter;
+import org.cade.rpc.limit.Limiter;
+import org.cade.rpc.message.Request;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * InflightTable 测试
+ */
+public class InflightTableTest {
+    private final Limiter limiter = new ConcurrencyLimiter(Integer.MAX_VALUE);
+
+    private InflightFuture newFuture(long deadline) {
+        return new InflightFuture(new EncodedRequest(new Request()), deadline, limiter, null);
+    }
+
+    @Test
+    public void testRegisterAssignsIdAndRemove() {
+        InflightTable table = new InflightTable(64);
+        InflightFuture first = newFuture(Long.MAX_VALUE);
+        InflightFuture second = newFuture(Long.MAX_VALUE);
+        assertTrue(table.register(first));
+        assertTrue(table.register(second));
+        assertEquals(1, first.getRequestID());
+        assertEquals(2, second.getRequestID());
+
+        assertSame(first, table.remove(1));
+        assertNull(table.remove(1));
+        assertSame(second, table.remove(2));
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    public void testBoundedCapacity() {
+        InflightTable table = new InflightTable(8);
+        for (int i = 0; i < 8; i++) {
+            assertTrue(table.register(newFuture(Long.MAX_VALUE)));
+        }
+        assertFalse(table.register(newFuture(Long.MAX_VALUE)));
+        assertNotNull(table.remove(3));
+        assertTrue(table.register(newFuture(Long.MAX_VALUE)));
+    }
+
+    /**
+     * 计数器越过 Integer.MAX_VALUE 后继续分配
+     */
+    @Test
+    public void testRequestIdWraparound() {
+        InflightTable table = new InflightTable(16, Integer.MAX_VALUE - 1);
+        InflightFuture a = newFuture(Long.MAX_VALUE);
+        InflightFuture b = newFuture(Long.MAX_VALUE);
+        InflightFuture c = newFuture(Long.MAX_VALUE);
+        assertTrue(table.register(a));
+        assertTrue(table.register(b));
+        assertTrue(table.register(c));
+        assertEquals(Integer.MAX_VALUE - 1, a.getRequestID());
+        assertEquals(Integer.MAX_VALUE, b.getRequestID());
+        assertEquals(Integer.MIN_VALUE, c.getRequestID());
+    }
+
+    /**
+     * 大量冲突 + 删除后，探测链上剩余元素仍然可以查到
+     */
+    @Test
+    public void testRemoveKeepsProbeChain() {
+        InflightTable table = new InflightTable(512);
+        List<InflightFuture> all = new ArrayList<>();
+        for (int i = 0; i < 512; i++) {
+            InflightFuture f = newFuture(Long.MAX_VALUE);
+            assertTrue(table.register(f));
+            all.add(f);
+        }
+        for (int i = 0; i < 512; i += 2) {
+            assertSame(all.get(i), table.remove(all.get(i).getRequestID()));
+        }
+        for (int i = 1; i < 512; i += 2) {
+            assertSame(all.get(i), table.remove(all.get(i).getRequestID()));
+        }
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    public void testExpire() {
+        InflightTable table = new InflightTable(1024);
+        long now = System.nanoTime();
+        for (int i = 0; i < 1000; i++) {
+            long deadline = i % 2 == 0 ? now - 1 : now + TimeUnit.HOURS.toNanos(1);
+            assertTrue(table.register(newFuture(deadline)));
+        }
+        List<InflightFuture> expired = new ArrayList<>();
+        assertEquals(500, table.expire(now, expired::add));
+        assertEquals(500, expired.size());
+        expired.forEach(f -> assertTrue(f.getDeadlineNanos() < now));
+        assertEquals(500, table.size());
+        assertEquals(0, table.expire(now, f -> fail()));
+
+        List<InflightFuture> drained = new ArrayList<>();
+        assertEquals(500, table.drain(drained::add));
+        assertEquals(0, table.size());
+    }
+
+    /**
+     * 取消只移除仍对应同一个 future 的 ID，登记前取消的 future 在设置回调时立即执行
+     */
+    @Test
+    public void testCancel() {
+        InflightTable table = new InflightTable(64);
+        InflightFuture first = newFuture(Long.MAX_VALUE);
+        InflightFuture other = newFuture(Long.MAX_VALUE);
+        assertTrue(table.register(first));
+        int id = first.getRequestID();
+        List<Integer> cancelled = new ArrayList<>();
+        first.onCancel(() -> {
+            if (table.remove(id, first)) {
+                cancelled.add(id);
+            }
+        });
+
+        assertFalse(table.remove(id, other));
+        assertTrue(first.cancel(false));
+        assertEquals(List.of(id), cancelled);
+        assertEquals(0, table.size());
+        first.cancel(false);
+        assertEquals(List.of(id), cancelled);
+
+        assertTrue(other.cancel(false));
+        List<InflightFuture> late = new ArrayList<>();
+        other.onCancel(() -> late.add(other));
+        assertEquals(List.of(other), late);
+    }
+}
@@ -0,0 +1,44 @@
+package org.cade.rpc.context;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RpcContext 截止时间测试
+ */
+public class RpcContextTest {
+
+    @AfterEach
+    public void tearDown() {
+        RpcContext.clear();
+    }
+
+    @Test
+    public void testNoDeadline() {
+        assertNull(RpcContext.getDeadlineNanos());
+        assertEquals(Long.MAX_VALUE, RpcContext.remainingMS());
+        assertEquals(3000, RpcContext.timeoutMS(3000));
+    }
+
+    @Test
+    public void testTimeoutLimitedByRemaining() {
+        RpcContext.setDeadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(500));
+        long timeout = RpcContext.timeoutMS(3000);
+        assertTrue(timeout <= 500 && timeout > 400, "timeout:" + timeout);
+        assertEquals(100, RpcContext.timeoutMS(100));
+    }
+
+    @Test
+    public void testExpiredDeadline() {
+        RpcContext.setDeadline(System.nanoTime() - 1);
+        assertEquals(0, RpcContext.remainingMS());
+        assertEquals(0, RpcContext.timeoutMS(3000));
+
+        RpcContext.clear();
+        assertEquals(Long.MAX_VALUE, RpcContext.remainingMS());
+    }
+}
@@ -0,0 +1,129 @@
+package org.cade.rpc.handler;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.cade.rpc.codec.MsgDecoder;
+import org.cade.rpc.codec.MsgEncoder;
+import org.cade.rpc.compress.CompressionManager;
+import org.cade.rpc.limit.ByteBudget;
+import org.cade.rpc.message.Response;
+import org.cade.rpc.serialize.SerializerManager;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 字节预算与暂停读取测试
+ */
+public class ByteBudgetHandlerTest {
+
+    private static void setCodecs(Channel channel) {
+        channel.attr(MsgEncoder.SERIALIZE_KEY).set("json");
+        channel.attr(MsgEncoder.SERIALIZER_MANGER_ATTRIBUTE_KEY).set(new SerializerManager());
+        channel.attr(MsgEncoder.COMPRESSION_KEY).set("none");
+        channel.attr(MsgEncoder.COMPRESSION_MANAGER_ATTRIBUTE_KEY).set(new CompressionManager());
+    }
+
+    @Test
+    public void testPendingWritePausesRead() {
+        ByteBudget global = new ByteBudget(0);
+        AutoReadController controller = new AutoReadController();
+        EmbeddedChannel channel = new EmbeddedChannel(new ByteBudgetHandler(global, 100, controller));
+
+        channel.write(Unpooled.wrappedBuffer(new byte[150]));
+        assertEquals(150, global.getUsedBytes());
+        assertFalse(channel.config().isAutoRead());
+        assertEquals(1, controller.getPausedCount());
+
+        // 写出完成后归还并恢复读取
+        channel.flush();
+        assertEquals(0, global.getUsedBytes());
+        assertTrue(channel.config().isAutoRead());
+        assertEquals(0, controller.getPausedCount());
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testGlobalBudgetPausesAllChannels() {
+        ByteBudget global = new ByteBudget(100);
+        AutoReadController controller = new AutoReadController();
+        EmbeddedChannel a = new EmbeddedChannel(new ByteBudgetHandler(global, 0, controller));
+        EmbeddedChannel b = new EmbeddedChannel(new ByteBudgetHandler(global, 0, controller));
+
+        a.write(Unpooled.wrappedBuffer(new byte[150]));
+        b.pipeline().fireChannelReadComplete();
+        assertFalse(a.config().isAutoRead());
+        assertFalse(b.config().isAutoRead());
+
+        // a 的数据写出后全局预算回落，b 也恢复
+        a.flush();
+        assertTrue(a.config().isAutoRead());
+        assertTrue(b.config().isAutoRead());
+        assertEquals(0, controller.getPausedCount());
+        a.finishAndReleaseAll();
+        b.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testDecoderReservesFrameFromLengthPrefix() {
+        EmbeddedChannel encoder = new EmbeddedChannel();
+        setCodecs(encoder);
+        encoder.pipeline().addLast(new MsgEncoder());
+        encoder.writeOutbound(Response.ok("x".repeat(4096), 7));
+        ByteBuf bytes = encoder.readOutbound();
+        int frameBytes = bytes.readableBytes();
+
+        ByteBudget global = new ByteBudget(0);
+        AutoReadController controller = new AutoReadController();
+        EmbeddedChannel channel = new EmbeddedChannel();
+        setCodecs(channel);
+        channel.pipeline().addLast(new ByteBudgetHandler(global, 1024, controller), new MsgDecoder());
+
+        // 只收到一半，整帧的长度已经计入预算；超过了连接预算也不暂停读取，否则这一帧永远收不完
+        assertFalse(channel.writeInbound(bytes.readRetainedSlice(frameBytes / 2)));
+        assertEquals(frameBytes, global.getUsedBytes());
+        assertEquals(frameBytes, global.getReceivingBytes());
+        assertTrue(channel.config().isAutoRead());
+
+        assertTrue(channel.writeInbound(bytes));
+        Response response = channel.readInbound();
+        assertEquals(7, response.getRequestId());
+        assertEquals(0, global.getUsedBytes());
+        assertTrue(channel.config().isAutoRead());
+        channel.finishAndReleaseAll();
+    }
+
+    /**
+     * 等待写出的数据暂停了读取，写出后即使还有未收完的帧也恢复读取
+     */
+    @Test
+    public void testResumeWithPartialFrame() {
+        EmbeddedChannel encoder = new EmbeddedChannel();
+        setCodecs(encoder);
+        encoder.pipeline().addLast(new MsgEncoder());
+        encoder.writeOutbound(Response.ok("x".repeat(4096), 7));
+        ByteBuf bytes = encoder.readOutbound();
+        int frameBytes = bytes.readableBytes();
+
+        ByteBudget global = new ByteBudget(0);
+        AutoReadController controller = new AutoReadController();
+        EmbeddedChannel channel = new EmbeddedChannel();
+        setCodecs(channel);
+        channel.pipeline().addLast(new ByteBudgetHandler(global, 1024, controller), new MsgDecoder());
+
+        channel.write(Unpooled.wrappedBuffer(new byte[2048]));
+        assertFalse(channel.config().isAutoRead());
+        // 暂停前已经读到的半帧
+        assertFalse(channel.writeInbound(bytes.readRetainedSlice(frameBytes / 2)));
+
+        channel.flush();
+        assertEquals(frameBytes, global.getUsedBytes());
+        assertTrue(channel.config().isAutoRead());
+
+        assertTrue(channel.writeInbound(bytes));
+        assertEquals(0, global.getUsedBytes());
+        channel.finishAndReleaseAll();
+    }
+}
@@ -0,0 +1,52 @@
+package org.cade.rpc.handler;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 写缓冲超过高水位时暂停读取的测试
+ */
+public class WritabilityHandlerTest {
+
+    @Test
+    public void testPauseReadWhileUnwritable() {
+        AutoReadController controller = new AutoReadController();
+        EmbeddedChannel channel = new EmbeddedChannel(new WritabilityHandler(controller));
+        channel.config().setWriteBufferWaterMark(new WriteBufferWaterMark(50, 100));
+
+        channel.write(Unpooled.wrappedBuffer(new byte[150]));
+        assertFalse(channel.isWritable());
+        assertFalse(channel.config().isAutoRead());
+
+        channel.flush();
+        assertTrue(channel.isWritable());
+        assertTrue(channel.config().isAutoRead());
+        assertEquals(0, controller.getPausedCount());
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testResumeOnlyAfterAllReasonsCleared() {
+        AutoReadController controller = new AutoReadController();
+        EmbeddedChannel channel = new EmbeddedChannel(new WritabilityHandler(controller));
+        channel.config().setWriteBufferWaterMark(new WriteBufferWaterMark(50, 100));
+
+        channel.write(Unpooled.wrappedBuffer(new byte[150]));
+        assertFalse(channel.config().isAutoRead());
+        // 同时字节预算也耗尽了
+        controller.pause(channel, AutoReadController.BYTE_BUDGET);
+
+        channel.flush();
+        // 写缓冲已经清空，但字节预算的暂停没有解除
+        assertTrue(channel.isWritable());
+        assertFalse(channel.config().isAutoRead());
+
+        controller.resume(channel, AutoReadController.BYTE_BUDGET);
+        assertTrue(channel.config().isAutoRead());
+        channel.finishAndReleaseAll();
+    }
+}
@@ -0,0 +1,134 @@
+package org.cade.rpc.handler;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 写合并队列测试：多个业务线程并发写出 100 字节的消息，对比逐条 writeAndFlush 与写合并的 flush 次数和耗时。
+ * <p>
+ * 每次 flush 到达传输层至多对应一次 write/writev 系统调用，flush 次数即系统调用次数的上限。
+ * 吞吐与机器核数、负载有关，只打印不做断言
+ */
+public class WriteCoalescerTest {
+    private static final int PRODUCERS = 4;
+    private static final int MESSAGES_PER_PRODUCER = 25_000;
+    private static final int MESSAGE_BYTES = 100;
+
+    private static class Result {
+        long flushes;
+        long elapsedNanos;
+    }
+
+    private static Result run(String name, BiFunction<Channel, ByteBuf, ChannelFuture> writer) throws Exception {
+        NioEventLoopGroup group = new NioEventLoopGroup(2);
+        int total = PRODUCERS * MESSAGES_PER_PRODUCER;
+        long totalBytes = (long) total * MESSAGE_BYTES;
+        AtomicLong receivedBytes = new AtomicLong();
+        CountDownLatch received = new CountDownLatch(1);
+        AtomicLong flushes = new AtomicLong();
+        try {
+            Channel server = new ServerBootstrap().group(group).channel(NioServerSocketChannel.class)
+                    .childHandler(new ChannelInitializer<SocketChannel>() {
+                        @Override
+                        protected void initChannel(SocketChannel ch) {
+                            ch.pipeline().addLast(new ChannelInboundHandlerAdapter() {
+                                @Override
+                                public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                                    // TCP 会合并帧，按字节数判断是否全部收到
+                                    if (receivedBytes.addAndGet(((ByteBuf) msg).readableBytes()) == totalBytes) {
+                                        received.countDown();
+                                    }
+                                    ReferenceCountUtil.release(msg);
+                                }
+                            });
+                        }
+                    }).bind(new InetSocketAddress("127.0.0.1", 0)).sync().channel();
+            Channel client = new Bootstrap().group(group).channel(NioSocketChannel.class)
+                    .handler(new ChannelOutboundHandlerAdapter() {
+                        @Override
+                        public void flush(ChannelHandlerContext ctx) {
+                            flushes.incrementAndGet();
+                            ctx.flush();
+                        }
+                    }).connect(server.localAddress()).sync().channel();
+
+            long start = System.nanoTime();
+            List<Thread> producers = new ArrayList<>();
+            for (int i = 0; i < PRODUCERS; i++) {
+                Thread producer = new Thread(() -> {
+                    for (int j = 0; j < MESSAGES_PER_PRODUCER; j++) {
+                        writer.apply(client, Unpooled.wrappedBuffer(new byte[MESSAGE_BYTES]));
+                    }
+                });
+                producer.start();
+                producers.add(producer);
+            }
+            for (Thread producer : producers) {
+                producer.join();
+            }
+            assertTrue(received.await(30, TimeUnit.SECONDS), "received " + receivedBytes.get() + " bytes");
+            Result result = new Result();
+            result.elapsedNanos = System.nanoTime() - start;
+            result.flushes = flushes.get();
+            System.out.printf("%s: %d messages, %d flushes (%.3f per message), %d ms%n", name, total, result.flushes,
+                    (double) result.flushes / total, TimeUnit.NANOSECONDS.toMillis(result.elapsedNanos));
+            client.close().sync();
+            return result;
+        } finally {
+            group.shutdownGracefully(0, 1, TimeUnit.SECONDS).sync();
+        }
+    }
+
+    @Test
+    public void testCoalesceWritesFromManyThreads() throws Exception {
+        Result direct = run("writeAndFlush", Channel::writeAndFlush);
+        Result coalesced = run("coalesced", (channel, msg) -> WriteCoalescer.of(channel).write(msg));
+        // 逐条 writeAndFlush 每条消息一次 flush
+        assertEquals(PRODUCERS * MESSAGES_PER_PRODUCER, direct.flushes);
+        assertTrue(coalesced.flushes < direct.flushes, "flushes " + coalesced.flushes);
+    }
+
+    @Test
+    public void testWriteFailsWhenEventLoopShutdown() throws Exception {
+        NioEventLoopGroup group = new NioEventLoopGroup(1);
+        Channel server = new ServerBootstrap().group(group).channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInboundHandlerAdapter())
+                .bind(new InetSocketAddress("127.0.0.1", 0)).sync().channel();
+        Channel client = new Bootstrap().group(group).channel(NioSocketChannel.class)
+                .handler(new ChannelInboundHandlerAdapter()).connect(server.localAddress()).sync().channel();
+        group.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+
+        // 失败的写出释放消息；之后的写出同样立即失败，不会留在队列里
+        for (int i = 0; i < 2; i++) {
+            ByteBuf msg = Unpooled.wrappedBuffer(new byte[MESSAGE_BYTES]);
+            ChannelFuture future = WriteCoalescer.of(client).write(msg);
+            assertTrue(future.await(5, TimeUnit.SECONDS));
+            assertFalse(future.isSuccess());
+            assertEquals(0, msg.refCnt());
+        }
+    }
+}
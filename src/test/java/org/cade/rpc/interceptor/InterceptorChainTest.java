@@ -0,0 +1,80 @@
+package org.cade.rpc.interceptor;
+
+import org.cade.rpc.interceptor.impl.AfterInterceptor;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * InterceptorChain 异步执行测试
+ */
+public class InterceptorChainTest {
+
+    private static InvocationContext newContext() {
+        return InvocationContext.builder()
+                .serviceName("svc")
+                .methodName("m")
+                .arguments(new Object[0])
+                .build();
+    }
+
+    /**
+     * AFTER 拦截器在 future 完成后才执行，并且能看到真实结果
+     */
+    @Test
+    public void testAfterRunsWhenFutureCompletes() throws Exception {
+        AtomicReference<Object> seen = new AtomicReference<>();
+        InterceptorChain chain = new InterceptorChain(List.of(new AfterInterceptor() {
+            @Override
+            protected Object after(InvocationContext context) {
+                seen.set(context.getResult());
+                return null;
+            }
+        }));
+        CompletableFuture<Object> pending = new CompletableFuture<>();
+
+        CompletableFuture<Object> result = chain.executeAsync(newContext(), () -> pending);
+        assertFalse(result.isDone());
+        assertNull(seen.get());
+
+        pending.complete("done");
+        assertEquals("done", result.get());
+        assertEquals("done", seen.get());
+    }
+
+    @Test
+    public void testAfterSeesAsyncException() {
+        AtomicReference<Throwable> seen = new AtomicReference<>();
+        InterceptorChain chain = new InterceptorChain(List.of(new AfterInterceptor() {
+            @Override
+            protected Object after(InvocationContext context) {
+                seen.set(context.getException());
+                return null;
+            }
+        }));
+        IllegalStateException failure = new IllegalStateException("boom");
+
+        CompletableFuture<Object> result = chain.executeAsync(newContext(), () -> CompletableFuture.failedFuture(failure));
+        ExecutionException e = assertThrows(ExecutionException.class, result::get);
+        assertSame(failure, e.getCause());
+        assertSame(failure, seen.get());
+    }
+
+    @Test
+    public void testAfterCanShortCircuitAsyncException() throws Exception {
+        InterceptorChain chain = new InterceptorChain(List.of(new AfterInterceptor() {
+            @Override
+            protected Object after(InvocationContext context) {
+                return context.hasException() ? ShortCircuitResult.of("fallback") : null;
+            }
+        }));
+
+        CompletableFuture<Object> result = chain.executeAsync(newContext(), () -> CompletableFuture.failedFuture(new RuntimeException()));
+        assertEquals("fallback", result.get());
+    }
+}
@@ -0,0 +1,65 @@
+package org.cade.rpc.limit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 分层限流测试
+ */
+public class HierarchicalLimiterTest {
+
+    private static RateLimitConfig config(long rate, long burst) {
+        RateLimitConfig config = new RateLimitConfig();
+        config.setRate(rate);
+        config.setBurst(burst);
+        return config;
+    }
+
+    @Test
+    public void testLevelsAndRollback() {
+        Map<String, RateLimitConfig> rules = new HashMap<>();
+        rules.put(HierarchicalLimiter.GLOBAL, config(1, 10));
+        rules.put("svc", config(1, 5));
+        rules.put("svc#slow", config(1, 2));
+        HierarchicalLimiter limiter = new HierarchicalLimiter(rules);
+        RateLimiter caller = new RateLimiter(1, 100);
+
+        // 方法级只有 2 个
+        assertTrue(limiter.tryAcquire("svc", "slow", caller));
+        assertTrue(limiter.tryAcquire("svc", "slow", caller));
+        assertFalse(limiter.tryAcquire("svc", "slow", caller));
+        // 服务级剩 3 个，被方法级拒绝的请求没有消耗服务级的令牌
+        for (int i = 0; i < 3; i++) {
+            assertTrue(limiter.tryAcquire("svc", "fast", caller));
+        }
+        assertFalse(limiter.tryAcquire("svc", "fast", caller));
+        // 全局剩 5 个，被服务级拒绝时已经取到的令牌退回
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire("other", "m", caller));
+        }
+        assertFalse(limiter.tryAcquire("other", "m", caller));
+        // 全局拒绝时调用方这一级的令牌退回：一共只放行了 10 个
+        int callerLeft = 0;
+        while (caller.tryAcquire()) {
+            callerLeft++;
+        }
+        assertEquals(90, callerLeft);
+    }
+
+    @Test
+    public void testCancelReturnsTokens() {
+        Map<String, RateLimitConfig> rules = new HashMap<>();
+        rules.put("svc", config(1, 1));
+        HierarchicalLimiter limiter = new HierarchicalLimiter(rules);
+        assertTrue(limiter.tryAcquire("svc", "m", null));
+        assertFalse(limiter.tryAcquire("svc", "m", null));
+        limiter.cancel("svc", "m", null);
+        assertTrue(limiter.tryAcquire("svc", "m", null));
+        // 没有配置规则的服务不限流
+        assertTrue(new HierarchicalLimiter(new HashMap<>()).tryAcquire("svc", "m", null));
+    }
+}
@@ -0,0 +1,121 @@
+package org.cade.rpc.limit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 分段令牌桶测试
+ */
+public class StripedRateLimiterTest {
+    private static final int[] THREADS = {1, 8, 32, 64};
+
+    @Test
+    public void testRateAndBurstAreIndependent() {
+        // 每秒 1 个令牌，但允许 50 个突发
+        RateLimiter limiter = new RateLimiter(1, 50);
+        for (int i = 0; i < 50; i++) {
+            assertTrue(limiter.tryAcquire());
+        }
+        assertFalse(limiter.tryAcquire());
+        limiter.cancel();
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+    }
+
+    @Test
+    public void testBorrowFromOtherStripes() throws Exception {
+        StripedRateLimiter limiter = new StripedRateLimiter(1, 64, 4);
+        // 当前线程预留了一批令牌
+        assertTrue(limiter.tryAcquire());
+        // 其他线程在中心桶取空之后仍然能借到这些令牌，总数恰好是突发量
+        LongAdder acquired = new LongAdder();
+        Thread other = new Thread(() -> {
+            while (limiter.tryAcquire()) {
+                acquired.increment();
+            }
+        });
+        other.start();
+        other.join();
+        assertEquals(63, acquired.sum());
+    }
+
+    /**
+     * 1/8/32/64 个线程同时抢令牌：分段令牌桶放行的总数不超过 burst + rate × 时间，也不会因为令牌滞留而明显少放行。
+     * 同时打印与 {@link RateLimiter} 的吞吐对比，结果取决于机器核数，不做断言
+     */
+    @Test
+    public void testContention() throws Exception {
+        long rate = 100_000;
+        long burst = 1_000;
+        for (int threads : THREADS) {
+            Result striped = run(threads, () -> new StripedRateLimiter(rate, burst));
+            Result single = run(threads, () -> new RateLimiter(rate, burst));
+            System.out.printf("threads %2d: striped %,d calls/ms, single %,d calls/ms%n",
+                    threads, striped.callsPerMS(), single.callsPerMS());
+
+            long upper = burst + rate * striped.elapsedNanos / TimeUnit.SECONDS.toNanos(1);
+            assertTrue(striped.acquired <= upper, "acquired " + striped.acquired + " > " + upper);
+            // 只计算跑满之后的时间，下界放宽一半
+            long lower = rate * TimeUnit.MILLISECONDS.toNanos(100) / TimeUnit.SECONDS.toNanos(1) / 2;
+            assertTrue(striped.acquired >= lower, "acquired " + striped.acquired + " < " + lower);
+        }
+    }
+
+    private static class Result {
+        private long acquired;
+        private long calls;
+        private long elapsedNanos;
+
+        long callsPerMS() {
+            return calls * TimeUnit.MILLISECONDS.toNanos(1) / elapsedNanos;
+        }
+    }
+
+    private static Result run(int threads, Supplier<Limiter> factory) throws InterruptedException {
+        long start = System.nanoTime();
+        Limiter limiter = factory.get();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(100);
+        LongAdder acquired = new LongAdder();
+        LongAdder calls = new LongAdder();
+        CountDownLatch ready = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    ready.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long ok = 0;
+                long n = 0;
+                while (System.nanoTime() < deadline) {
+                    if (limiter.tryAcquire()) {
+                        ok++;
+                    }
+                    n++;
+                }
+                acquired.add(ok);
+                calls.add(n);
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        ready.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        Result result = new Result();
+        result.elapsedNanos = System.nanoTime() - start;
+        result.acquired = acquired.sum();
+        result.calls = calls.sum();
+        return result;
+    }
+}
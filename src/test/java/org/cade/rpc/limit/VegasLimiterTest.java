@@ -0,0 +1,135 @@
+package org.cade.rpc.limit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 自适应并发限流器测试
+ */
+public class VegasLimiterTest {
+
+    /**
+     * 固定容量的服务：capacity 个请求同时处理，每个耗时约 serviceMicros，多出来的排队。
+     * 调用方请求无限多，发出多少只取决于限流器。离散事件模拟，时间单位为微秒
+     */
+    private static class Simulation {
+        private final VegasLimiter limiter;
+        private int capacity;
+        private final long serviceMicros;
+        private long now;
+        private long seq;
+        // 排队中的请求的发出时间
+        private final ArrayDeque<Long> waiting = new ArrayDeque<>();
+        // 处理中的请求：{完成时间, 发出时间}
+        private final PriorityQueue<long[]> busy = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+
+        private long completed;
+        private long latencySumMicros;
+        // 上限落在 [capacity, 1.5 * capacity] 之内的样本数
+        private long inBand;
+        private int maxLimit;
+
+        Simulation(VegasLimiter limiter, int capacity, long serviceMicros) {
+            this.limiter = limiter;
+            this.capacity = capacity;
+            this.serviceMicros = serviceMicros;
+        }
+
+        void run(long durationMicros) {
+            long end = now + durationMicros;
+            resetStats();
+            while (now < end) {
+                while (limiter.tryAcquire()) {
+                    waiting.add(now);
+                }
+                while (busy.size() < capacity && !waiting.isEmpty()) {
+                    // 处理时间有 ±10% 的波动
+                    long service = serviceMicros + (seq++ % 21 - 10) * serviceMicros / 100;
+                    busy.add(new long[]{now + service, waiting.poll()});
+                }
+                long[] done = busy.poll();
+                now = done[0];
+                long latency = now - done[1];
+                limiter.release(TimeUnit.MICROSECONDS.toNanos(latency), false);
+                completed++;
+                latencySumMicros += latency;
+                if (limiter.getLimit() >= capacity && limiter.getLimit() <= capacity * 3 / 2) {
+                    inBand++;
+                }
+                maxLimit = Math.max(maxLimit, limiter.getLimit());
+            }
+        }
+
+        void resetStats() {
+            completed = 0;
+            latencySumMicros = 0;
+            inBand = 0;
+            maxLimit = 0;
+        }
+
+        long avgLatencyMicros() {
+            return latencySumMicros / completed;
+        }
+
+        double inBandRatio() {
+            return (double) inBand / completed;
+        }
+    }
+
+    @Test
+    public void testConvergesOnFixedCapacity() {
+        VegasLimiter limiter = new VegasLimiter(20, 1, 1000);
+        Simulation simulation = new Simulation(limiter, 100, 10_000);
+        // 预热 10 秒
+        simulation.run(TimeUnit.SECONDS.toMicros(10));
+        simulation.run(TimeUnit.SECONDS.toMicros(60));
+
+        System.out.printf("limit in band %.3f, max %d, avg latency %dus, throughput %d/s%n",
+                simulation.inBandRatio(), simulation.maxLimit, simulation.avgLatencyMicros(), simulation.completed / 60);
+        // 上限稳定在容量附近：处理能力基本用满，排队不超过容量的一半。
+        // 每隔几十轮减半一轮重新测量基线，这一轮不在区间内
+        assertTrue(simulation.inBandRatio() >= 0.9, "in band " + simulation.inBandRatio());
+        assertTrue(simulation.maxLimit <= 150, "max limit " + simulation.maxLimit);
+        assertTrue(simulation.avgLatencyMicros() < 12_500, "avg latency " + simulation.avgLatencyMicros());
+        assertTrue(simulation.completed / 60 >= 9_000, "throughput " + simulation.completed / 60);
+    }
+
+    @Test
+    public void testFollowsCapacityDrop() {
+        VegasLimiter limiter = new VegasLimiter(20, 1, 1000);
+        Simulation simulation = new Simulation(limiter, 100, 10_000);
+        simulation.run(TimeUnit.SECONDS.toMicros(10));
+        // 一半的处理能力失效
+        simulation.capacity = 50;
+        simulation.run(TimeUnit.SECONDS.toMicros(10));
+        simulation.run(TimeUnit.SECONDS.toMicros(30));
+
+        System.out.printf("after drop: limit in band %.3f, max %d, avg latency %dus, throughput %d/s%n",
+                simulation.inBandRatio(), simulation.maxLimit, simulation.avgLatencyMicros(), simulation.completed / 30);
+        assertTrue(simulation.inBandRatio() >= 0.9, "in band " + simulation.inBandRatio());
+        assertTrue(simulation.maxLimit <= 75, "max limit " + simulation.maxLimit);
+        assertTrue(simulation.avgLatencyMicros() < 12_500, "avg latency " + simulation.avgLatencyMicros());
+        assertTrue(simulation.completed / 30 >= 4_500, "throughput " + simulation.completed / 30);
+    }
+
+    @Test
+    public void testDropDecreasesLimit() {
+        VegasLimiter limiter = new VegasLimiter(100, 10, 1000);
+        // 一轮 100 个请求，有超时就乘以 0.9
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limiter.tryAcquire());
+            limiter.release(TimeUnit.MILLISECONDS.toNanos(100), i == 0);
+        }
+        assertEquals(90, limiter.getLimit());
+        // 取消等不参与调整的归还
+        assertTrue(limiter.tryAcquire());
+        limiter.release();
+        assertEquals(90, limiter.getLimit());
+        assertEquals(0, limiter.getInflight());
+    }
+}
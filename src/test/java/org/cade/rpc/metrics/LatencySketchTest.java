@@ -0,0 +1,39 @@
+package org.cade.rpc.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * LatencySketch 分位数测试
+ */
+public class LatencySketchTest {
+
+    @Test
+    public void testBucketBounds() {
+        for (long v : new long[]{1, 7, 8, 9, 15, 16, 100, 1000, 123_456, 10_000_000}) {
+            int index = LatencySketch.index(v);
+            assertTrue(LatencySketch.upperBound(index) >= v, "value:" + v);
+            assertTrue(LatencySketch.upperBound(index) <= v * 1.125 + 1, "value:" + v);
+            if (index > 0) {
+                assertTrue(LatencySketch.upperBound(index - 1) < v, "value:" + v);
+            }
+        }
+    }
+
+    @Test
+    public void testQuantile() {
+        LatencySketch sketch = new LatencySketch(60_000);
+        assertEquals(-1, sketch.quantileMicros(0.95, 1));
+        for (int i = 1; i <= 1000; i++) {
+            sketch.record(TimeUnit.MICROSECONDS.toNanos(i * 10L));
+        }
+        long p95 = sketch.quantileMicros(0.95, 100);
+        assertTrue(p95 >= 9500 && p95 <= 9500 * 1.125, "p95:" + p95);
+        long p50 = sketch.quantileMicros(0.5, 100);
+        assertTrue(p50 >= 5000 && p50 <= 5000 * 1.125, "p50:" + p50);
+        assertEquals(-1, sketch.quantileMicros(0.95, 2000));
+    }
+}
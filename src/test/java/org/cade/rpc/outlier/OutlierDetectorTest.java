@@ -0,0 +1,129 @@
+package org.cade.rpc.outlier;
+
+import org.cade.rpc.comsumer.ConsumerProperties;
+import org.cade.rpc.comsumer.Endpoint;
+import org.cade.rpc.register.Metadata;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 异常检测测试
+ */
+public class OutlierDetectorTest {
+
+    private static OutlierDetector detector(int maxEjectionPercent) {
+        ConsumerProperties properties = new ConsumerProperties();
+        properties.setOutlierConsecutiveErrors(5);
+        properties.setOutlierBaseEjectionMS(1_000);
+        properties.setOutlierMaxEjectionMS(10_000);
+        properties.setOutlierMaxEjectionPercent(maxEjectionPercent);
+        properties.setOutlierLatencyFactor(3.0);
+        return new OutlierDetector(properties);
+    }
+
+    private static Metadata metadata(String service, int port) {
+        Metadata metadata = new Metadata();
+        metadata.setHost("127.0.0.1");
+        metadata.setPort(port);
+        metadata.setServiceName(service);
+        return metadata;
+    }
+
+    private static List<Endpoint> endpoints(OutlierDetector detector, String service, int count) {
+        List<Endpoint> endpoints = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Metadata metadata = metadata(service, 1000 + i);
+            endpoints.add(new Endpoint(metadata, null, null, null, null, detector.host(metadata)));
+        }
+        return endpoints;
+    }
+
+    @Test
+    public void testConsecutiveErrorsEjectHostForAllServices() {
+        OutlierDetector detector = detector(50);
+        List<Endpoint> a = endpoints(detector, "a", 4);
+        List<Endpoint> b = endpoints(detector, "b", 4);
+        HostHealth health = a.get(0).getHealth();
+        assertSame(health, b.get(0).getHealth());
+
+        long now = 1_000_000;
+        for (int i = 0; i < 4; i++) {
+            health.onError(now);
+        }
+        // 中间一次成功清零
+        health.onSuccess();
+        for (int i = 0; i < 4; i++) {
+            health.onError(now);
+        }
+        assertFalse(health.isEjected(now));
+        health.onError(now);
+        assertTrue(health.isEjected(now));
+
+        // 服务 b 没有失败过，同样排除该地址
+        assertEquals(3, detector.filter(b, now).size());
+        assertFalse(detector.filter(b, now).contains(b.get(0)));
+        assertFalse(health.isEjected(now + 1_000));
+    }
+
+    @Test
+    public void testEjectionBacksOffAndDecays() {
+        OutlierDetector detector = detector(50);
+        HostHealth health = detector.host(metadata("a", 1));
+        long now = 1_000_000;
+        // 1s -> 2s -> 4s
+        assertTrue(health.eject(now, "test"));
+        assertFalse(health.eject(now + 500, "test"));
+        now += 1_000;
+        assertTrue(health.eject(now, "test"));
+        assertTrue(health.isEjected(now + 1_999));
+        now += 2_000;
+        assertTrue(health.eject(now, "test"));
+        assertTrue(health.isEjected(now + 3_999));
+        assertFalse(health.isEjected(now + 4_000));
+
+        // 健康 3 个周期后回落到第一级，下一次驱逐 1s
+        now += 4_000 + 3_000;
+        assertTrue(health.eject(now, "test"));
+        assertFalse(health.isEjected(now + 1_000));
+    }
+
+    @Test
+    public void testMaxEjectionPercent() {
+        OutlierDetector detector = detector(10);
+        List<Endpoint> endpoints = endpoints(detector, "a", 5);
+        long now = 1_000_000;
+        for (Endpoint endpoint : endpoints) {
+            endpoint.getHealth().eject(now, "test");
+        }
+        // 5 * 10% 不足一个时也允许排除一个
+        assertEquals(4, detector.filter(endpoints, now).size());
+        // 总会留下一个端点
+        List<Endpoint> single = endpoints.subList(0, 1);
+        assertSame(single, detector.filter(single, now));
+        // 关闭异常检测
+        assertSame(endpoints, detector(0).filter(endpoints, now));
+    }
+
+    @Test
+    public void testLatencyOutlier() {
+        OutlierDetector detector = detector(50);
+        List<Endpoint> endpoints = endpoints(detector, "a", 4);
+        for (int i = 0; i < 100; i++) {
+            endpoints.get(0).getLatency().record(TimeUnit.MILLISECONDS.toNanos(5));
+            endpoints.get(1).getLatency().record(TimeUnit.MILLISECONDS.toNanos(6));
+            endpoints.get(2).getLatency().record(TimeUnit.MILLISECONDS.toNanos(5));
+            endpoints.get(3).getLatency().record(TimeUnit.MILLISECONDS.toNanos(50));
+        }
+        long now = System.currentTimeMillis();
+        detector.detectLatencyOutliers(endpoints, now);
+        for (int i = 0; i < 3; i++) {
+            assertFalse(endpoints.get(i).getHealth().isEjected(now));
+        }
+        assertTrue(endpoints.get(3).getHealth().isEjected(now));
+    }
+}
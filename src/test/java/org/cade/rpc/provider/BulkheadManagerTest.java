@@ -0,0 +1,120 @@
+package org.cade.rpc.provider;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 舱壁路由与拒绝策略测试
+ */
+public class BulkheadManagerTest {
+
+    @Bulkhead(coreSize = 1, queueSize = 1)
+    public interface ReportService {
+        @Bulkhead(coreSize = 1, queueSize = 1, group = "slow")
+        String export(String month);
+
+        @Bulkhead(coreSize = 1, queueSize = 1, group = "slow")
+        String archive(String month);
+
+        String query(String id);
+    }
+
+    public interface PlainService {
+        String echo(String msg);
+    }
+
+    private final List<Runnable> rejected = new ArrayList<>();
+    private BulkheadManager manager;
+
+    @AfterEach
+    public void tearDown() {
+        if (manager != null) {
+            manager.shutdown();
+        }
+    }
+
+    /**
+     * 方法级优先于服务级，同一 group 共享线程池，未配置的服务走默认线程池
+     */
+    @Test
+    public void testRouting() {
+        manager = new BulkheadManager(new ProviderProperties(), (task, executor) -> rejected.add(task));
+        manager.register(ReportService.class);
+        manager.register(PlainService.class);
+
+        String service = ReportService.class.getName();
+        Executor export = manager.select(service, "export");
+        Executor query = manager.select(service, "query");
+        assertNotNull(export);
+        assertNotNull(query);
+        assertNotSame(export, query);
+        assertSame(export, manager.select(service, "archive"));
+        assertSame(query, manager.select(service, "unknown"));
+        assertNull(manager.select(PlainService.class.getName(), "echo"));
+        assertEquals(2, manager.metrics().size());
+    }
+
+    /**
+     * 配置优先于注解
+     */
+    @Test
+    public void testPropertiesOverrideAnnotation() {
+        BulkheadConfig config = new BulkheadConfig();
+        config.setCoreSize(3);
+        ProviderProperties properties = new ProviderProperties();
+        properties.getBulkheads().put(ReportService.class.getName() + "#export", config);
+        manager = new BulkheadManager(properties, (task, executor) -> rejected.add(task));
+        manager.register(ReportService.class);
+
+        BulkheadExecutor export = (BulkheadExecutor) manager.select(ReportService.class.getName(), "export");
+        assertEquals(3, export.getCorePoolSize());
+        assertEquals(ReportService.class.getName() + "#export", export.getMetrics().getName());
+    }
+
+    /**
+     * fast_fail 拒绝新任务，discard_oldest 拒绝队列中最早的任务
+     */
+    @Test
+    public void testRejectPolicy() throws Exception {
+        for (String policy : List.of(BulkheadConfig.FAST_FAIL, BulkheadConfig.DISCARD_OLDEST)) {
+            rejected.clear();
+            BulkheadConfig config = new BulkheadConfig();
+            config.setCoreSize(1);
+            config.setQueueSize(1);
+            config.setRejectPolicy(policy);
+            BulkheadExecutor executor = new BulkheadExecutor(policy, config, null, (task, e) -> rejected.add(task));
+            CountDownLatch running = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            executor.execute(() -> {
+                running.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {
+                }
+            });
+            assertTrue(running.await(1, TimeUnit.SECONDS));
+            Runnable queued = () -> {
+            };
+            Runnable overflow = () -> {
+            };
+            executor.execute(queued);
+            executor.execute(overflow);
+
+            assertEquals(List.of(BulkheadConfig.FAST_FAIL.equals(policy) ? overflow : queued), rejected);
+            assertEquals(1, executor.getMetrics().getRejected());
+            assertEquals(1, executor.getMetrics().getActiveThreads());
+            release.countDown();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+            assertEquals(0, executor.getMetrics().getActiveThreads());
+        }
+    }
+}
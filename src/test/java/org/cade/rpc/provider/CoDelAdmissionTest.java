@@ -0,0 +1,118 @@
+package org.cade.rpc.provider;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * CoDel 过载判定测试
+ */
+public class CoDelAdmissionTest {
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * 突发：窗口内有一个任务几乎没有排队，不判定过载
+     */
+    @Test
+    public void testBurstIsNotOverload() {
+        CoDelAdmission admission = new CoDelAdmission(5, 100);
+        long now = System.nanoTime();
+        admission.onDequeue(50 * MS, 0, now);
+        admission.onDequeue(1 * MS, 0, now + 10 * MS);
+        assertFalse(admission.onDequeue(50 * MS, 0, now + 200 * MS));
+        assertFalse(admission.isOverloaded());
+    }
+
+    /**
+     * 整个窗口最小排队时延都超过目标：进入过载，排队超过 2 * target 的任务被丢弃，排队恢复后退出过载
+     */
+    @Test
+    public void testStandingQueueIsOverload() {
+        CoDelAdmission admission = new CoDelAdmission(5, 100);
+        long now = System.nanoTime();
+        admission.onDequeue(20 * MS, 0, now);
+        admission.onDequeue(30 * MS, 0, now + 50 * MS);
+
+        assertTrue(admission.onDequeue(20 * MS, 0, now + 200 * MS));
+        assertTrue(admission.isOverloaded());
+        assertFalse(admission.onDequeue(8 * MS, 0, now + 210 * MS));
+
+        admission.onDequeue(1 * MS, 0, now + 250 * MS);
+        assertFalse(admission.onDequeue(20 * MS, 0, now + 400 * MS));
+        assertFalse(admission.isOverloaded());
+    }
+
+    /**
+     * 队列持续积压时 LIFO 取到的新任务几乎不排队，但队头旧任务一直在等，过载状态跨多个窗口保持，直到队列排空
+     */
+    @Test
+    public void testSaturatedQueueStaysOverloaded() throws Exception {
+        CoDelAdmission admission = new CoDelAdmission(5, 100);
+        CoDelQueue queue = new CoDelQueue(64, admission);
+        long now = System.nanoTime();
+        queue.offer(task(now));
+        admission.onDequeue(20 * MS, queue.oldestAgeNanos(now), now);
+        admission.onDequeue(20 * MS, queue.oldestAgeNanos(now + 100 * MS), now + 100 * MS);
+        assertTrue(admission.isOverloaded());
+
+        for (int i = 2; i < 8; i++) {
+            long t = now + i * 100 * MS;
+            queue.offer(task(t - MS));
+            TimedTask fresh = (TimedTask) queue.take();
+            admission.onDequeue(t - fresh.getCreateNanos(), queue.oldestAgeNanos(t), t);
+            assertTrue(admission.isOverloaded(), "interval " + i);
+        }
+
+        // 排空积压后下一个窗口退出过载
+        long t = now + 800 * MS;
+        TimedTask oldest = (TimedTask) queue.take();
+        admission.onDequeue(t - oldest.getCreateNanos(), queue.oldestAgeNanos(t), t);
+        assertTrue(queue.isEmpty());
+        admission.onDequeue(1 * MS, 0, t + 10 * MS);
+        admission.onDequeue(1 * MS, 0, t + 100 * MS);
+        assertFalse(admission.isOverloaded());
+    }
+
+    private static TimedTask task(long createNanos) {
+        return new TimedTask() {
+            @Override
+            public long getCreateNanos() {
+                return createNanos;
+            }
+
+            @Override
+            public void shed() {
+            }
+
+            @Override
+            public void run() {
+            }
+        };
+    }
+
+    /**
+     * 过载时工作线程从队尾取任务
+     */
+    @Test
+    public void testLifoUnderOverload() throws Exception {
+        CoDelAdmission admission = new CoDelAdmission(5, 100);
+        CoDelQueue queue = new CoDelQueue(8, admission);
+        Runnable first = () -> {
+        };
+        Runnable second = () -> {
+        };
+        queue.offer(first);
+        queue.offer(second);
+        assertSame(first, queue.poll(0, TimeUnit.MILLISECONDS));
+        queue.offer(first);
+
+        long now = System.nanoTime();
+        admission.onDequeue(20 * MS, 0, now);
+        admission.onDequeue(20 * MS, 0, now + 200 * MS);
+        assertTrue(admission.isOverloaded());
+        assertSame(first, queue.take());
+        assertSame(second, queue.poll());
+    }
+}
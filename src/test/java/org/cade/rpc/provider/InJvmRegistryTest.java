@@ -0,0 +1,138 @@
+package org.cade.rpc.provider;
+
+import org.cade.rpc.comsumer.ConsumerProperties;
+import org.cade.rpc.comsumer.ConsumerProxyFactory;
+import org.cade.rpc.fallback.RPCFallback;
+import org.cade.rpc.register.InMemoryServiceRegister;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 进程内导出与调用测试
+ */
+public class InJvmRegistryTest {
+
+    public interface Appender {
+        List<String> append(List<String> list, String item);
+    }
+
+    public static class AppenderImpl implements Appender {
+        @Override
+        public List<String> append(List<String> list, String item) {
+            list.add(item);
+            return list;
+        }
+    }
+
+    @RPCFallback(implement = GreeterMock.class)
+    public interface Greeter {
+        String greet(String name);
+    }
+
+    public static class FailingGreeter implements Greeter {
+        @Override
+        public String greet(String name) {
+            throw new IllegalStateException("greet fail");
+        }
+    }
+
+    public static class GreeterMock implements Greeter {
+        @Override
+        public String greet(String name) {
+            return "mock " + name;
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static ProviderServer startProvider(InMemoryServiceRegister register) throws Exception {
+        ProviderProperties properties = new ProviderProperties();
+        properties.setHost("127.0.0.1");
+        properties.setPort(freePort());
+        ProviderServer server = new ProviderServer(properties, register);
+        server.register(Appender.class, new AppenderImpl());
+        server.start();
+        return server;
+    }
+
+    private static Appender consumer(InMemoryServiceRegister register, boolean deepCopy) {
+        ConsumerProperties properties = new ConsumerProperties();
+        properties.setInjvmDeepCopy(deepCopy);
+        return new ConsumerProxyFactory(properties, register).getConsumerProxy(Appender.class);
+    }
+
+    @Test
+    public void testSecondExportKeepsFirst() throws Exception {
+        InMemoryServiceRegister register = new InMemoryServiceRegister();
+        ProviderServer first = startProvider(register);
+        ProviderServer second = null;
+        try {
+            ProviderRegistry.Invocation<?> exported = InJvmRegistry.find(Appender.class.getName());
+            assertNotNull(exported);
+
+            // 同一进程中重复导出不影响启动，两个 provider 都注册到注册中心
+            second = startProvider(register);
+            assertSame(exported, InJvmRegistry.find(Appender.class.getName()));
+            assertEquals(2, register.fetchServicelist(Appender.class.getName()).size());
+
+            // 后导出的 provider 停止时不会移除先导出的实现
+            second.stop();
+            second = null;
+            assertSame(exported, InJvmRegistry.find(Appender.class.getName()));
+        } finally {
+            if (second != null) {
+                second.stop();
+            }
+            first.stop();
+        }
+        assertNull(InJvmRegistry.find(Appender.class.getName()));
+    }
+
+    @Test
+    public void testInJvmCallDeepCopy() throws Exception {
+        InMemoryServiceRegister register = new InMemoryServiceRegister();
+        ProviderServer server = startProvider(register);
+        try {
+            List<String> list = new ArrayList<>(List.of("a"));
+            List<String> copied = consumer(register, true).append(list, "b");
+            assertEquals(List.of("a", "b"), copied);
+            // 参数和返回值都是拷贝，调用方的对象不受影响
+            assertEquals(List.of("a"), list);
+            assertNotSame(list, copied);
+
+            List<String> shared = consumer(register, false).append(list, "c");
+            assertSame(list, shared);
+            assertEquals(List.of("a", "c"), list);
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testInJvmFailureFallsBack() throws Exception {
+        InMemoryServiceRegister register = new InMemoryServiceRegister();
+        ProviderProperties properties = new ProviderProperties();
+        properties.setHost("127.0.0.1");
+        properties.setPort(freePort());
+        ProviderServer server = new ProviderServer(properties, register);
+        server.register(Greeter.class, new FailingGreeter());
+        server.start();
+        try {
+            Greeter greeter = new ConsumerProxyFactory(new ConsumerProperties(), register).getConsumerProxy(Greeter.class);
+            // 本地实现抛出异常时和远程调用一样走降级
+            assertEquals("mock cade", greeter.greet("cade"));
+        } finally {
+            server.stop();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package org.cade.rpc.provider;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 非阻塞方法识别与慢执行降级测试
+ */
+public class NonBlockingMethodsTest {
+
+    public interface Calculator {
+        @NonBlocking
+        int add(int a, int b);
+
+        int export(String month);
+    }
+
+    @Test
+    public void testSelectAnnotatedMethodOnly() {
+        NonBlockingMethods methods = new NonBlockingMethods(1000, 3);
+        methods.register(Calculator.class);
+
+        assertNotNull(methods.select(Calculator.class.getName(), "add"));
+        assertNull(methods.select(Calculator.class.getName(), "export"));
+        assertNull(methods.select("unknown", "add"));
+    }
+
+    @Test
+    public void testDemoteAfterRepeatedSlowExecution() {
+        NonBlockingMethods methods = new NonBlockingMethods(1000, 2);
+        methods.register(Calculator.class);
+        NonBlockingMethods.InlineMethod add = methods.select(Calculator.class.getName(), "add");
+
+        methods.record(add, TimeUnit.MICROSECONDS.toNanos(10));
+        methods.record(add, TimeUnit.MILLISECONDS.toNanos(5));
+        assertSame(add, methods.select(Calculator.class.getName(), "add"));
+
+        methods.record(add, TimeUnit.MILLISECONDS.toNanos(5));
+        assertTrue(add.isDemoted());
+        assertNull(methods.select(Calculator.class.getName(), "add"));
+    }
+}
@@ -0,0 +1,72 @@
+package org.cade.rpc.register;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 服务列表缓存测试
+ */
+public class DefaultServiceRegisterTest {
+
+    private static Metadata metadata(int port) {
+        Metadata metadata = new Metadata();
+        metadata.setServiceName("svc");
+        metadata.setHost("127.0.0.1");
+        metadata.setPort(port);
+        return metadata;
+    }
+
+    @Test
+    public void testSameInstanceWhileUnchanged() throws Exception {
+        InMemoryServiceRegister delegate = new InMemoryServiceRegister();
+        delegate.register(metadata(1));
+        DefaultServiceRegister register = new DefaultServiceRegister(delegate, 0);
+
+        List<Metadata> first = register.fetchServicelist("svc");
+        // 每次都重新查询，内容相同时返回同一个实例
+        assertSame(first, register.fetchServicelist("svc"));
+
+        delegate.register(metadata(2));
+        List<Metadata> changed = register.fetchServicelist("svc");
+        assertNotSame(first, changed);
+        assertEquals(2, changed.size());
+    }
+
+    @Test
+    public void testCacheWithinRefreshInterval() throws Exception {
+        AtomicInteger queries = new AtomicInteger();
+        ServiceRegister delegate = new InMemoryServiceRegister() {
+            @Override
+            public List<Metadata> fetchServicelist(String serviceName) {
+                queries.incrementAndGet();
+                return List.of(metadata(1));
+            }
+        };
+        DefaultServiceRegister register = new DefaultServiceRegister(delegate, 60_000);
+        List<Metadata> first = register.fetchServicelist("svc");
+        assertSame(first, register.fetchServicelist("svc"));
+        assertEquals(1, queries.get());
+    }
+
+    @Test
+    public void testKeepCacheWhenRegistryFails() throws Exception {
+        AtomicInteger queries = new AtomicInteger();
+        ServiceRegister delegate = new InMemoryServiceRegister() {
+            @Override
+            public List<Metadata> fetchServicelist(String serviceName) {
+                if (queries.incrementAndGet() > 1) {
+                    throw new IllegalStateException("registry down");
+                }
+                return List.of(metadata(1));
+            }
+        };
+        DefaultServiceRegister register = new DefaultServiceRegister(delegate, 0);
+        List<Metadata> first = register.fetchServicelist("svc");
+        assertSame(first, register.fetchServicelist("svc"));
+        assertEquals(2, queries.get());
+    }
+}
@@ -0,0 +1,36 @@
+package org.cade.rpc.register;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 测试用的进程内注册中心，列表变化时替换为新的实例
+ */
+public class InMemoryServiceRegister implements ServiceRegister {
+    private final Map<String, List<Metadata>> services = new ConcurrentHashMap<>();
+
+    @Override
+    public void register(Metadata metadata) {
+        services.merge(metadata.getServiceName(), List.of(metadata), (old, cur) -> {
+            List<Metadata> list = new ArrayList<>(old);
+            list.addAll(cur);
+            return List.copyOf(list);
+        });
+    }
+
+    @Override
+    public void unregister(Metadata metadata) {
+        services.computeIfPresent(metadata.getServiceName(), (k, old) -> {
+            List<Metadata> list = new ArrayList<>(old);
+            list.remove(metadata);
+            return List.copyOf(list);
+        });
+    }
+
+    @Override
+    public List<Metadata> fetchServicelist(String serviceName) {
+        return services.getOrDefault(serviceName, List.of());
+    }
+}
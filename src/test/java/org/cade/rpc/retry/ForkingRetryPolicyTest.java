@@ -0,0 +1,75 @@
+package org.cade.rpc.retry;
+
+import org.cade.rpc.comsumer.Endpoint;
+import org.cade.rpc.message.Response;
+import org.cade.rpc.register.Metadata;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 并行调用测试
+ */
+public class ForkingRetryPolicyTest {
+
+    private static Endpoint provider(int port) {
+        Metadata metadata = new Metadata();
+        metadata.setHost("127.0.0.1");
+        metadata.setPort(port);
+        metadata.setServiceName("svc");
+        return new Endpoint(metadata, null, null, null, null, null);
+    }
+
+    private final Endpoint failed = provider(1);
+    private final Endpoint first = provider(2);
+    private final Endpoint second = provider(3);
+
+    private RetryContext newContext(Map<Endpoint, CompletableFuture<Response>> attempts) {
+        RetryContext context = new RetryContext();
+        context.setMethodKey("svc#m");
+        context.setFailService(failed);
+        context.setAllService(List.of(failed, first, second));
+        context.setRequestTimeout(1000);
+        context.setFunctionTimeoutMS(1000);
+        context.setRetry(attempts::get);
+        return context;
+    }
+
+    /**
+     * 一个分支先失败不会结束调用，也不会取消仍在途的分支
+     */
+    @Test
+    public void testFirstFailureDoesNotWin() throws Exception {
+        CompletableFuture<Response> fail = new CompletableFuture<>();
+        CompletableFuture<Response> slow = new CompletableFuture<>();
+        CompletableFuture<Response> result = new ForkingRetryPolicy().retry(newContext(Map.of(first, fail, second, slow)));
+
+        fail.complete(Response.error("service busy", 2));
+        assertFalse(result.isDone());
+        assertFalse(slow.isCancelled());
+
+        slow.complete(Response.ok("ok", 3));
+        assertEquals("ok", result.get(1, TimeUnit.SECONDS).getResult());
+    }
+
+    /**
+     * 所有分支都失败时以最后一个结果结束
+     */
+    @Test
+    public void testAllFail() throws Exception {
+        CompletableFuture<Response> busy = new CompletableFuture<>();
+        CompletableFuture<Response> broken = new CompletableFuture<>();
+        CompletableFuture<Response> result = new ForkingRetryPolicy().retry(newContext(Map.of(first, busy, second, broken)));
+
+        busy.complete(Response.error("service busy", 2));
+        broken.completeExceptionally(new IllegalStateException("broken"));
+        assertTrue(result.isCompletedExceptionally());
+        Exception e = assertThrows(Exception.class, () -> result.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+    }
+}
@@ -0,0 +1,152 @@
+package org.cade.rpc.retry;
+
+import org.cade.rpc.comsumer.Endpoint;
+import org.cade.rpc.message.Response;
+import org.cade.rpc.register.Metadata;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 对冲请求测试
+ */
+public class HedgedRetryPolicyTest {
+
+    private static Endpoint provider(int port) {
+        Metadata metadata = new Metadata();
+        metadata.setHost("127.0.0.1");
+        metadata.setPort(port);
+        metadata.setServiceName("svc");
+        return new Endpoint(metadata, null, null, null, null, null);
+    }
+
+    private final Endpoint primary = provider(1);
+    private final Endpoint backup = provider(2);
+    private final AtomicInteger hedges = new AtomicInteger();
+
+    private RetryContext newContext() {
+        RetryContext context = new RetryContext();
+        context.setMethodKey("svc#m");
+        context.setFailService(primary);
+        context.setAllService(List.of(primary, backup));
+        context.setLoadBalancer(list -> list.get(0));
+        context.setRetry(provider -> {
+            assertSame(backup, provider);
+            hedges.incrementAndGet();
+            return CompletableFuture.completedFuture(Response.ok("backup", 2));
+        });
+        return context;
+    }
+
+    /**
+     * 积累延迟样本和预算：第一次请求立即返回，不会触发对冲
+     */
+    private void warmUp(HedgedRetryPolicy policy, int count) {
+        for (int i = 0; i < count; i++) {
+            CompletableFuture<Response> first = CompletableFuture.completedFuture(Response.ok("primary", 1));
+            assertEquals("primary", policy.hedge(newContext(), first).join().getResult());
+        }
+    }
+
+    /**
+     * 样本不足时不对冲，直接返回第一次请求
+     */
+    @Test
+    public void testNoHedgeWithoutSamples() {
+        HedgedRetryPolicy policy = new HedgedRetryPolicy();
+        CompletableFuture<Response> first = new CompletableFuture<>();
+        assertSame(first, policy.hedge(newContext(), first));
+        assertEquals(0, hedges.get());
+    }
+
+    /**
+     * 第一次请求超过 p95 未返回时向另一个 provider 对冲，取先到的结果并取消第一次请求
+     */
+    @Test
+    public void testHedgeAfterP95AndCancelLoser() throws Exception {
+        HedgedRetryPolicy policy = new HedgedRetryPolicy();
+        warmUp(policy, 200);
+        assertEquals(0, hedges.get());
+
+        CompletableFuture<Response> slow = new CompletableFuture<>();
+        CompletableFuture<Response> result = policy.hedge(newContext(), slow);
+        assertEquals("backup", result.get(1, TimeUnit.SECONDS).getResult());
+        assertEquals(1, hedges.get());
+        assertTrue(slow.isCancelled());
+    }
+
+    /**
+     * 对冲请求数不超过预算：积累的令牌加上每个请求 5%
+     */
+    @Test
+    public void testHedgeBudget() throws Exception {
+        HedgedRetryPolicy policy = new HedgedRetryPolicy();
+        warmUp(policy, 200);
+
+        int calls = 40;
+        for (int i = 0; i < calls; i++) {
+            CompletableFuture<Response> slow = new CompletableFuture<>();
+            CompletableFuture<Response> result = policy.hedge(newContext(), slow);
+            try {
+                result.get(20, TimeUnit.MILLISECONDS);
+            } catch (java.util.concurrent.TimeoutException ignored) {
+                slow.cancel(false);
+            }
+        }
+        long maxHedges = policy.maxTokens / policy.tokenPerHedge + calls * policy.tokenPerRequest / policy.tokenPerHedge;
+        assertTrue(hedges.get() <= maxHedges, "hedges:" + hedges.get());
+        assertTrue(hedges.get() >= policy.maxTokens / policy.tokenPerHedge, "hedges:" + hedges.get());
+    }
+
+    /**
+     * 对冲请求返回错误响应时不算成功，继续等待第一次请求
+     */
+    @Test
+    public void testErrorResponseDoesNotWin() throws Exception {
+        HedgedRetryPolicy policy = new HedgedRetryPolicy();
+        warmUp(policy, 200);
+
+        RetryContext context = newContext();
+        CompletableFuture<Response> hedge = CompletableFuture.completedFuture(Response.error("service busy", 2));
+        context.setRetry(provider -> {
+            hedges.incrementAndGet();
+            return hedge;
+        });
+        CompletableFuture<Response> slow = new CompletableFuture<>();
+        CompletableFuture<Response> result = policy.hedge(context, slow);
+        Thread.sleep(50);
+        assertEquals(1, hedges.get());
+        assertFalse(result.isDone());
+        assertFalse(slow.isCancelled());
+
+        slow.complete(Response.ok("primary", 1));
+        assertEquals("primary", result.get(1, TimeUnit.SECONDS).getResult());
+    }
+
+    /**
+     * 每次调用的对冲次数不超过 maxHedges
+     */
+    @Test
+    public void testMaxHedges() throws Exception {
+        HedgedRetryPolicy policy = new HedgedRetryPolicy();
+        warmUp(policy, 200);
+
+        Endpoint third = provider(3);
+        RetryContext context = newContext();
+        context.setAllService(List.of(primary, backup, third));
+        context.setMaxHedges(2);
+        context.setRetry(provider -> {
+            hedges.incrementAndGet();
+            return new CompletableFuture<>();
+        });
+        CompletableFuture<Response> result = policy.hedge(context, new CompletableFuture<>());
+        Thread.sleep(100);
+        assertEquals(2, hedges.get());
+        result.cancel(false);
+    }
+}
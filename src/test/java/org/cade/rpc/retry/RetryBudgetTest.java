@@ -0,0 +1,52 @@
+package org.cade.rpc.retry;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 重试预算测试
+ */
+public class RetryBudgetTest {
+
+    @Test
+    public void testRetriesCappedByRatioOfSuccesses() {
+        RetryBudget budget = new RetryBudget(0.1, 0, 100);
+        assertFalse(budget.tryAcquire());
+
+        for (int i = 0; i < 100; i++) {
+            budget.deposit();
+        }
+        int allowed = 0;
+        while (budget.tryAcquire()) {
+            allowed++;
+        }
+        assertEquals(10, allowed);
+        assertEquals(100, budget.getDeposits());
+        assertEquals(10, budget.getAcquired());
+        assertEquals(2, budget.getRejected());
+    }
+
+    @Test
+    public void testBalanceCapped() {
+        RetryBudget budget = new RetryBudget(0.5, 0, 3);
+        for (int i = 0; i < 100; i++) {
+            budget.deposit();
+        }
+        assertEquals(3.0, budget.getBalance(), 1e-9);
+    }
+
+    @Test
+    public void testMinRetriesPerSecondRefill() {
+        RetryBudget budget = new RetryBudget(0.1, 10, 100);
+        // 启动时预留一秒的保底重试
+        int allowed = 0;
+        while (budget.tryAcquire()) {
+            allowed++;
+        }
+        assertTrue(allowed >= 10);
+
+        budget.refill(System.currentTimeMillis() + 500);
+        assertTrue(budget.getBalance() >= 5);
+    }
+}
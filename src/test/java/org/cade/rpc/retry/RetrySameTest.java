@@ -0,0 +1,89 @@
+package org.cade.rpc.retry;
+
+import org.cade.rpc.comsumer.Endpoint;
+import org.cade.rpc.excpetion.RPCException;
+import org.cade.rpc.message.Response;
+import org.cade.rpc.register.Metadata;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 重试策略异步调度测试
+ */
+public class RetrySameTest {
+
+    private static Endpoint provider(int port) {
+        Metadata metadata = new Metadata();
+        metadata.setHost("127.0.0.1");
+        metadata.setPort(port);
+        metadata.setServiceName("svc");
+        return new Endpoint(metadata, null, null, null, null, null);
+    }
+
+    private static RetryContext failingContext(List<Endpoint> all, AtomicInteger attempts) {
+        RetryContext context = new RetryContext();
+        context.setMethodKey("svc#m");
+        context.setFailService(all.get(0));
+        context.setAllService(all);
+        context.setFunctionTimeoutMS(10_000);
+        context.setRequestTimeout(3_000);
+        context.setLoadBalancer(list -> list.get(0));
+        context.setRetry(provider -> {
+            attempts.incrementAndGet();
+            return CompletableFuture.failedFuture(new RPCException("fail " + provider.getMetadata().getPort()));
+        });
+        return context;
+    }
+
+    /**
+     * 重试风暴：1000 个调用同时退避重试，线程数保持不变
+     */
+    @Test
+    public void testRetryStormKeepsThreadCountFlat() throws Exception {
+        RetrySame policy = new RetrySame();
+        // 时间轮线程在第一次调度时创建
+        policy.retry(failingContext(List.of(provider(1)), new AtomicInteger())).exceptionally(e -> null).get(5, TimeUnit.SECONDS);
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        int before = threads.getThreadCount();
+        AtomicInteger attempts = new AtomicInteger();
+        List<CompletableFuture<Response>> results = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            results.add(policy.retry(failingContext(List.of(provider(1)), attempts)));
+        }
+        Thread.sleep(150);
+        int peak = threads.getThreadCount();
+        for (CompletableFuture<Response> result : results) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(RPCException.class, e.getCause());
+        }
+        assertEquals(3000, attempts.get());
+        assertTrue(peak - before <= 2, "threads before:" + before + " peak:" + peak);
+    }
+
+    /**
+     * 故障转移的状态属于单次调用：并发调用互不影响，每次都从完整的 provider 列表开始
+     */
+    @Test
+    public void testFailoverStateIsPerCall() throws Exception {
+        FaioverRetryPolicy policy = new FaioverRetryPolicy();
+        List<Endpoint> all = List.of(provider(1), provider(2), provider(3));
+        for (int i = 0; i < 2; i++) {
+            AtomicInteger attempts = new AtomicInteger();
+            CompletableFuture<Response> result = policy.retry(failingContext(all, attempts));
+            ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertEquals("no service", e.getCause().getMessage());
+            assertEquals(2, attempts.get());
+        }
+    }
+}
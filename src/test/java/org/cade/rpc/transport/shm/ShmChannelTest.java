@@ -0,0 +1,114 @@
+package org.cade.rpc.transport.shm;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.*;
+import io.netty.channel.nio.NioEventLoopGroup;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 共享内存 Channel 端到端测试
+ */
+public class ShmChannelTest {
+    private final NioEventLoopGroup group = new NioEventLoopGroup(2);
+    private Channel server;
+
+    @TempDir
+    Path dir;
+
+    @AfterEach
+    public void cleanup() throws InterruptedException {
+        if (server != null) {
+            server.close().sync();
+        }
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 服务端回显收到的字节，数据量大于环形缓冲区容量，覆盖回绕和缓冲区满后重试写入
+     */
+    @Test
+    public void testEchoLargerThanRing() throws Exception {
+        server = new ServerBootstrap().group(group, group)
+                .channel(ShmServerChannel.class)
+                .childHandler(new ChannelInboundHandlerAdapter() {
+                    @Override
+                    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                        ctx.writeAndFlush(msg);
+                    }
+                })
+                .bind(new ShmAddress(dir)).sync().channel();
+
+        int total = 1 << 20;
+        CompletableFuture<byte[]> received = new CompletableFuture<>();
+        ByteBuf collected = Unpooled.buffer(total);
+        Channel client = new Bootstrap().group(group)
+                .channelFactory(() -> new ShmChannel(1 << 12))
+                .handler(new SimpleChannelInboundHandler<ByteBuf>() {
+                    @Override
+                    protected void channelRead0(ChannelHandlerContext ctx, ByteBuf msg) {
+                        collected.writeBytes(msg);
+                        if (collected.readableBytes() == total) {
+                            byte[] bytes = new byte[total];
+                            collected.readBytes(bytes);
+                            received.complete(bytes);
+                        }
+                    }
+                })
+                .connect(new ShmAddress(dir)).sync().channel();
+
+        byte[] payload = new byte[total];
+        for (int i = 0; i < total; i++) {
+            payload[i] = (byte) (i * 31);
+        }
+        for (int offset = 0; offset < total; offset += 1000) {
+            client.write(Unpooled.wrappedBuffer(payload, offset, Math.min(1000, total - offset)));
+        }
+        client.flush();
+
+        assertArrayEquals(payload, received.get(10, TimeUnit.SECONDS));
+        client.close().sync();
+    }
+
+    /**
+     * 消费者关闭后，服务端子 Channel 感知对端关闭
+     */
+    @Test
+    public void testPeerClose() throws Exception {
+        CompletableFuture<Void> serverClosed = new CompletableFuture<>();
+        server = new ServerBootstrap().group(group, group)
+                .channel(ShmServerChannel.class)
+                .childHandler(new ChannelInboundHandlerAdapter() {
+                    @Override
+                    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                        ((ByteBuf) msg).release();
+                    }
+
+                    @Override
+                    public void channelInactive(ChannelHandlerContext ctx) {
+                        serverClosed.complete(null);
+                    }
+                })
+                .bind(new ShmAddress(dir)).sync().channel();
+
+        Channel client = new Bootstrap().group(group)
+                .channel(ShmChannel.class)
+                .handler(new ChannelInboundHandlerAdapter())
+                .connect(new ShmAddress(dir)).sync().channel();
+        client.writeAndFlush(Unpooled.copiedBuffer("ping", StandardCharsets.UTF_8)).sync();
+        client.close().sync();
+
+        serverClosed.get(10, TimeUnit.SECONDS);
+    }
+}